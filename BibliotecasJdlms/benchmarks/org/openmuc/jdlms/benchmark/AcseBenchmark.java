@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jasn1.ber.types.BerAnyNoDecode;
+import org.openmuc.jasn1.ber.types.BerInteger;
+import org.openmuc.jasn1.ber.types.BerObjectIdentifier;
+import org.openmuc.jasn1.ber.types.BerOctetString;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.Conformance;
+import org.openmuc.jdlms.internal.asn1.cosem.InitiateRequest;
+import org.openmuc.jdlms.internal.asn1.cosem.InitiateResponse;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer16;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned8;
+import org.openmuc.jdlms.internal.asn1.iso.acse.AARE_apdu;
+import org.openmuc.jdlms.internal.asn1.iso.acse.AARQ_apdu;
+import org.openmuc.jdlms.internal.asn1.iso.acse.ACSE_apdu;
+import org.openmuc.jdlms.internal.asn1.iso.acse.ACSE_requirements;
+import org.openmuc.jdlms.internal.asn1.iso.acse.Associate_result;
+import org.openmuc.jdlms.internal.asn1.iso.acse.Associate_source_diagnostic;
+import org.openmuc.jdlms.internal.asn1.iso.acse.Association_information;
+import org.openmuc.jdlms.internal.asn1.iso.acse.Authentication_value;
+import org.openmuc.jdlms.internal.asn1.iso.acse.Mechanism_name;
+
+/**
+ * BER encoding and decoding of the association request (AARQ) and response (AARE) with their xDLMS initiate PDUs,
+ * as done by {@code APdu}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AcseBenchmark {
+
+	private static final byte[] CONFORMANCE = { (byte) 0x00, (byte) 0xBE, (byte) 0x3F };
+
+	private ACSE_apdu aarq;
+	private COSEMpdu initiateRequest;
+	private ACSE_apdu aare;
+	private COSEMpdu initiateResponse;
+
+	private byte[] encodedAarq;
+	private byte[] encodedAare;
+
+	private BerByteArrayOutputStream os;
+
+	@Setup
+	public void setup() throws IOException {
+		AARQ_apdu aarqApdu = new AARQ_apdu();
+		aarqApdu.application_context_name = new BerObjectIdentifier(new int[] { 2, 16, 756, 5, 8, 1, 1 });
+		aarqApdu.mechanism_name = new Mechanism_name(new int[] { 2, 16, 756, 5, 8, 2, 1 });
+		aarqApdu.sender_acse_requirements = new ACSE_requirements(new byte[] { (byte) 0x80 }, 2);
+		aarqApdu.calling_authentication_value = new Authentication_value(
+				new BerOctetString("12345678".getBytes("US-ASCII")), null);
+		aarq = new ACSE_apdu(aarqApdu, null, null, null);
+
+		initiateRequest = new COSEMpdu();
+		initiateRequest.setinitiateRequest(new InitiateRequest(null, new AxdrBoolean(true), null, new Unsigned8(6),
+				new Conformance(CONFORMANCE, 24), new Unsigned16(0xFFFF)));
+
+		AARE_apdu aareApdu = new AARE_apdu();
+		aareApdu.application_context_name = new BerObjectIdentifier(new int[] { 2, 16, 756, 5, 8, 1, 1 });
+		aareApdu.result = new Associate_result(0);
+		aareApdu.result_source_diagnostic = new Associate_source_diagnostic(new BerInteger(0), null);
+		aare = new ACSE_apdu(null, aareApdu, null, null);
+
+		initiateResponse = new COSEMpdu();
+		initiateResponse.setinitiateResponse(new InitiateResponse(null, new Unsigned8(6),
+				new Conformance(CONFORMANCE, 24), new Unsigned16(1024), new Integer16(7)));
+
+		os = new BerByteArrayOutputStream(256, true);
+		encodeAarq();
+		encodedAarq = os.getArray();
+		encodeAare();
+		encodedAare = os.getArray();
+	}
+
+	@Benchmark
+	public int encodeAarq() throws IOException {
+		os.reset();
+		int numBytesEncoded = initiateRequest.encode(os);
+		aarq.aarq.user_information = new Association_information(new BerAnyNoDecode(numBytesEncoded));
+		return aarq.encode(os, true);
+	}
+
+	@Benchmark
+	public int encodeAare() throws IOException {
+		os.reset();
+		int numBytesEncoded = initiateResponse.encode(os);
+		aare.aare.user_information = new Association_information(new BerAnyNoDecode(numBytesEncoded));
+		return aare.encode(os, true);
+	}
+
+	@Benchmark
+	public void decodeAarq(Blackhole blackhole) throws IOException {
+		decode(encodedAarq, blackhole);
+	}
+
+	@Benchmark
+	public void decodeAare(Blackhole blackhole) throws IOException {
+		decode(encodedAare, blackhole);
+	}
+
+	/*
+	 * The user information of the ACSE PDU is not decoded, it is followed by the xDLMS initiate PDU.
+	 */
+	private static void decode(byte[] encoded, Blackhole blackhole) throws IOException {
+		InputStream is = new AxdrReader(encoded);
+		ACSE_apdu acsePdu = new ACSE_apdu();
+		acsePdu.decode(is, null);
+		COSEMpdu initiatePdu = new COSEMpdu();
+		initiatePdu.decode(is);
+
+		blackhole.consume(acsePdu);
+		blackhole.consume(initiatePdu);
+	}
+
+}
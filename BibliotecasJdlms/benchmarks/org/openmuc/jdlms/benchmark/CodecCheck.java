@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrWriter;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrInteger;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer16;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer32;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer64;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer8;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned32;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned64;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned8;
+
+/**
+ * Round trip checks of the A-XDR reader and writer and of the tag tables of the generated choices, to be run before
+ * comparing benchmark results of codec changes:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar org.openmuc.jdlms.benchmark.CodecCheck
+ * </pre>
+ * 
+ * The check ends with an exception at the first mismatch.
+ */
+public final class CodecCheck {
+
+	/*
+	 * Binary names of the generated types declaring a Choices enum, relative to the cosem package
+	 */
+	private static final String[] CLASSES_WITH_CHOICES = { "ACTION_Request", "ACTION_Response", "COSEMpdu",
+			"ConfirmedServiceError", "Data", "DataBlock_G$SubChoice_result", "GET_Request", "GET_Response",
+			"Get_Data_Result", "ReadResponse$SubChoice", "SET_Request", "SET_Response", "ServiceError",
+			"TypeDescription", "Variable_Access_Specification", "WriteResponse$SubChoice" };
+
+	private static final long[] INTEGERS = { 0, 1, -1, 0x7f, 0x80, 0xff, 0x7fff, 0x8000, 0xffff, 0x7fffffffL,
+			0x80000000L, 0xffffffffL, 0x123456789aL, Long.MAX_VALUE, Long.MIN_VALUE, -0x80, -0x8000, -0x80000000L };
+
+	private static final int[] LENGTHS = { 0, 1, 0x7f, 0x80, 0xff, 0x100, 0xffff, 0x10000, 0xffffff, 0x1000000,
+			Integer.MAX_VALUE };
+
+	public static void main(String[] args) throws Exception {
+		checkIntegers();
+		checkLengths();
+		checkAxdrIntegers();
+		checkChoices();
+		System.out.println("A-XDR codec checks passed.");
+	}
+
+	private static void checkIntegers() throws IOException {
+		for (int numBytes = 1; numBytes <= 8; numBytes++) {
+			for (long value : INTEGERS) {
+				for (boolean growing : new boolean[] { false, true }) {
+					BerByteArrayOutputStream os = new BerByteArrayOutputStream(growing ? 1 : 16, growing);
+					AxdrWriter.writeInteger(os, value, numBytes);
+					byte[] encoded = os.getArray();
+					check(encoded.length == numBytes, "integer of " + numBytes + " bytes encoded in " + encoded.length);
+
+					for (boolean signed : new boolean[] { false, true }) {
+						long expected = truncate(value, numBytes, signed);
+						check(AxdrReader.readInteger(new AxdrReader(encoded), numBytes, signed) == expected,
+								"integer " + value + " of " + numBytes + " bytes read from AxdrReader");
+						check(AxdrReader.readInteger(new ByteArrayInputStream(encoded), numBytes, signed) == expected,
+								"integer " + value + " of " + numBytes + " bytes read from an input stream");
+					}
+				}
+			}
+		}
+	}
+
+	private static long truncate(long value, int numBytes, boolean signed) {
+		if (numBytes == 8) {
+			return value;
+		}
+		int shift = 64 - 8 * numBytes;
+		return signed ? (value << shift) >> shift : (value << shift) >>> shift;
+	}
+
+	private static void checkLengths() throws IOException {
+		for (int length : LENGTHS) {
+			BerByteArrayOutputStream os = new BerByteArrayOutputStream(16);
+			int numBytes = AxdrWriter.writeLength(os, length);
+			byte[] encoded = os.getArray();
+			check(encoded.length == numBytes, "length " + length + " reported " + numBytes + " bytes");
+
+			InputStream[] streams = { new AxdrReader(encoded), new ByteArrayInputStream(encoded) };
+			for (InputStream is : streams) {
+				check(AxdrReader.readLength(is) == length, "length " + length + " read from " + is.getClass());
+				check(is.read() == -1, "length " + length + " not read completely");
+			}
+		}
+	}
+
+	private static void checkAxdrIntegers() throws IOException {
+		checkAxdrInteger(new Integer8(-128), new Integer8());
+		checkAxdrInteger(new Integer8(127), new Integer8());
+		checkAxdrInteger(new Unsigned8(255), new Unsigned8());
+		checkAxdrInteger(new Integer16(-32768), new Integer16());
+		checkAxdrInteger(new Unsigned16(65535), new Unsigned16());
+		checkAxdrInteger(new Integer32(Integer.MIN_VALUE), new Integer32());
+		checkAxdrInteger(new Unsigned32(0xffffffffL), new Unsigned32());
+		checkAxdrInteger(new Integer64(Long.MIN_VALUE), new Integer64());
+		checkAxdrInteger(new Integer64(-1), new Integer64());
+		checkAxdrInteger(new Integer64(-0x123456789aL), new Integer64());
+		checkAxdrInteger(new Unsigned64(Long.MAX_VALUE), new Unsigned64());
+	}
+
+	private static void checkAxdrInteger(AxdrInteger value, AxdrInteger decoded) throws IOException {
+		BerByteArrayOutputStream os = new BerByteArrayOutputStream(16);
+		int numBytes = value.encode(os);
+		byte[] encoded = os.getArray();
+
+		check(decoded.decode(new AxdrReader(encoded)) == numBytes, value.getClass() + " decoded length");
+		check(decoded.getValue() == value.getValue(),
+				value.getClass() + " " + value.getValue() + " decoded as " + decoded.getValue());
+	}
+
+	/*
+	 * Every tag of a choice maps to its constant, all other tags to _ERR_NONE_SELECTED.
+	 */
+	private static void checkChoices() throws ReflectiveOperationException {
+		for (String className : CLASSES_WITH_CHOICES) {
+			Class<?> choices = Class.forName("org.openmuc.jdlms.internal.asn1.cosem." + className + "$Choices");
+			Method valueOf = choices.getMethod("valueOf", long.class);
+			Method getValue = choices.getMethod("getValue");
+			Object none = valueOf.invoke(null, -1L);
+			check("_ERR_NONE_SELECTED".equals(((Enum<?>) none).name()), className + " tag -1 is " + none);
+
+			Object[] byTag = new Object[256];
+			for (Object choice : choices.getEnumConstants()) {
+				int tag = (Integer) getValue.invoke(choice);
+				if (choice != none) {
+					check(tag >= 0 && tag < byTag.length, choice + " of " + className + " has tag " + tag);
+					byTag[tag] = choice;
+				}
+			}
+
+			for (int tag = 0; tag < byTag.length; tag++) {
+				Object expected = byTag[tag] == null ? none : byTag[tag];
+				check(valueOf.invoke(null, (long) tag) == expected, className + " tag " + tag);
+			}
+			check(valueOf.invoke(null, 256L) == none, className + " tag 256");
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalStateException("Check failed: " + message);
+		}
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private CodecCheck() {
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.benchmark;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.CosemDateTime.ClockStatus;
+
+/**
+ * Decoding and encoding of date-time values, e.g. the clock of every row of a load profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CosemDateTimeBenchmark {
+
+	private byte[] encodedDateTime;
+	private CosemDateTime dateTime;
+
+	@Setup
+	public void setup() {
+		dateTime = new CosemDateTime(2016, 3, 27, 2, 15, 0, 60, ClockStatus.DAYLIGHT_SAVING_ACTIVE);
+		encodedDateTime = dateTime.encode();
+	}
+
+	@Benchmark
+	public CosemDateTime decode() {
+		return CosemDateTime.decode(encodedDateTime);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return dateTime.encode();
+	}
+
+	@Benchmark
+	public Calendar decodeToCalendar() {
+		return CosemDateTime.decode(encodedDateTime).toCalendar();
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+
+/**
+ * Encoding and decoding of GET, SET and ACTION requests and responses by the generated COSEM PDU classes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CosemPduBenchmark {
+
+	private COSEMpdu loadProfileGetRequest;
+	private COSEMpdu registersGetRequest;
+	private COSEMpdu clockSetRequest;
+	private COSEMpdu imageBlockActionRequest;
+	private COSEMpdu registersGetResponse;
+
+	private byte[] encodedLoadProfileGetRequest;
+	private byte[] encodedRegistersGetRequest;
+	private byte[] encodedClockSetRequest;
+	private byte[] encodedImageBlockActionRequest;
+	private byte[] encodedRegistersGetResponse;
+	private byte[] encodedObjectListGetResponse;
+	private byte[] encodedSetResponse;
+	private byte[] encodedActionResponse;
+
+	private BerByteArrayOutputStream os;
+
+	@Setup
+	public void setup() throws IOException {
+		loadProfileGetRequest = Payloads.loadProfileGetRequest();
+		registersGetRequest = Payloads.registersGetRequest();
+		clockSetRequest = Payloads.clockSetRequest();
+		imageBlockActionRequest = Payloads.imageBlockActionRequest();
+		registersGetResponse = Payloads.registersGetResponse();
+
+		encodedLoadProfileGetRequest = Payloads.encode(loadProfileGetRequest);
+		encodedRegistersGetRequest = Payloads.encode(registersGetRequest);
+		encodedClockSetRequest = Payloads.encode(clockSetRequest);
+		encodedImageBlockActionRequest = Payloads.encode(imageBlockActionRequest);
+		encodedRegistersGetResponse = Payloads.encode(registersGetResponse);
+		encodedObjectListGetResponse = Payloads
+				.encode(Payloads.getResponse(Payloads.objectList(Payloads.OBJECT_LIST_SIZE)));
+		encodedSetResponse = Payloads.encode(Payloads.setResponse());
+		encodedActionResponse = Payloads.encode(Payloads.actionResponse());
+
+		os = new BerByteArrayOutputStream(1024, true);
+	}
+
+	@Benchmark
+	public int encodeLoadProfileGetRequest() throws IOException {
+		return encode(loadProfileGetRequest);
+	}
+
+	@Benchmark
+	public int encodeRegistersGetRequest() throws IOException {
+		return encode(registersGetRequest);
+	}
+
+	@Benchmark
+	public int encodeClockSetRequest() throws IOException {
+		return encode(clockSetRequest);
+	}
+
+	@Benchmark
+	public int encodeImageBlockActionRequest() throws IOException {
+		return encode(imageBlockActionRequest);
+	}
+
+	@Benchmark
+	public int encodeRegistersGetResponse() throws IOException {
+		return encode(registersGetResponse);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeLoadProfileGetRequest() throws IOException {
+		return decode(encodedLoadProfileGetRequest);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeRegistersGetRequest() throws IOException {
+		return decode(encodedRegistersGetRequest);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeClockSetRequest() throws IOException {
+		return decode(encodedClockSetRequest);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeImageBlockActionRequest() throws IOException {
+		return decode(encodedImageBlockActionRequest);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeRegistersGetResponse() throws IOException {
+		return decode(encodedRegistersGetResponse);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeObjectListGetResponse() throws IOException {
+		return decode(encodedObjectListGetResponse);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeSetResponse() throws IOException {
+		return decode(encodedSetResponse);
+	}
+
+	@Benchmark
+	public COSEMpdu decodeActionResponse() throws IOException {
+		return decode(encodedActionResponse);
+	}
+
+	/*
+	 * The output stream is reused like the encode buffer of a connection.
+	 */
+	private int encode(COSEMpdu pdu) throws IOException {
+		os.reset();
+		return pdu.encode(os);
+	}
+
+	private static COSEMpdu decode(byte[] encoded) throws IOException {
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.decode(new AxdrReader(encoded));
+		return pdu;
+	}
+
+}
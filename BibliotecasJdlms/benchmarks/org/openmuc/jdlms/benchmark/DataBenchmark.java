@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.ColumnarTable;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.ColumnarConverter;
+import org.openmuc.jdlms.internal.DataConverter;
+import org.openmuc.jdlms.internal.DataDecoder;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Encoding, decoding and conversion of the buffer of a load profile, an array of structures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBenchmark {
+
+	@Param({ "96", "2880" })
+	public int numRows;
+
+	private DataObject loadProfile;
+	private Data loadProfilePdu;
+	private byte[] encodedLoadProfile;
+
+	private BerByteArrayOutputStream os;
+
+	@Setup
+	public void setup() throws IOException {
+		loadProfile = Payloads.loadProfile(numRows);
+		loadProfilePdu = DataConverter.toPdu(loadProfile);
+		encodedLoadProfile = Payloads.encode(loadProfilePdu);
+
+		os = new BerByteArrayOutputStream(encodedLoadProfile.length, true);
+	}
+
+	@Benchmark
+	public int encode() throws IOException {
+		os.reset();
+		return loadProfilePdu.encode(os);
+	}
+
+	@Benchmark
+	public Data decode() throws IOException {
+		Data data = new Data();
+		data.decode(new AxdrReader(encodedLoadProfile));
+		return data;
+	}
+
+	@Benchmark
+	public DataObject toApi() {
+		return DataConverter.toApi(loadProfilePdu);
+	}
+
+	@Benchmark
+	public Data toPdu() {
+		return DataConverter.toPdu(loadProfile);
+	}
+
+	/**
+	 * Decoding as done for get responses before the direct decoder: generated PDU classes and conversion.
+	 */
+	@Benchmark
+	public DataObject decodeAndConvert() throws IOException {
+		Data data = new Data();
+		data.decode(new AxdrReader(encodedLoadProfile));
+		return DataConverter.toApi(data);
+	}
+
+	@Benchmark
+	public DataObject decodeDirect() throws IOException {
+		return DataDecoder.decode(ByteBuffer.wrap(encodedLoadProfile));
+	}
+
+	/**
+	 * Lazy decoding of the buffer, reading the clock of every row.
+	 */
+	@Benchmark
+	public void decodeLazilyAndReadClocks(Blackhole blackhole) throws IOException {
+		DataObject buffer = DataDecoder.decodeLazily(ByteBuffer.wrap(encodedLoadProfile));
+		for (int i = 0; i < buffer.size(); i++) {
+			blackhole.consume(buffer.get(i).get(0));
+		}
+	}
+
+	@Benchmark
+	public ColumnarTable toColumns() {
+		return ColumnarConverter.toColumns(loadProfilePdu);
+	}
+
+	/**
+	 * Encoding as done for set requests: conversion and encoding.
+	 */
+	@Benchmark
+	public int convertAndEncode() throws IOException {
+		os.reset();
+		return DataConverter.toPdu(loadProfile).encode(os);
+	}
+
+}
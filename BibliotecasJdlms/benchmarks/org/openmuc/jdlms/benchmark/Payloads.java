@@ -0,0 +1,333 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.ObisCode;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.DataConverter;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrEnum;
+import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Response_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Response_With_Optional_Data;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor_With_Selection;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Method_Descriptor;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Object_Instance_Id;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Data_Result;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer8;
+import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
+import org.openmuc.jdlms.internal.asn1.cosem.SET_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.SET_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Selective_Access_Descriptor;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Response_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned8;
+
+/**
+ * Realistic payloads for the codec benchmarks.
+ * <p>
+ * The benchmarks of this package need JMH and its annotation processor on the class path, besides the classes of
+ * jDLMS and its dependencies. They are run by {@code org.openjdk.jmh.Main}, e.g. with {@code -prof gc} to report the
+ * allocation rate as well.
+ * </p>
+ */
+public final class Payloads {
+
+	/**
+	 * Number of rows of a load profile with 15 minute entries of 30 days
+	 */
+	public static final int LOAD_PROFILE_ROWS = 2880;
+
+	/**
+	 * Number of objects of the object list of a typical residential meter
+	 */
+	public static final int OBJECT_LIST_SIZE = 250;
+
+	private static final ObisCode LOAD_PROFILE = new ObisCode(1, 0, 99, 1, 0, 255);
+	private static final ObisCode CLOCK = new ObisCode(0, 0, 1, 0, 0, 255);
+	private static final ObisCode IMAGE_TRANSFER = new ObisCode(0, 0, 44, 0, 0, 255);
+	private static final ObisCode[] REGISTERS = { new ObisCode(1, 0, 1, 8, 0, 255), new ObisCode(1, 0, 2, 8, 0, 255),
+			new ObisCode(1, 0, 3, 8, 0, 255), new ObisCode(1, 0, 4, 8, 0, 255), new ObisCode(1, 0, 32, 7, 0, 255),
+			new ObisCode(1, 0, 52, 7, 0, 255), new ObisCode(1, 0, 72, 7, 0, 255), new ObisCode(0, 0, 96, 1, 0, 255) };
+
+	private static final int IMAGE_BLOCK_SIZE = 192;
+
+	/**
+	 * Buffer of a load profile: rows of the clock, the status and four energy registers.
+	 * 
+	 * @param numRows
+	 *            the number of rows, one per quarter of an hour
+	 * @return the buffer
+	 */
+	public static DataObject loadProfile(int numRows) {
+		List<DataObject> rows = new ArrayList<DataObject>(numRows);
+		for (int i = 0; i < numRows; i++) {
+			int minutes = i * 15;
+			CosemDateTime clock = new CosemDateTime(2016, 1, 1 + minutes / (24 * 60), minutes / 60 % 24, minutes % 60,
+					0, 60);
+			rows.add(DataObject.newStructureData(Arrays.asList(DataObject.newOctetStringData(clock.encode()),
+					DataObject.newUInteger8Data((short) (i % 97 == 0 ? 0x08 : 0)),
+					DataObject.newUInteger32Data(1200000L + i * 250L), DataObject.newUInteger32Data(i * 3L),
+					DataObject.newUInteger32Data(500000L + i * 40L), DataObject.newUInteger32Data(80000L + i * 11L))));
+		}
+		return DataObject.newArrayData(rows);
+	}
+
+	/**
+	 * Object list of a logical name association: class id, version, logical name and access rights per object.
+	 * 
+	 * @param numObjects
+	 *            the number of objects
+	 * @return the object list
+	 */
+	public static DataObject objectList(int numObjects) {
+		List<DataObject> objects = new ArrayList<DataObject>(numObjects);
+		for (int i = 0; i < numObjects; i++) {
+			int numAttributes = 2 + i % 8;
+			List<DataObject> attributes = new ArrayList<DataObject>(numAttributes);
+			for (int j = 1; j <= numAttributes; j++) {
+				DataObject accessSelectors = j == 2 && i % 5 == 0
+						? DataObject.newArrayData(Arrays.asList(DataObject.newInteger8Data((byte) 1),
+								DataObject.newInteger8Data((byte) 2)))
+						: DataObject.newNullData();
+				attributes.add(DataObject.newStructureData(Arrays.asList(DataObject.newInteger8Data((byte) j),
+						DataObject.newEnumerateData(j == 1 ? 1 : 3), accessSelectors)));
+			}
+			List<DataObject> methods = new ArrayList<DataObject>(2);
+			for (int j = 1; j <= i % 3; j++) {
+				methods.add(DataObject.newStructureData(
+						Arrays.asList(DataObject.newInteger8Data((byte) j), DataObject.newEnumerateData(1))));
+			}
+
+			byte[] logicalName = { 1, 0, (byte) (i % 100), 8, (byte) (i / 100), (byte) 255 };
+			objects.add(DataObject.newStructureData(Arrays.asList(DataObject.newUInteger16Data(1 + i % 72),
+					DataObject.newUInteger8Data((short) (i % 3)), DataObject.newOctetStringData(logicalName),
+					DataObject.newStructureData(
+							Arrays.asList(DataObject.newArrayData(attributes), DataObject.newArrayData(methods))))));
+		}
+		return DataObject.newArrayData(objects);
+	}
+
+	/**
+	 * Get request of a load profile buffer with a range descriptor of one day.
+	 * 
+	 * @return the request
+	 */
+	public static COSEMpdu loadProfileGetRequest() {
+		DataObject range = DataObject.newStructureData(Arrays.asList(
+				DataObject.newStructureData(Arrays.asList(DataObject.newUInteger16Data(8),
+						DataObject.newOctetStringData(CLOCK.bytes()), DataObject.newInteger8Data((byte) 2),
+						DataObject.newUInteger16Data(0))),
+				DataObject.newOctetStringData(new CosemDateTime(2016, 1, 1, 0, 0, 0, 60).encode()),
+				DataObject.newOctetStringData(new CosemDateTime(2016, 1, 2, 0, 0, 0, 60).encode()),
+				DataObject.newArrayData(new ArrayList<DataObject>())));
+
+		Get_Request_Normal requestNormal = new Get_Request_Normal();
+		requestNormal.invoke_id_and_priority = invokeId();
+		requestNormal.cosem_attribute_descriptor = attributeDescriptor(7, LOAD_PROFILE, 2);
+		requestNormal.access_selection
+				.setValue(new Selective_Access_Descriptor(new Unsigned8(1), DataConverter.toPdu(range)));
+
+		GET_Request getRequest = new GET_Request();
+		getRequest.setget_request_normal(requestNormal);
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setget_request(getRequest);
+		return pdu;
+	}
+
+	/**
+	 * Get request with the values of the registers of a meter reading.
+	 * 
+	 * @return the request
+	 */
+	public static COSEMpdu registersGetRequest() {
+		Get_Request_With_List requestList = new Get_Request_With_List();
+		requestList.invoke_id_and_priority = invokeId();
+		requestList.attribute_descriptor_list = new Get_Request_With_List.SubSeqOf_attribute_descriptor_list();
+		for (ObisCode register : REGISTERS) {
+			requestList.attribute_descriptor_list
+					.add(new Cosem_Attribute_Descriptor_With_Selection(attributeDescriptor(3, register, 2), null));
+		}
+
+		GET_Request getRequest = new GET_Request();
+		getRequest.setget_request_with_list(requestList);
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setget_request(getRequest);
+		return pdu;
+	}
+
+	/**
+	 * Get response holding the given data.
+	 * 
+	 * @param data
+	 *            the data of the response
+	 * @return the response
+	 */
+	public static COSEMpdu getResponse(DataObject data) {
+		Get_Data_Result result = new Get_Data_Result();
+		result.setdata(DataConverter.toPdu(data));
+
+		GET_Response response = new GET_Response();
+		response.setget_response_normal(new Get_Response_Normal(invokeId(), result));
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setget_response(response);
+		return pdu;
+	}
+
+	/**
+	 * Get response with the values of the registers requested by {@link #registersGetRequest()}.
+	 * 
+	 * @return the response
+	 */
+	public static COSEMpdu registersGetResponse() {
+		Get_Response_With_List.SubSeqOf_result results = new Get_Response_With_List.SubSeqOf_result();
+		for (int i = 0; i < REGISTERS.length; i++) {
+			Get_Data_Result result = new Get_Data_Result();
+			result.setdata(DataConverter.toPdu(DataObject.newUInteger32Data(1234567L * (i + 1))));
+			results.add(result);
+		}
+
+		GET_Response response = new GET_Response();
+		response.setget_response_with_list(new Get_Response_With_List(invokeId(), results));
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setget_response(response);
+		return pdu;
+	}
+
+	/**
+	 * Set request of the time of the clock.
+	 * 
+	 * @return the request
+	 */
+	public static COSEMpdu clockSetRequest() {
+		Data time = DataConverter
+				.toPdu(DataObject.newOctetStringData(new CosemDateTime(2016, 1, 1, 12, 0, 0, 60).encode()));
+
+		SET_Request setRequest = new SET_Request();
+		setRequest.setset_request_normal(
+				new Set_Request_Normal(invokeId(), attributeDescriptor(8, CLOCK, 2), null, time));
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setset_request(setRequest);
+		return pdu;
+	}
+
+	/**
+	 * Response to a set request.
+	 * 
+	 * @return the response
+	 */
+	public static COSEMpdu setResponse() {
+		SET_Response setResponse = new SET_Response();
+		setResponse.setset_response_normal(new Set_Response_Normal(invokeId(), new AxdrEnum(0)));
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setset_response(setResponse);
+		return pdu;
+	}
+
+	/**
+	 * Action request transferring a block of a firmware image.
+	 * 
+	 * @return the request
+	 */
+	public static COSEMpdu imageBlockActionRequest() {
+		byte[] block = new byte[IMAGE_BLOCK_SIZE];
+		for (int i = 0; i < block.length; i++) {
+			block[i] = (byte) (i * 31);
+		}
+		Data parameters = DataConverter.toPdu(DataObject.newStructureData(
+				Arrays.asList(DataObject.newUInteger32Data(17), DataObject.newOctetStringData(block))));
+
+		ACTION_Request actionRequest = new ACTION_Request();
+		actionRequest.setaction_request_normal(new Action_Request_Normal(invokeId(),
+				new Cosem_Method_Descriptor(new Unsigned16(18), new Cosem_Object_Instance_Id(IMAGE_TRANSFER.bytes()),
+						new Integer8(2)),
+				parameters));
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setaction_request(actionRequest);
+		return pdu;
+	}
+
+	/**
+	 * Response to an action request without return parameters.
+	 * 
+	 * @return the response
+	 */
+	public static COSEMpdu actionResponse() {
+		Action_Response_With_Optional_Data singleResponse = new Action_Response_With_Optional_Data();
+		singleResponse.result = new AxdrEnum(0);
+
+		ACTION_Response actionResponse = new ACTION_Response();
+		actionResponse.setaction_response_normal(new Action_Response_Normal(invokeId(), singleResponse));
+		COSEMpdu pdu = new COSEMpdu();
+		pdu.setaction_response(actionResponse);
+		return pdu;
+	}
+
+	/**
+	 * Encodes an A-XDR type.
+	 * 
+	 * @param pdu
+	 *            the type to encode
+	 * @return the encoding
+	 * @throws IOException
+	 *             if the type could not be encoded
+	 */
+	public static byte[] encode(AxdrType pdu) throws IOException {
+		BerByteArrayOutputStream os = new BerByteArrayOutputStream(1024, true);
+		pdu.encode(os);
+		return os.getArray();
+	}
+
+	private static Cosem_Attribute_Descriptor attributeDescriptor(int classId, ObisCode obisCode, int attributeId) {
+		return new Cosem_Attribute_Descriptor(new Unsigned16(classId), new Cosem_Object_Instance_Id(obisCode.bytes()),
+				new Integer8(attributeId));
+	}
+
+	private static Invoke_Id_And_Priority invokeId() {
+		return new Invoke_Id_And_Priority(new byte[] { (byte) 0xC1 });
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private Payloads() {
+	}
+
+}
@@ -20,30 +20,41 @@
  */
 package org.openmuc.jdlms;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
 import org.openmuc.jasn1.ber.types.BerObjectIdentifier;
 import org.openmuc.jasn1.ber.types.BerOctetString;
+import org.openmuc.jdlms.datatypes.DataVisitor;
 import org.openmuc.jdlms.internal.APdu;
 import org.openmuc.jdlms.internal.ConfirmedMode;
+import org.openmuc.jdlms.internal.EncodeBuffer;
 import org.openmuc.jdlms.internal.EncryptionSettings;
 import org.openmuc.jdlms.internal.Settings;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
 import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
 import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
 import org.openmuc.jdlms.internal.asn1.cosem.Conformance;
 import org.openmuc.jdlms.internal.asn1.cosem.InitiateRequest;
-import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
 import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
 import org.openmuc.jdlms.internal.asn1.cosem.Unsigned8;
 import org.openmuc.jdlms.internal.asn1.iso.acse.AARE_apdu;
@@ -54,6 +65,7 @@ import org.openmuc.jdlms.internal.asn1.iso.acse.AP_title;
 import org.openmuc.jdlms.internal.asn1.iso.acse.AP_title_form2;
 import org.openmuc.jdlms.internal.asn1.iso.acse.Authentication_value;
 import org.openmuc.jdlms.internal.asn1.iso.acse.Mechanism_name;
+import org.openmuc.jdlms.internal.security.DataTransmissionLevel;
 import org.openmuc.jdlms.internal.security.HlsProcessorGmac;
 import org.openmuc.jdlms.internal.security.HlsSecretProcessor;
 import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
@@ -71,12 +83,56 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 	private Conformance negotiatedFeatures;
 	private int maxSendPduSize = 0xffff;
 
-	private final byte[] buffer;
+	/*
+	 * Initial size of the arrays PDUs are encoded into, it is raised to the max receive PDU size of the meter after
+	 * connecting. The arrays are taken from the pool for each PDU and returned once it has been sent.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+	/*
+	 * Bytes an APDU may exceed the plain COSEM PDU by, e.g. for the ciphering header and authentication tag.
+	 */
+	private static final int APDU_OVERHEAD = 64;
+
+	private final EncodeBuffer encodeBuffer;
+	/*
+	 * Guards the encode buffer and keeps the PDUs of concurrent requests from interleaving on the transport layer.
+	 */
+	private final Lock sendLock = new ReentrantLock();
+
+	/*
+	 * Requests of all confirmed services start with the COSEM PDU tag, the request type and the invoke id and priority.
+	 */
+	private static final int INVOKE_ID_AND_PRIORITY_POSITION = 2;
 
 	private final BlockingQueue<APdu> incomingResponses = new LinkedBlockingQueue<APdu>();
 
+	private static final int NUM_INVOKE_IDS = 16;
+	private static final int ALL_INVOKE_IDS_IN_USE = 0xFFFF;
+
+	private final Lock invokeIdLock = new ReentrantLock();
+	private final ConfirmedRequest<?>[] pendingRequests = new ConfirmedRequest<?>[NUM_INVOKE_IDS];
+	private final Queue<ConfirmedRequest<?>> waitingRequests = new LinkedList<ConfirmedRequest<?>>();
+	private int invokeIdsInUse;
 	private int invokeId;
 
+	/*
+	 * Time after which the idle worker thread of a connection ends.
+	 */
+	private static final long WORKER_KEEP_ALIVE_MILLIS = 1000;
+
+	/*
+	 * Runs the work which must not block the shared request timer or the thread which completed a request, e.g.
+	 * timeouts and the start of queued requests. One thread, so the tasks of a connection run in order.
+	 */
+	private final ThreadPoolExecutor worker;
+
+	/*
+	 * The shared timer, taken on the first scheduled task and released when the connection is closed. Guarded by the
+	 * invoke id lock.
+	 */
+	private RequestTimer timer;
+	private boolean timerReleased = false;
+
 	private final SecureRandom random;
 
 	private IOException ioException;
@@ -90,8 +146,11 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 
 		this.transLayerCon = transLayerCon;
 
-		this.buffer = new byte[1000];
+		this.encodeBuffer = new EncodeBuffer(INITIAL_BUFFER_SIZE);
 		this.invokeId = 1;
+		this.worker = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), settings.threadFactory());
+		this.worker.allowCoreThreadTimeOut(true);
 		this.random = new SecureRandom();
 
 		// connect();
@@ -148,9 +207,15 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 
 		APdu aarqAPdu = new APdu(aarqAcseAPdu, xDlmsInitiateRequestPdu);
 
-		int length = aarqAPdu.encode(buffer, connectionSettings, encryptionSettings);
+		sendLock.lock();
+		try {
+			aarqAPdu.encode(encodeBuffer.reset(), connectionSettings, encryptionSettings);
 
-		transLayerCon.send(buffer, buffer.length - length, length);
+			transLayerCon.send(encodeBuffer.array(), encodeBuffer.offset(), encodeBuffer.length());
+		} finally {
+			encodeBuffer.release();
+			sendLock.unlock();
+		}
 
 		if (confirmedModeEnabled()) {
 			connectWithEnablededConfirmedMode(hlsSecretProcessor, clientToServerChallenge);
@@ -181,36 +246,289 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 		return this.maxSendPduSize;
 	}
 
-	protected Invoke_Id_And_Priority invokeIdAndPriorityFor(boolean highPriority) {
+	/**
+	 * Starts the request as soon as an invoke id is available. If all 16 invoke ids are used by outstanding requests,
+	 * the request is queued until one of them is completed.
+	 * 
+	 * @param request
+	 *            the request to start
+	 * @return the future of the request
+	 */
+	<T> CompletableFuture<T> submit(ConfirmedRequest<T> request) {
+		int id;
+		invokeIdLock.lock();
+		try {
+			id = acquireInvokeId(request);
+			if (id == -1) {
+				waitingRequests.add(request);
+				return request.future();
+			}
+		} finally {
+			invokeIdLock.unlock();
+		}
 
-		byte[] invokeIdAndPriorityBytes = new byte[] { (byte) (invokeId & 0xF) };
-		if (confirmedModeEnabled()) {
-			invokeIdAndPriorityBytes[0] |= 0x40;
+		request.start(id, invokeIdAndPriorityFor(id, request.highPriority()));
+		return request.future();
+	}
+
+	/**
+	 * Frees the invoke id of a completed request and starts the next waiting request, if any, on the worker thread.
+	 * 
+	 * @param request
+	 *            the completed request
+	 */
+	void requestFinished(ConfirmedRequest<?> request) {
+		final ConfirmedRequest<?> next;
+		final int nextId;
+		invokeIdLock.lock();
+		try {
+			int id = request.invokeId();
+			if (pendingRequests[id] == request) {
+				pendingRequests[id] = null;
+				invokeIdsInUse &= ~(1 << id);
+			}
+
+			next = waitingRequests.poll();
+			if (next == null) {
+				return;
+			}
+			nextId = acquireInvokeId(next);
+		} finally {
+			invokeIdLock.unlock();
 		}
-		if (highPriority) {
-			invokeIdAndPriorityBytes[0] |= 0x80;
+
+		// not started by the calling thread, it holds the lock of the completed request and may be a reader thread
+		final byte invokeIdAndPriority = invokeIdAndPriorityFor(nextId, next.highPriority());
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				next.start(nextId, invokeIdAndPriority);
+			}
+		});
+	}
+
+	/**
+	 * Runs a task on the worker thread of this connection. Used for work which may block on the transport layer,
+	 * e.g. sending, and which is triggered by a thread that must not block.
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	void execute(Runnable task) {
+		worker.execute(task);
+	}
+
+	/**
+	 * Runs a task on the worker thread of this connection after the given delay. The shared request timer only hands
+	 * the task over, so it never waits for the transport layer.
+	 * 
+	 * @param task
+	 *            the task
+	 * @param delayMillis
+	 *            the delay in milliseconds
+	 * @return the future to cancel the task before it is due
+	 */
+	ScheduledFuture<?> schedule(final Runnable task, long delayMillis) {
+		return timer().schedule(new Runnable() {
+			@Override
+			public void run() {
+				execute(task);
+			}
+		}, delayMillis);
+	}
+
+	private RequestTimer timer() {
+		invokeIdLock.lock();
+		try {
+			if (timer == null) {
+				timer = RequestTimer.acquire(connectionSettings.threadFactory());
+				if (timerReleased) {
+					// a released timer still runs the tasks, it is only no longer shared with new connections
+					timer.release();
+				}
+			}
+			return timer;
+		} finally {
+			invokeIdLock.unlock();
 		}
+	}
 
-		// byte[] invokeIdAndPriorityBytes = new byte[] { (byte) (invokeId << 4) };
-		// if (confirmedModeIsSet()) {
-		// invokeIdAndPriorityBytes[0] |= 0x02;
-		// }
-		// if (highPriority) {
-		// invokeIdAndPriorityBytes[0] |= 0x01;
-		// }
+	private void releaseTimer() {
+		invokeIdLock.lock();
+		try {
+			if (!timerReleased) {
+				timerReleased = true;
+				if (timer != null) {
+					timer.release();
+				}
+			}
+		} finally {
+			invokeIdLock.unlock();
+		}
+	}
+
+	/**
+	 * Hands a response over to the outstanding request with the same invoke id. Responses nobody is waiting for (e.g.
+	 * late responses of a request that already timed out) are discarded.
+	 * 
+	 * @param invokeId
+	 *            the invoke id of the response
+	 * @param pdu
+	 *            the response
+	 */
+	protected void dispatchResponse(int invokeId, COSEMpdu pdu) {
+		if (invokeId < 0 || invokeId >= NUM_INVOKE_IDS) {
+			return;
+		}
+
+		ConfirmedRequest<?> request;
+		invokeIdLock.lock();
+		try {
+			request = pendingRequests[invokeId];
+		} finally {
+			invokeIdLock.unlock();
+		}
+
+		if (request != null) {
+			request.responseReceived(pdu);
+		}
+	}
+
+	/**
+	 * Hands a response which has not been decoded yet over to the outstanding request with the same invoke id.
+	 * 
+	 * @param invokeId
+	 *            the invoke id of the response
+	 * @param pdu
+	 *            the encoded response
+	 * @see #dispatchResponse(int, COSEMpdu)
+	 */
+	protected void dispatchRawResponse(int invokeId, byte[] pdu) {
+		if (invokeId < 0 || invokeId >= NUM_INVOKE_IDS) {
+			return;
+		}
+
+		ConfirmedRequest<?> request;
+		invokeIdLock.lock();
+		try {
+			request = pendingRequests[invokeId];
+		} finally {
+			invokeIdLock.unlock();
+		}
+
+		if (request != null) {
+			request.rawResponseReceived(pdu);
+		}
+	}
 
-		Invoke_Id_And_Priority result = new Invoke_Id_And_Priority(invokeIdAndPriorityBytes);
+	private int acquireInvokeId(ConfirmedRequest<?> request) {
+		if (invokeIdsInUse == ALL_INVOKE_IDS_IN_USE) {
+			return -1;
+		}
+
+		while ((invokeIdsInUse & (1 << invokeId)) != 0) {
+			invokeId = (invokeId + 1) % NUM_INVOKE_IDS;
+		}
+
+		int result = invokeId;
+		invokeIdsInUse |= 1 << result;
+		pendingRequests[result] = request;
+		invokeId = (invokeId + 1) % NUM_INVOKE_IDS;
 
-		invokeId = (invokeId + 1) % 16;
 		return result;
 	}
 
+	private byte invokeIdAndPriorityFor(int invokeId, boolean highPriority) {
+		byte invokeIdAndPriority = (byte) (invokeId & 0xF);
+		if (confirmedModeEnabled()) {
+			invokeIdAndPriority |= 0x40;
+		}
+		if (highPriority) {
+			invokeIdAndPriority |= 0x80;
+		}
+		return invokeIdAndPriority;
+	}
+
+	private void failOutstandingRequests(IOException e) {
+		List<ConfirmedRequest<?>> requests = new ArrayList<ConfirmedRequest<?>>();
+		invokeIdLock.lock();
+		try {
+			requests.addAll(waitingRequests);
+			waitingRequests.clear();
+			for (ConfirmedRequest<?> request : pendingRequests) {
+				if (request != null) {
+					requests.add(request);
+				}
+			}
+		} finally {
+			invokeIdLock.unlock();
+		}
+
+		for (ConfirmedRequest<?> request : requests) {
+			request.fail(e);
+		}
+	}
+
 	protected void send(COSEMpdu pdu) throws IOException {
+		encodeAndSend(pdu, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Sends the PDU if it does not exceed the max receive PDU size of the remote meter. The PDU is only encoded once,
+	 * so the size is known without encoding it beforehand.
+	 * 
+	 * @param pdu
+	 *            the PDU to send
+	 * @return false if the PDU is too large and has not been sent
+	 * @throws IOException
+	 *             if the PDU could not be sent
+	 */
+	protected boolean sendIfFits(COSEMpdu pdu) throws IOException {
+		return encodeAndSend(pdu, maxSendPduSize);
+	}
+
+	/**
+	 * Sends an already encoded PDU of a confirmed service request, e.g. of a prepared request. The PDU is copied, so
+	 * it can be shared by several connections.
+	 * 
+	 * @param pdu
+	 *            the encoded PDU
+	 * @param invokeIdAndPriority
+	 *            the invoke id and priority replacing the one of the encoded PDU
+	 * @throws IOException
+	 *             if the PDU could not be sent
+	 */
+	protected void sendEncoded(byte[] pdu, byte invokeIdAndPriority) throws IOException {
+
+		APdu aPdu = new APdu(null, null);
+		sendLock.lock();
+		try {
+			BerByteArrayOutputStream os = encodeBuffer.reset(pdu);
+			os.buffer[os.index + 1 + INVOKE_ID_AND_PRIORITY_POSITION] = invokeIdAndPriority;
+			aPdu.encodeWritten(os, pdu.length, connectionSettings, encryptionSettings);
+
+			transLayerCon.send(encodeBuffer.array(), encodeBuffer.offset(), encodeBuffer.length());
+		} finally {
+			encodeBuffer.release();
+			sendLock.unlock();
+		}
+	}
+
+	private boolean encodeAndSend(COSEMpdu pdu, int maxCosemPduSize) throws IOException {
 
 		APdu aPdu = new APdu(null, pdu);
-		int length = aPdu.encode(buffer, connectionSettings, encryptionSettings);
+		sendLock.lock();
+		try {
+			if (aPdu.encode(encodeBuffer.reset(), maxCosemPduSize, connectionSettings, encryptionSettings) < 0) {
+				return false;
+			}
 
-		transLayerCon.send(buffer, buffer.length - length, length);
+			transLayerCon.send(encodeBuffer.array(), encodeBuffer.offset(), encodeBuffer.length());
+		} finally {
+			encodeBuffer.release();
+			sendLock.unlock();
+		}
+		return true;
 	}
 
 	/**
@@ -232,6 +550,8 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 		} catch (IOException e) {
 			// TODO
 			// LoggingHelper.logStackTrace(e, logger);
+		} finally {
+			releaseTimer();
 		}
 	}
 
@@ -329,6 +649,108 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 	 */
 	public abstract List<MethodResult> action(boolean highPriority, MethodParameter... params) throws IOException;
 
+	/**
+	 * Variant of {@link #get(boolean, AttributeAddress...)} for attributes holding an array of structures, e.g. the
+	 * buffer of a profile generic object. The data is returned as {@link GetResult#resultColumns()} instead of a tree
+	 * of data objects.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param params
+	 *            Varargs of specifiers which attributes to send (See {@link AttributeAddress})
+	 * @return List of results from the smart meter in the same order as the requests
+	 * @throws IOException
+	 *             if the connection breaks or an attribute is not an array
+	 * @throws TimeoutException
+	 *             if the request times out
+	 */
+	public abstract List<GetResult> getColumns(boolean highPriority, AttributeAddress... params)
+			throws IOException, TimeoutException;
+
+	/**
+	 * Variant of {@link #get(boolean, AttributeAddress...)} for large responses of which only a few values are needed,
+	 * e.g. the object list of an association. The elements of arrays and structures are decoded from the received
+	 * bytes on first access, so the result keeps the encoded response in memory until it is no longer referenced.
+	 * <p>
+	 * Invalid values within the data are only detected on access and reported by an {@link IllegalStateException}.
+	 * Encrypted responses are decoded right away.
+	 * </p>
+	 *
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param params
+	 *            Varargs of specifiers which attributes to send (See {@link AttributeAddress})
+	 * @return List of results from the smart meter in the same order as the requests
+	 * @throws IOException
+	 *             if the connection breaks
+	 * @throws TimeoutException
+	 *             if the request times out
+	 */
+	public abstract List<GetResult> getLazy(boolean highPriority, AttributeAddress... params)
+			throws IOException, TimeoutException;
+
+	/**
+	 * Variant of {@link #get(boolean, AttributeAddress...)} for a single attribute, reporting its value to a visitor
+	 * while it is parsed instead of returning a tree of data objects. This avoids objects per value, e.g. if only a few
+	 * values of a large structure are needed.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param param
+	 *            the attribute to read
+	 * @param visitor
+	 *            the visitor receiving the value, it is called by the reader thread of the transport layer
+	 * @return the result code of the get operation. The visitor has been called if it is
+	 *         {@link AccessResultCode#SUCCESS}
+	 * @throws IOException
+	 *             if the connection breaks
+	 * @throws TimeoutException
+	 *             if the request times out
+	 */
+	public abstract AccessResultCode get(boolean highPriority, AttributeAddress param, DataVisitor visitor)
+			throws IOException, TimeoutException;
+
+	/**
+	 * Sends a prepared get request, see {@link #get(boolean, AttributeAddress...)}.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param request
+	 *            the prepared request
+	 * @return List of results from the smart meter in the same order as the parameters of the request
+	 * @throws IOException
+	 *             if the connection breaks
+	 * @throws TimeoutException
+	 *             if the request times out
+	 */
+	public abstract List<GetResult> get(boolean highPriority, PreparedGet request) throws IOException, TimeoutException;
+
+	/**
+	 * Sends a prepared set request, see {@link #set(boolean, SetParameter...)}.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param request
+	 *            the prepared request
+	 * @return List of results from the smart meter in the same order as the parameters of the request
+	 * @throws IOException
+	 *             if the connection breaks or the request times out
+	 */
+	public abstract List<AccessResultCode> set(boolean highPriority, PreparedSet request) throws IOException;
+
+	/**
+	 * Sends a prepared action request, see {@link #action(boolean, MethodParameter...)}.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param request
+	 *            the prepared request
+	 * @return List of results from the smart meter in the same order as the parameters of the request
+	 * @throws IOException
+	 *             if the connection breaks or the request times out
+	 */
+	public abstract List<MethodResult> action(boolean highPriority, PreparedAction request) throws IOException;
+
 	/**
 	 * Convenience method to call {@code disconnect(true)}
 	 * 
@@ -344,9 +766,13 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 
 	@Override
 	public void dataReceived(byte[] data) {
+		if (connectionSettings.dataTransmissionLevel() != DataTransmissionLevel.ENCRYPTED && processRawPdu(data)) {
+			return;
+		}
+
 		APdu aPdu;
 		try {
-			aPdu = new APdu(new DataInputStream(new ByteArrayInputStream(data)), this.connectionSettings,
+			aPdu = new APdu(new DataInputStream(new AxdrReader(data)), this.connectionSettings,
 					data[0] & 0xff, encryptionSettings);
 		} catch (IOException e) {
 			ioException = e;
@@ -372,6 +798,9 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 	@Override
 	public void connectionInterrupted(IOException e) {
 		ioException = e;
+		failOutstandingRequests(e);
+		releaseTimer();
+
 		try {
 			incomingResponses.put(new APdu(null, null));
 		} catch (InterruptedException e1) {
@@ -387,6 +816,19 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 
 	protected abstract void processPdu(COSEMpdu pdu);
 
+	/**
+	 * Gives the connection the chance to process an unencrypted PDU before it is decoded, e.g. to decode the data of
+	 * a response without the generated PDU classes.
+	 * 
+	 * @param pdu
+	 *            the encoded PDU
+	 * @return true if the PDU has been processed, false if it shall be decoded and passed to
+	 *         {@link #processPdu(COSEMpdu)}
+	 */
+	protected boolean processRawPdu(byte[] pdu) {
+		return false;
+	}
+
 	protected abstract void validateReferencingMethod() throws IOException;
 
 	protected abstract byte[] hlsAuthentication(byte[] processedChallenge) throws IOException;
@@ -421,6 +863,12 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 		COSEMpdu xDlmsInitResponse = decodedResponsePdu.cosemPdu;
 
 		this.maxSendPduSize = (int) xDlmsInitResponse.initiateResponse.server_max_receive_pdu_size.getValue();
+		sendLock.lock();
+		try {
+			encodeBuffer.ensureCapacity(maxSendPduSize + APDU_OVERHEAD);
+		} finally {
+			sendLock.unlock();
+		}
 		this.negotiatedFeatures = xDlmsInitResponse.initiateResponse.negotiated_conformance;
 
 		validateReferencingMethod();
@@ -524,6 +972,53 @@ abstract class ClientConnection implements TransportLayerConnectionListener {
 		return result;
 	}
 
+	/**
+	 * Returns a future which has already been completed with the given exception.
+	 * 
+	 * @param cause
+	 *            the exception
+	 * @return the failed future
+	 */
+	static <T> CompletableFuture<T> failedFuture(Throwable cause) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(cause);
+		return future;
+	}
+
+	/**
+	 * Blocks until the future of a request is completed.
+	 * 
+	 * @param future
+	 *            the future of the request
+	 * @return the result of the request
+	 * @throws IOException
+	 *             if the request failed or the calling thread has been interrupted
+	 * @throws TimeoutException
+	 *             if the request timed out
+	 */
+	static <T> T waitFor(CompletableFuture<T> future) throws IOException, TimeoutException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for incoming response", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
 	public Settings connectionSettings() {
 		return this.connectionSettings;
 	}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
+
+/**
+ * A confirmed service request which is driven by the responses of the remote meter.
+ * <p>
+ * The request is started by the connection as soon as one of the 16 invoke ids is free. Every response carrying the
+ * invoke id of this request is handed to {@link #processResponse(COSEMpdu)} on the reader thread of the transport
+ * layer. The implementation either sends the next PDU (e.g. the next block of a block transfer) or completes the
+ * request.
+ * </p>
+ * 
+ * @param <T>
+ *            the type of the result
+ */
+abstract class ConfirmedRequest<T> {
+
+	private final ClientConnection connection;
+	private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+	private final byte[] invokeIdAndPriorityBytes = new byte[1];
+	private final Invoke_Id_And_Priority invokeIdAndPriority = new Invoke_Id_And_Priority(invokeIdAndPriorityBytes);
+	private final boolean highPriority;
+
+	private int invokeId = -1;
+	private ScheduledFuture<?> timeoutTask;
+	private boolean done = false;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/*
+	 * Outcome of the finished request. The future is completed by the outermost unlock(), so stages attached by the
+	 * user do not run while the lock is held.
+	 */
+	private boolean completionPending = false;
+	private T result;
+	private Throwable cause;
+
+	private final Runnable timeoutHandler = new Runnable() {
+		@Override
+		public void run() {
+			timedOut();
+		}
+	};
+
+	ConfirmedRequest(ClientConnection connection, boolean highPriority) {
+		this.connection = connection;
+		this.highPriority = highPriority;
+	}
+
+	/**
+	 * Sends the first PDU of this request. Called once the request got an invoke id.
+	 * 
+	 * @throws IOException
+	 *             if the PDU could not be sent
+	 */
+	protected abstract void sendRequest() throws IOException;
+
+	/**
+	 * Processes a response with the invoke id of this request.
+	 * 
+	 * @param pdu
+	 *            the received response
+	 * @throws IOException
+	 *             if the response is invalid or the next PDU could not be sent
+	 */
+	protected abstract void processResponse(COSEMpdu pdu) throws IOException;
+
+	/**
+	 * Processes a response with the invoke id of this request which has not been decoded yet. The default
+	 * implementation decodes the PDU and passes it to {@link #processResponse(COSEMpdu)}.
+	 * 
+	 * @param pdu
+	 *            the encoded response
+	 * @throws IOException
+	 *             if the response is invalid or the next PDU could not be sent
+	 */
+	protected void processRawResponse(byte[] pdu) throws IOException {
+		COSEMpdu decodedPdu = new COSEMpdu();
+		decodedPdu.decode(new AxdrReader(pdu));
+		processResponse(decodedPdu);
+	}
+
+	/**
+	 * Invoke id and priority of this request. The value is set as soon as the request has been started, so PDUs
+	 * may reference this object before.
+	 * 
+	 * @return the invoke id and priority
+	 */
+	protected Invoke_Id_And_Priority invokeIdAndPriority() {
+		return invokeIdAndPriority;
+	}
+
+	protected void send(COSEMpdu pdu) throws IOException {
+		connection.send(pdu);
+		armTimeout();
+	}
+
+	/**
+	 * Sends the PDU if it does not exceed the max receive PDU size of the remote meter.
+	 * 
+	 * @param pdu
+	 *            the PDU to send
+	 * @return false if the PDU is too large and has not been sent
+	 * @throws IOException
+	 *             if the PDU could not be sent
+	 */
+	protected boolean sendIfFits(COSEMpdu pdu) throws IOException {
+		if (!connection.sendIfFits(pdu)) {
+			return false;
+		}
+		armTimeout();
+		return true;
+	}
+
+	/**
+	 * Sends an already encoded PDU after setting its invoke id and priority to the ones of this request.
+	 * 
+	 * @param pdu
+	 *            the encoded PDU of a confirmed service request
+	 * @throws IOException
+	 *             if the PDU could not be sent
+	 */
+	protected void sendEncoded(byte[] pdu) throws IOException {
+		connection.sendEncoded(pdu, invokeIdAndPriorityBytes[0]);
+		armTimeout();
+	}
+
+	protected void complete(T result) {
+		lock.lock();
+		try {
+			if (finish()) {
+				this.result = result;
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	protected void fail(Throwable cause) {
+		lock.lock();
+		try {
+			if (finish()) {
+				this.cause = cause;
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	CompletableFuture<T> future() {
+		return future;
+	}
+
+	boolean highPriority() {
+		return highPriority;
+	}
+
+	int invokeId() {
+		return invokeId;
+	}
+
+	void start(int invokeId, byte invokeIdAndPriority) {
+		lock.lock();
+		try {
+			this.invokeId = invokeId;
+			this.invokeIdAndPriorityBytes[0] = invokeIdAndPriority;
+
+			if (done) {
+				connection.requestFinished(this);
+				return;
+			}
+
+			try {
+				sendRequest();
+			} catch (IOException e) {
+				fail(e);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	void responseReceived(COSEMpdu pdu) {
+		lock.lock();
+		try {
+			if (done) {
+				return;
+			}
+			cancelTimeout();
+
+			try {
+				processResponse(pdu);
+			} catch (IOException e) {
+				fail(e);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	void rawResponseReceived(byte[] pdu) {
+		lock.lock();
+		try {
+			if (done) {
+				return;
+			}
+			cancelTimeout();
+
+			try {
+				processRawResponse(pdu);
+			} catch (IOException e) {
+				fail(e);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	private void timedOut() {
+		lock.lock();
+		try {
+			if (!done) {
+				fail(new TimeoutException("Timed out while waiting for incoming response."));
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	private void unlock() {
+		boolean completeFuture = false;
+		if (completionPending && lock.getHoldCount() == 1) {
+			completionPending = false;
+			completeFuture = true;
+		}
+		lock.unlock();
+
+		if (completeFuture) {
+			if (cause != null) {
+				future.completeExceptionally(cause);
+			}
+			else {
+				future.complete(result);
+			}
+		}
+	}
+
+	private void armTimeout() {
+		cancelTimeout();
+
+		long timeout = connection.connectionSettings().responseTimeout();
+		if (timeout > 0 && !done) {
+			timeoutTask = connection.schedule(timeoutHandler, timeout);
+		}
+	}
+
+	private void cancelTimeout() {
+		if (timeoutTask != null) {
+			timeoutTask.cancel(false);
+			timeoutTask = null;
+		}
+	}
+
+	private boolean finish() {
+		if (done) {
+			return false;
+		}
+		done = true;
+		completionPending = true;
+		cancelTimeout();
+		if (invokeId != -1) {
+			connection.requestFinished(this);
+		}
+		return true;
+	}
+
+}
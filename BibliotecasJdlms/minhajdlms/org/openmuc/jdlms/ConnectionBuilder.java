@@ -22,6 +22,8 @@ package org.openmuc.jdlms;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.openmuc.jdlms.internal.AuthenticationMechanism;
 import org.openmuc.jdlms.internal.ConfirmedMode;
@@ -43,6 +45,14 @@ abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
 
 	private int responseTimeout;
 	private final int messageFragmentTimeout;
+	private int coalescingWindow;
+	private int maxListSize;
+	private ThreadFactory threadFactory;
+
+	/*
+	 * One instance for all builders, so the connections built with the default share their timer and selector threads.
+	 */
+	private static final ThreadFactory DEFAULT_THREAD_FACTORY = Executors.defaultThreadFactory();
 
 	private String manufactureId;
 
@@ -67,6 +77,9 @@ abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
 
 		this.responseTimeout = 20000;
 		this.messageFragmentTimeout = 5000;
+		this.coalescingWindow = 0;
+		this.maxListSize = 0;
+		this.threadFactory = DEFAULT_THREAD_FACTORY;
 		this.manufactureId = "";
 
 		this.dataTransmissionLevel = DataTransmissionLevel.UNENCRYPTED;
@@ -189,6 +202,68 @@ abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
 		return self();
 	}
 
+	/**
+	 * Enables the coalescing of concurrent get requests. Get requests issued within the given time window are merged
+	 * into a single Get-Request-With-List, as long as the merged request fits into the PDU size of the remote meter.
+	 * Only used on LN connections and only if the meter supports multiple references. Default is 0 (disabled).
+	 * 
+	 * @param coalescingWindow
+	 *            time in milliseconds a get request waits for other get requests to be merged with.
+	 * @return T the ConnectionBuilder
+	 */
+	public T coalescingWindow(int coalescingWindow) {
+		if (coalescingWindow < 0) {
+			throw new IllegalArgumentException("Coalescing window must not be negative");
+		}
+		this.coalescingWindow = coalescingWindow;
+
+		return self();
+	}
+
+	/**
+	 * Sets the maximum number of attributes or methods the remote meter accepts in one list request. Larger get, set
+	 * and action calls are split into several requests. Default is 0 (limited by the PDU size only).
+	 * 
+	 * @param maxListSize
+	 *            the maximum number of parameters of one request
+	 * @return T the ConnectionBuilder
+	 */
+	public T maxListSize(int maxListSize) {
+		if (maxListSize < 0) {
+			throw new IllegalArgumentException("Max list size must not be negative");
+		}
+		this.maxListSize = maxListSize;
+
+		return self();
+	}
+
+	/**
+	 * Sets the factory of the threads a connection starts, e.g. the reader thread of a TCP connection. Default is
+	 * {@link Executors#defaultThreadFactory()}.
+	 * <p>
+	 * Connections built with the same factory share the threads which serve several connections, e.g. the request
+	 * timer, the NIO selector threads and the UDP socket. Pass the same instance to all builders to keep their number
+	 * low.
+	 * </p>
+	 * <p>
+	 * On a Java runtime with virtual threads, passing {@code Thread.ofVirtual().factory()} lets one process keep tens
+	 * of thousands of connections with the blocking API. The connections use locks instead of monitors, so blocked
+	 * virtual threads do not pin their carrier threads.
+	 * </p>
+	 * 
+	 * @param threadFactory
+	 *            the thread factory
+	 * @return T the ConnectionBuilder
+	 */
+	public T threadFactory(ThreadFactory threadFactory) {
+		if (threadFactory == null) {
+			throw new IllegalArgumentException("Thread factory must not be null");
+		}
+		this.threadFactory = threadFactory;
+
+		return self();
+	}
+
 	/**
 	 * Sets the manufactore ID.
 	 * 
@@ -268,6 +343,9 @@ abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
 		private final long deviceId;
 		private final int responseTimeout;
 		private final int messageFragmentTimeout;
+		private final int coalescingWindow;
+		private final int maxListSize;
+		private final ThreadFactory threadFactory;
 		private final String manufactureId;
 		private final DataTransmissionLevel dataTransmissionLevel;
 		private final int clientAccessPoint;
@@ -284,6 +362,9 @@ abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
 			this.deviceId = builder.deviceId;
 			this.responseTimeout = builder.responseTimeout;
 			this.messageFragmentTimeout = builder.messageFragmentTimeout;
+			this.coalescingWindow = builder.coalescingWindow;
+			this.maxListSize = builder.maxListSize;
+			this.threadFactory = builder.threadFactory;
 			this.manufactureId = builder.manufactureId;
 			this.dataTransmissionLevel = builder.dataTransmissionLevel;
 			this.clientAccessPoint = builder.clientAccessPoint;
@@ -330,6 +411,21 @@ abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
 			return this.messageFragmentTimeout;
 		}
 
+		@Override
+		public int coalescingWindow() {
+			return this.coalescingWindow;
+		}
+
+		@Override
+		public int maxListSize() {
+			return this.maxListSize;
+		}
+
+		@Override
+		public ThreadFactory threadFactory() {
+			return this.threadFactory;
+		}
+
 		@Override
 		public String manufactureId() {
 			return this.manufactureId;
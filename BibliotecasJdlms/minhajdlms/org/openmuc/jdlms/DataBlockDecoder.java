@@ -0,0 +1,471 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataVisitor;
+import org.openmuc.jdlms.internal.DataDecoder;
+import org.openmuc.jdlms.internal.DataParser;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Incremental decoder for the raw data of a get block transfer.
+ * <p>
+ * The raw data of the single blocks is fed into the decoder as it arrives. Every data element is decoded as soon as
+ * its last byte has been received, so only the bytes of the element currently being received are buffered. Arrays and
+ * structures are assembled from their decoded elements. Each completed top level element is handed to the listener.
+ * </p>
+ * <p>
+ * The raw data of a Get-Response-With-List is a SEQUENCE OF Get-Data-Result, whereas the raw data of a
+ * Get-Response-Normal is the data of the single attribute.
+ * </p>
+ * <p>
+ * Instead of decoding data objects, the decoder can report the values to a {@link DataVisitor}. Only the bytes of the
+ * current primitive value are buffered then. The listener is told when the values of a result have been reported.
+ * </p>
+ */
+class DataBlockDecoder {
+
+	interface Listener {
+		void resultDecoded(GetResult result);
+
+		/**
+		 * Called instead of {@link #resultDecoded(GetResult)} if the data of a result has been reported to the
+		 * visitor.
+		 */
+		void resultVisited();
+	}
+
+	private static final int INCOMPLETE = -1;
+
+	private final boolean withList;
+	private final Listener listener;
+	private final DataVisitor visitor;
+	private ByteBuffer view;
+
+	private byte[] buffer = new byte[256];
+	private int start = 0;
+	private int end = 0;
+
+	private final Deque<Container> containers = new ArrayDeque<Container>();
+
+	private int remainingResults = INCOMPLETE;
+	private boolean inResultData = false;
+	private int numResults = 0;
+
+	DataBlockDecoder(boolean withList, Listener listener) {
+		this.withList = withList;
+		this.listener = listener;
+		this.visitor = null;
+	}
+
+	/**
+	 * Creates a decoder for the raw data of a Get-Response-Normal reporting the values to a visitor.
+	 *
+	 * @param visitor
+	 *            the visitor receiving the values
+	 */
+	DataBlockDecoder(DataVisitor visitor) {
+		this(false, null, visitor);
+	}
+
+	/**
+	 * Creates a decoder reporting the values to a visitor and the end of each result to a listener.
+	 *
+	 * @param withList
+	 *            true if the raw data is a SEQUENCE OF Get-Data-Result
+	 * @param listener
+	 *            the listener receiving the access results and the end of the data results
+	 * @param visitor
+	 *            the visitor receiving the values
+	 */
+	DataBlockDecoder(boolean withList, Listener listener, DataVisitor visitor) {
+		this.withList = withList;
+		this.listener = listener;
+		this.visitor = visitor;
+	}
+
+	/**
+	 * Feeds the raw data of the next block into the decoder.
+	 *
+	 * @param rawData
+	 *            the raw data of the block
+	 * @throws IOException
+	 *             if the data is not a valid encoding
+	 */
+	void write(byte[] rawData) throws IOException {
+		append(rawData);
+
+		while (decodeNext()) {
+		}
+	}
+
+	/**
+	 * Called after the last block has been fed into the decoder.
+	 *
+	 * @return the number of decoded results
+	 * @throws IOException
+	 *             if the raw data ended in the middle of an element
+	 */
+	int finish() throws IOException {
+		if (start != end || !containers.isEmpty() || inResultData || (withList && remainingResults != 0)) {
+			throw new IOException("Data block transfer ended with an incomplete data element.");
+		}
+		return numResults;
+	}
+
+	private boolean decodeNext() throws IOException {
+		if (containers.isEmpty() && withList && !inResultData) {
+			return decodeResultHeader();
+		}
+
+		if (start == end) {
+			return false;
+		}
+
+		int tag = buffer[start] & 0xff;
+		Data.Choices choice = Data.Choices.valueOf(tag);
+
+		if (choice == Data.Choices.ARRAY || choice == Data.Choices.STRUCTURE) {
+			int lengthSize = lengthSizeAt(start + 1);
+			if (lengthSize == INCOMPLETE) {
+				return false;
+			}
+			int numElements = lengthAt(start + 1);
+			start += 1 + lengthSize;
+
+			Container container = new Container(choice, numElements, visitor == null);
+			if (visitor != null) {
+				if (choice == Data.Choices.ARRAY) {
+					visitor.onArrayStart(numElements);
+				}
+				else {
+					visitor.onStructureStart(numElements);
+				}
+			}
+			if (numElements == 0) {
+				containerDecoded(container);
+			}
+			else {
+				containers.push(container);
+			}
+			return true;
+		}
+
+		int size = dataSizeAt(start, choice);
+		if (size == INCOMPLETE) {
+			return false;
+		}
+
+		if (visitor != null) {
+			if (view == null || view.array() != buffer) {
+				view = ByteBuffer.wrap(buffer);
+			}
+			view.limit(start + size);
+			view.position(start);
+			DataParser.parse(view, visitor);
+			start += size;
+			elementDecoded(null);
+			return true;
+		}
+
+		DataObject data = DataDecoder.decode(ByteBuffer.wrap(buffer, start, size));
+		start += size;
+
+		elementDecoded(data);
+		return true;
+	}
+
+	/*
+	 * Decodes the length of the Get-Data-Result sequence and the choice of the next Get-Data-Result.
+	 */
+	private boolean decodeResultHeader() throws IOException {
+		if (remainingResults == INCOMPLETE) {
+			int lengthSize = lengthSizeAt(start);
+			if (lengthSize == INCOMPLETE) {
+				return false;
+			}
+			remainingResults = lengthAt(start);
+			start += lengthSize;
+			return true;
+		}
+
+		if (remainingResults == 0 || start == end) {
+			return false;
+		}
+
+		int choice = buffer[start] & 0xff;
+		if (choice == 0) {
+			start++;
+			inResultData = true;
+			return true;
+		}
+		else if (choice == 1) {
+			if (end - start < 2) {
+				return false;
+			}
+			int resultCode = buffer[start + 1] & 0xff;
+			start += 2;
+			remainingResults--;
+			numResults++;
+			listener.resultDecoded(new GetResult(AccessResultCode.forValue(resultCode)));
+			return true;
+		}
+		else {
+			throw new IOException("Invalid Get-Data-Result choice " + choice + " in data block.");
+		}
+	}
+
+	private void elementDecoded(DataObject element) {
+		while (!containers.isEmpty()) {
+			Container container = containers.peek();
+			if (!container.add(element)) {
+				return;
+			}
+			containers.pop();
+			if (visitor != null) {
+				visitor.onEnd();
+			}
+			element = container.toDataObject();
+		}
+
+		if (withList) {
+			inResultData = false;
+			remainingResults--;
+		}
+		numResults++;
+		if (listener == null) {
+			return;
+		}
+		if (visitor != null) {
+			listener.resultVisited();
+		}
+		else {
+			listener.resultDecoded(new GetResult(element));
+		}
+	}
+
+	private void containerDecoded(Container container) {
+		if (visitor != null) {
+			visitor.onEnd();
+		}
+		elementDecoded(container.toDataObject());
+	}
+
+	/*
+	 * Size of the data element starting at index, including the tag. Arrays and structures are decoded element by
+	 * element, so they are only measured if they are part of a compact array type description.
+	 */
+	private int dataSizeAt(int index, Data.Choices choice) throws IOException {
+		int contentIndex = index + 1;
+
+		switch (choice) {
+		case NULL_DATA:
+		case DONT_CARE:
+			return fixedSize(index, 1);
+
+		case BOOL:
+		case BCD:
+		case INTEGER:
+		case UNSIGNED:
+		case ENUMERATE:
+			return fixedSize(index, 2);
+
+		case LONG_INTEGER:
+		case LONG_UNSIGNED:
+			return fixedSize(index, 3);
+
+		case DOUBLE_LONG:
+		case DOUBLE_LONG_UNSIGNED:
+			return fixedSize(index, 5);
+
+		case LONG64:
+		case LONG64_UNSIGNED:
+			return fixedSize(index, 9);
+
+		case BIT_STRING: {
+			int lengthSize = lengthSizeAt(contentIndex);
+			if (lengthSize == INCOMPLETE) {
+				return INCOMPLETE;
+			}
+			int numBits = lengthAt(contentIndex);
+			return fixedSize(index, 1 + lengthSize + (numBits + 7) / 8);
+		}
+
+		case FLOAT32:
+		case TIME:
+			return fixedSize(index, 5);
+
+		case DATE:
+			return fixedSize(index, 6);
+
+		case FLOAT64:
+			return fixedSize(index, 9);
+
+		case DATE_TIME:
+			return fixedSize(index, 13);
+
+		case OCTET_STRING:
+		case VISIBLE_STRING:
+			return octetStringSizeAt(index, contentIndex);
+
+		case COMPACT_ARRAY: {
+			int typeDescriptionSize = typeDescriptionSizeAt(contentIndex);
+			if (typeDescriptionSize == INCOMPLETE) {
+				return INCOMPLETE;
+			}
+			return octetStringSizeAt(index, contentIndex + typeDescriptionSize);
+		}
+
+		default:
+			throw new IOException("Unknown data type " + (buffer[index] & 0xff) + " in data block.");
+		}
+	}
+
+	private int octetStringSizeAt(int index, int lengthIndex) {
+		int lengthSize = lengthSizeAt(lengthIndex);
+		if (lengthSize == INCOMPLETE) {
+			return INCOMPLETE;
+		}
+		return fixedSize(index, lengthIndex - index + lengthSize + lengthAt(lengthIndex));
+	}
+
+	private int typeDescriptionSizeAt(int index) throws IOException {
+		if (index >= end) {
+			return INCOMPLETE;
+		}
+
+		Data.Choices choice = Data.Choices.valueOf(buffer[index] & 0xff);
+		if (choice == Data.Choices.ARRAY) {
+			// tag, number of elements (unsigned16) and the type description of the elements
+			int elementTypeSize = typeDescriptionSizeAt(index + 3);
+			return elementTypeSize == INCOMPLETE ? INCOMPLETE : 3 + elementTypeSize;
+		}
+		else if (choice == Data.Choices.STRUCTURE) {
+			int lengthSize = lengthSizeAt(index + 1);
+			if (lengthSize == INCOMPLETE) {
+				return INCOMPLETE;
+			}
+			int numElements = lengthAt(index + 1);
+			int size = 1 + lengthSize;
+			for (int i = 0; i < numElements; i++) {
+				int elementTypeSize = typeDescriptionSizeAt(index + size);
+				if (elementTypeSize == INCOMPLETE) {
+					return INCOMPLETE;
+				}
+				size += elementTypeSize;
+			}
+			return size;
+		}
+		else if (choice == Data.Choices._ERR_NONE_SELECTED) {
+			throw new IOException("Unknown type description " + (buffer[index] & 0xff) + " in data block.");
+		}
+		return 1;
+	}
+
+	private int fixedSize(int index, int size) {
+		return end - index >= size ? size : INCOMPLETE;
+	}
+
+	/*
+	 * Size of the A-XDR length field at index.
+	 */
+	private int lengthSizeAt(int index) {
+		if (index >= end) {
+			return INCOMPLETE;
+		}
+		int first = buffer[index] & 0xff;
+		int size = (first & 0x80) == 0x80 ? 1 + (first & 0x7f) : 1;
+		return end - index >= size ? size : INCOMPLETE;
+	}
+
+	/*
+	 * Value of the complete A-XDR length field at index.
+	 */
+	private int lengthAt(int index) {
+		int first = buffer[index] & 0xff;
+		if ((first & 0x80) == 0) {
+			return first;
+		}
+		int length = 0;
+		for (int i = 1; i <= (first & 0x7f); i++) {
+			length = (length << 8) | (buffer[index + i] & 0xff);
+		}
+		return length;
+	}
+
+	private void append(byte[] rawData) {
+		int pending = end - start;
+		if (buffer.length - end < rawData.length) {
+			byte[] target = buffer;
+			if (buffer.length < pending + rawData.length) {
+				target = new byte[Math.max(buffer.length * 2, pending + rawData.length)];
+			}
+			System.arraycopy(buffer, start, target, 0, pending);
+			buffer = target;
+			start = 0;
+			end = pending;
+		}
+		System.arraycopy(rawData, 0, buffer, end, rawData.length);
+		end += rawData.length;
+	}
+
+	private static class Container {
+		private final Data.Choices choice;
+		private final int numElements;
+		private final List<DataObject> elements;
+		private int numDecoded = 0;
+
+		Container(Data.Choices choice, int numElements, boolean keepElements) {
+			this.choice = choice;
+			this.numElements = numElements;
+			this.elements = keepElements ? new ArrayList<DataObject>(Math.min(numElements, 1024)) : null;
+		}
+
+		/**
+		 * @return true if all elements have been decoded
+		 */
+		boolean add(DataObject element) {
+			if (elements != null) {
+				elements.add(element);
+			}
+			return ++numDecoded == numElements;
+		}
+
+		DataObject toDataObject() {
+			if (elements == null) {
+				return null;
+			}
+			if (choice == Data.Choices.ARRAY) {
+				return DataObject.newArrayData(elements);
+			}
+			return DataObject.newStructureData(elements);
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.openmuc.jdlms.internal.EncodedDataInputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_SA;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned32;
+
+/**
+ * Cuts the encoded values of a set or action request into the data blocks of a block transfer.
+ * <p>
+ * The blocks are read from the source when they are about to be sent, so the values never have to be encoded as a
+ * whole.
+ * </p>
+ */
+class DataBlockWriter {
+
+	/**
+	 * Encoded size of an empty DataBlock-SA: last block flag, block number and the length of the raw data.
+	 */
+	static final int EMPTY_BLOCK_SIZE = 6;
+
+	private final EncodedDataInputStream source;
+	private long blockNumber = 0;
+
+	DataBlockWriter(EncodedDataInputStream source) {
+		this.source = source;
+	}
+
+	/**
+	 * Reads the next block from the source.
+	 *
+	 * @param blockSize
+	 *            the maximum number of raw data bytes of the block
+	 * @return the next block
+	 * @throws IOException
+	 *             if the block size is not positive or the source could not be read
+	 */
+	DataBlock_SA nextBlock(int blockSize) throws IOException {
+		if (blockSize <= 0) {
+			throw new IOException("Max receive PDU size of the remote meter is too small for block transfer.");
+		}
+
+		byte[] rawData = new byte[blockSize];
+		int length = source.read(rawData, 0, blockSize);
+		if (length < blockSize) {
+			rawData = Arrays.copyOf(rawData, Math.max(length, 0));
+		}
+
+		blockNumber++;
+		return new DataBlock_SA(new AxdrBoolean(!source.hasRemaining()), new Unsigned32(blockNumber),
+				new AxdrOctetString(rawData));
+	}
+
+	/**
+	 * Checks the block number the remote meter acknowledged or requested the next block for.
+	 *
+	 * @param acknowledgedBlockNumber
+	 *            the block number sent by the remote meter
+	 * @throws IOException
+	 *             if all blocks have been sent or the block number does not match the last block sent
+	 */
+	void checkAcknowledged(long acknowledgedBlockNumber) throws IOException {
+		if (!source.hasRemaining()) {
+			throw new IOException("Remote meter requested a data block, but all data blocks have been sent.");
+		}
+		if (acknowledgedBlockNumber != blockNumber) {
+			throw new IOException("Remote meter acknowledged data block " + acknowledgedBlockNumber + ", but block "
+					+ blockNumber + " has been sent.");
+		}
+	}
+
+}
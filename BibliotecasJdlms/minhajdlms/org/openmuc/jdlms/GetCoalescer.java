@@ -0,0 +1,218 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Merges get requests of concurrent callers into one Get-Request-With-List.
+ * <p>
+ * The first request of a batch starts a timer running for the length of the coalescing window. All requests
+ * arriving until the timer expires are sent together, unless the merged request would exceed the given maximum size.
+ * In that case the current batch is sent immediately and a new one is started. The results of the
+ * Get-Response-With-List are handed back to the callers in the order of their attribute addresses.
+ * </p>
+ * <p>
+ * An expired batch is sent by the worker thread of the connection, as sending may block on the transport layer.
+ * </p>
+ */
+class GetCoalescer {
+
+	/**
+	 * Sends the merged attribute addresses as one get request.
+	 */
+	interface Sender {
+		CompletableFuture<List<GetResult>> send(AttributeAddress[] params);
+	}
+
+	private final Sender sender;
+	private final ClientConnection connection;
+	private final int window;
+
+	/*
+	 * Guards the current batch.
+	 */
+	private final Lock lock = new ReentrantLock();
+	private List<PendingGet> batch = new ArrayList<PendingGet>();
+	private int batchSize = 0;
+	private int batchGeneration = 0;
+
+	GetCoalescer(Sender sender, ClientConnection connection, int window) {
+		this.sender = sender;
+		this.connection = connection;
+		this.window = window;
+	}
+
+	/**
+	 * Adds attribute addresses to the current batch.
+	 *
+	 * @param params
+	 *            the attribute addresses of the caller
+	 * @param size
+	 *            the encoded size of the attribute descriptors
+	 * @param maxSize
+	 *            the maximum encoded size of all attribute descriptors of one batch
+	 * @return a future completed with the results of params
+	 */
+	CompletableFuture<List<GetResult>> add(AttributeAddress[] params, int size, int maxSize) {
+		if (size > maxSize) {
+			return sender.send(params);
+		}
+
+		PendingGet pendingGet = new PendingGet(params);
+		List<PendingGet> fullBatch = null;
+		boolean startTimer;
+
+		lock.lock();
+		try {
+			if (batchSize + size > maxSize) {
+				fullBatch = takeBatch();
+			}
+			startTimer = batch.isEmpty();
+			batch.add(pendingGet);
+			batchSize += size;
+		} finally {
+			lock.unlock();
+		}
+
+		if (fullBatch != null) {
+			send(fullBatch);
+		}
+		if (startTimer) {
+			scheduleFlush();
+		}
+
+		return pendingGet.future;
+	}
+
+	private void scheduleFlush() {
+		final int generation;
+		lock.lock();
+		try {
+			generation = batchGeneration;
+		} finally {
+			lock.unlock();
+		}
+
+		connection.schedule(new Runnable() {
+			@Override
+			public void run() {
+				flush(generation);
+			}
+		}, window);
+	}
+
+	private void flush(int generation) {
+		List<PendingGet> fullBatch;
+		lock.lock();
+		try {
+			if (generation != batchGeneration) {
+				// batch has already been sent because it was full
+				return;
+			}
+			fullBatch = takeBatch();
+		} finally {
+			lock.unlock();
+		}
+		send(fullBatch);
+	}
+
+	private List<PendingGet> takeBatch() {
+		List<PendingGet> fullBatch = batch;
+		batch = new ArrayList<PendingGet>();
+		batchSize = 0;
+		batchGeneration++;
+		return fullBatch;
+	}
+
+	private void send(final List<PendingGet> fullBatch) {
+		if (fullBatch.isEmpty()) {
+			return;
+		}
+
+		if (fullBatch.size() == 1) {
+			PendingGet pendingGet = fullBatch.get(0);
+			sender.send(pendingGet.params).whenComplete(pendingGet);
+			return;
+		}
+
+		int numParams = 0;
+		for (PendingGet pendingGet : fullBatch) {
+			numParams += pendingGet.params.length;
+		}
+
+		AttributeAddress[] merged = new AttributeAddress[numParams];
+		int index = 0;
+		for (PendingGet pendingGet : fullBatch) {
+			System.arraycopy(pendingGet.params, 0, merged, index, pendingGet.params.length);
+			index += pendingGet.params.length;
+		}
+
+		final int expectedResults = numParams;
+		sender.send(merged).whenComplete(new BiConsumer<List<GetResult>, Throwable>() {
+			@Override
+			public void accept(List<GetResult> results, Throwable cause) {
+				if (cause == null && (results == null || results.size() != expectedResults)) {
+					cause = new IOException("Remote meter answered a merged get request of " + expectedResults
+							+ " attributes with " + (results == null ? 0 : results.size()) + " results.");
+				}
+
+				int index = 0;
+				for (PendingGet pendingGet : fullBatch) {
+					if (cause != null) {
+						pendingGet.future.completeExceptionally(cause);
+					}
+					else {
+						int end = index + pendingGet.params.length;
+						pendingGet.future.complete(new ArrayList<GetResult>(results.subList(index, end)));
+						index = end;
+					}
+				}
+			}
+		});
+	}
+
+	private static class PendingGet implements BiConsumer<List<GetResult>, Throwable> {
+		private final AttributeAddress[] params;
+		private final CompletableFuture<List<GetResult>> future = new CompletableFuture<List<GetResult>>();
+
+		PendingGet(AttributeAddress[] params) {
+			this.params = params;
+		}
+
+		@Override
+		public void accept(List<GetResult> results, Throwable cause) {
+			if (cause != null) {
+				future.completeExceptionally(cause);
+			}
+			else {
+				future.complete(results);
+			}
+		}
+	}
+
+}
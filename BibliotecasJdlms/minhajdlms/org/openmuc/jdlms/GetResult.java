@@ -20,6 +20,7 @@
  */
 package org.openmuc.jdlms;
 
+import org.openmuc.jdlms.datatypes.ColumnarTable;
 import org.openmuc.jdlms.datatypes.DataObject;
 
 /**
@@ -28,18 +29,24 @@ import org.openmuc.jdlms.datatypes.DataObject;
 public class GetResult {
 
 	private final DataObject resultData;
+	private final ColumnarTable resultColumns;
 	private final AccessResultCode resultCode;
 
 	GetResult(DataObject resultData) {
-		this(resultData, AccessResultCode.SUCCESS);
+		this(resultData, null, AccessResultCode.SUCCESS);
+	}
+
+	GetResult(ColumnarTable resultColumns) {
+		this(null, resultColumns, AccessResultCode.SUCCESS);
 	}
 
 	GetResult(AccessResultCode errorCode) {
-		this(null, errorCode);
+		this(null, null, errorCode);
 	}
 
-	private GetResult(DataObject resultData, AccessResultCode resultCode) {
+	private GetResult(DataObject resultData, ColumnarTable resultColumns, AccessResultCode resultCode) {
 		this.resultData = resultData;
+		this.resultColumns = resultColumns;
 		this.resultCode = resultCode;
 	}
 
@@ -52,6 +59,17 @@ public class GetResult {
 		return this.resultData;
 	}
 
+	/**
+	 * Returns the data of this get operation as columns, if it has been requested by
+	 * {@link ClientConnection#getColumns(boolean, AttributeAddress...)}. Note that this value is null otherwise or if
+	 * isSuccess() is false.
+	 * 
+	 * @return the data as columns
+	 */
+	public ColumnarTable resultColumns() {
+		return this.resultColumns;
+	}
+
 	/**
 	 * @return The result code of the get operation
 	 */
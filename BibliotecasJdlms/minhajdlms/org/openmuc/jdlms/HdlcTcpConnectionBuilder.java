@@ -27,7 +27,6 @@ import java.net.Socket;
 import javax.net.SocketFactory;
 
 import org.openmuc.jdlms.internal.HdlcTcpSettings;
-import org.openmuc.jdlms.internal.TcpSettings;
 import org.openmuc.jdlms.internal.transportlayer.hdlc.HdlcAddress;
 import org.openmuc.jdlms.internal.transportlayer.hdlc.HdlcAddressPair;
 import org.openmuc.jdlms.internal.transportlayer.hdlc.HdlcTcpTransportLayerConnection;
@@ -40,8 +39,8 @@ public class HdlcTcpConnectionBuilder extends ConnectionBuilder<HdlcTcpConnectio
 	private int tcpPort;
 
 	/**
-	 * Construct a {@link TcpConnectionBuilder} with client access point 1, logical device address 16 and a default TCP
-	 * port 4059.
+	 * Construct a {@link HdlcTcpConnectionBuilder} with client access point 16, logical device address 1 and a default
+	 * TCP port 9000.
 	 * 
 	 * @param inetAddress
 	 *            the Internet address of the remote meter.
@@ -73,7 +72,6 @@ public class HdlcTcpConnectionBuilder extends ConnectionBuilder<HdlcTcpConnectio
 	@Override
 	public LnClientConnection buildLnConnection() throws IOException {
 		HdlcTcpSettings settings = new HdlcTcpSettingsImpl(this);
-		// TcpSettings settings = new TcpSettingsImpl(this);
 
 		HdlcTcpTransportLayerConnection transportLayer = buildTcpTransportLayer(settings);
 
@@ -92,11 +90,7 @@ public class HdlcTcpConnectionBuilder extends ConnectionBuilder<HdlcTcpConnectio
 		return new SnClientConnection(settings, transportLayer);
 	}
 
-	private HdlcTcpTransportLayerConnection buildTcpTransportLayer(TcpSettings settings) throws IOException {
-
-		System.out.println(settings.tcpPort());
-		System.out.println(settings.inetAddress());
-
+	private HdlcTcpTransportLayerConnection buildTcpTransportLayer(HdlcTcpSettings settings) throws IOException {
 		Socket socket = SocketFactory.getDefault().createSocket(settings.inetAddress(), settings.tcpPort());
 
 		return new HdlcTcpTransportLayerConnection(socket, settings);
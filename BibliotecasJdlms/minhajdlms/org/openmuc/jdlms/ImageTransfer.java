@@ -0,0 +1,596 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import org.openmuc.jdlms.datatypes.BitString;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.interfaceclass.attribute.ImageTransferAttribute;
+import org.openmuc.jdlms.interfaceclass.method.ImageTransferMethod;
+import org.openmuc.jdlms.internal.ConformanceHelper;
+
+/**
+ * Transfers an image (e.g. a firmware) to an image transfer object (class id 18) of a remote meter and activates it.
+ * <p>
+ * The transfer follows the image transfer process of IEC 62056-6-2: the transfer is initiated, all image blocks are
+ * sent, the transferred blocks status is read to send the missing blocks again, then the image is verified and
+ * activated.
+ * </p>
+ * <p>
+ * The image blocks are sent without waiting for the single responses. Up to window size requests are outstanding at
+ * any time and, if the remote meter supports multiple references, every request carries as many blocks as fit into
+ * the negotiated PDU size. The blocks are read from the image source when they are about to be sent, so a transfer
+ * holds at most window size requests worth of image data in memory. As the transfer runs on the responses of the
+ * remote meter, many meters can be upgraded concurrently from a single thread sharing one image source.
+ * </p>
+ */
+public final class ImageTransfer {
+
+	/**
+	 * Source of the image data. Implementations must allow concurrent reads, as the same image source may be shared
+	 * by several transfers.
+	 */
+	public interface ImageSource {
+		/**
+		 * @return the size of the image in bytes
+		 * @throws IOException
+		 *             if the size could not be determined
+		 */
+		long size() throws IOException;
+
+		/**
+		 * Reads image data into the given buffer.
+		 *
+		 * @param position
+		 *            the position in the image of the first byte to read
+		 * @param buffer
+		 *            the buffer to fill completely
+		 * @throws IOException
+		 *             if the data could not be read
+		 */
+		void read(long position, byte[] buffer) throws IOException;
+	}
+
+	private static final int DEFAULT_WINDOW_SIZE = 4;
+
+	/**
+	 * Number of times the missing blocks are sent again before the transfer fails.
+	 */
+	private static final int MAX_RESEND_ROUNDS = 3;
+
+	private static final long STATUS_POLL_INTERVAL = 1000;
+	private static final int MAX_STATUS_POLLS = 120;
+
+	/**
+	 * Encoded size of a Action-Request-Normal without the method invocation parameters.
+	 */
+	private static final int ACTION_REQUEST_HEADER_SIZE = 13;
+
+	/**
+	 * Encoded size of a Action-Request-With-List without the method descriptors and method invocation parameters.
+	 */
+	private static final int ACTION_WITH_LIST_HEADER_SIZE = 5;
+
+	private static final int METHOD_DESCRIPTOR_SIZE = 9;
+
+	/**
+	 * Encoded size of the image_block_transfer parameters without the block data.
+	 */
+	private static final int BLOCK_PARAMETER_SIZE = 11;
+
+	private static final int VERIFICATION_SUCCESSFUL = 3;
+	private static final int VERIFICATION_FAILED = 4;
+	private static final int ACTIVATION_SUCCESSFUL = 6;
+	private static final int ACTIVATION_FAILED = 7;
+
+	private final LnClientConnection connection;
+	private final ObisCode instance;
+	private final int windowSize;
+
+	/**
+	 * Creates an image transfer to the given image transfer object, using the default window size.
+	 *
+	 * @param connection
+	 *            the connection to the remote meter
+	 * @param instance
+	 *            the logical name of the image transfer object
+	 */
+	public ImageTransfer(LnClientConnection connection, ObisCode instance) {
+		this(connection, instance, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates an image transfer to the given image transfer object.
+	 *
+	 * @param connection
+	 *            the connection to the remote meter
+	 * @param instance
+	 *            the logical name of the image transfer object
+	 * @param windowSize
+	 *            the maximum number of outstanding image block transfer requests
+	 * @throws IllegalArgumentException
+	 *             if the window size is not positive
+	 */
+	public ImageTransfer(LnClientConnection connection, ObisCode instance, int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("Window size must be positive.");
+		}
+		this.connection = connection;
+		this.instance = instance;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Creates an image source of an image held in memory.
+	 *
+	 * @param image
+	 *            the image
+	 * @return the image source
+	 */
+	public static ImageSource imageOf(final byte[] image) {
+		return new ImageSource() {
+			@Override
+			public long size() {
+				return image.length;
+			}
+
+			@Override
+			public void read(long position, byte[] buffer) {
+				System.arraycopy(image, (int) position, buffer, 0, buffer.length);
+			}
+		};
+	}
+
+	/**
+	 * Creates an image source of an image file. The file is read with positional reads, so the channel may be shared
+	 * by several transfers.
+	 *
+	 * @param channel
+	 *            the channel of the image file
+	 * @return the image source
+	 */
+	public static ImageSource imageOf(final FileChannel channel) {
+		return new ImageSource() {
+			@Override
+			public long size() throws IOException {
+				return channel.size();
+			}
+
+			@Override
+			public void read(long position, byte[] buffer) throws IOException {
+				ByteBuffer target = ByteBuffer.wrap(buffer);
+				while (target.hasRemaining()) {
+					if (channel.read(target, position + target.position()) < 0) {
+						throw new EOFException("Image file ended before position " + (position + buffer.length));
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Transfers and activates the image, blocking until the image has been activated.
+	 *
+	 * @param identifier
+	 *            the image identifier
+	 * @param image
+	 *            the image
+	 * @throws IOException
+	 *             if the connection breaks or the remote meter rejects the image
+	 * @throws TimeoutException
+	 *             if a request times out
+	 */
+	public void transfer(byte[] identifier, ImageSource image) throws IOException, TimeoutException {
+		ClientConnection.waitFor(transferAsync(identifier, image));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #transfer(byte[], ImageSource)}. The transfer is driven by the reader thread of
+	 * the transport layer, so dependent actions should not block.
+	 *
+	 * @param identifier
+	 *            the image identifier
+	 * @param image
+	 *            the image
+	 * @return future completed when the image has been activated. Completes exceptionally with an IOException if the
+	 *         connection breaks or the remote meter rejects the image or with a TimeoutException if a request times
+	 *         out
+	 */
+	public CompletableFuture<Void> transferAsync(byte[] identifier, ImageSource image) {
+		Transfer transfer = new Transfer(identifier, image);
+		transfer.start();
+		return transfer.result;
+	}
+
+	private AttributeAddress address(ImageTransferAttribute attribute) {
+		return new AttributeAddress(attribute, instance);
+	}
+
+	private interface Step<T> {
+		void proceed(T result) throws IOException, TimeoutException;
+	}
+
+	private class Transfer {
+		private final byte[] identifier;
+		private final ImageSource image;
+		private final CompletableFuture<Void> result = new CompletableFuture<Void>();
+
+		private long imageSize;
+		private int blockSize;
+		private int numBlocks;
+		private int blocksPerRequest;
+
+		/*
+		 * Guards the state of the current round.
+		 */
+		private final Lock lock = new ReentrantLock();
+		private BitSet pendingBlocks;
+		private int nextBlock;
+		private int outstanding;
+		private boolean roundFinished;
+		private int resendRounds = 0;
+
+		private final BiConsumer<List<MethodResult>, Throwable> blocksSent = new BiConsumer<List<MethodResult>, //
+				Throwable>() {
+			@Override
+			public void accept(List<MethodResult> results, Throwable cause) {
+				if (cause != null) {
+					fail(cause);
+					return;
+				}
+				// blocks the remote meter did not accept are sent again after the status has been read
+				lock.lock();
+				try {
+					outstanding--;
+				} finally {
+					lock.unlock();
+				}
+				sendBlocks();
+			}
+		};
+
+		Transfer(byte[] identifier, ImageSource image) {
+			this.identifier = identifier.clone();
+			this.image = image;
+		}
+
+		void start() {
+			if (!connection.confirmedModeEnabled()) {
+				fail(new IOException("Image transfer requires confirmed mode."));
+				return;
+			}
+
+			onSuccess(connection.getAsync(address(ImageTransferAttribute.IMAGE_TRANSFER_ENABLED),
+					address(ImageTransferAttribute.IMAGE_BLOCK_SIZE)), new Step<List<GetResult>>() {
+						@Override
+						public void proceed(List<GetResult> results) throws IOException {
+							if (!(Boolean) resultData(results.get(0), "image_transfer_enabled").value()) {
+								throw new IOException("Image transfer is disabled on the remote meter.");
+							}
+							blockSize = (int) longValue(resultData(results.get(1), "image_block_size"));
+							initiate();
+						}
+					});
+		}
+
+		private void initiate() throws IOException {
+			imageSize = image.size();
+			if (blockSize <= 0) {
+				throw new IOException("Remote meter reported an invalid image block size of " + blockSize + ".");
+			}
+
+			long blocks = (imageSize + blockSize - 1) / blockSize;
+			if (blocks > Integer.MAX_VALUE || imageSize > 0xFFFFFFFFL) {
+				throw new IOException("Image of " + imageSize + " bytes is too large.");
+			}
+			numBlocks = (int) blocks;
+			blocksPerRequest = blocksPerRequest();
+
+			DataObject parameter = DataObject.newStructureData(Arrays.asList(
+					DataObject.newOctetStringData(identifier), DataObject.newUInteger32Data(imageSize)));
+
+			onSuccess(connection.actionAsync(method(ImageTransferMethod.IMAGE_TRANSFER_INITIATE, parameter)),
+					new Step<List<MethodResult>>() {
+						@Override
+						public void proceed(List<MethodResult> results) throws IOException {
+							checkSuccess(results.get(0), "image_transfer_initiate");
+
+							BitSet allBlocks = new BitSet(numBlocks);
+							allBlocks.set(0, numBlocks);
+							startRound(allBlocks);
+						}
+					});
+		}
+
+		/*
+		 * Number of image blocks sent with one request. Blocks are only combined into one request if they fit into
+		 * the PDU size accepted by the remote meter, as a block transfer of the request would cost more round trips
+		 * than it saves.
+		 */
+		private int blocksPerRequest() throws IOException {
+			int maxPduSize = connection.maxSendPduSize();
+			if (ACTION_REQUEST_HEADER_SIZE + BLOCK_PARAMETER_SIZE + blockSize > maxPduSize
+					&& !ConformanceHelper.isActionBlockTransferAllowed(connection.negotiatedFeatures())) {
+				throw new IOException("Image block size " + blockSize + " exceeds the max receive PDU size "
+						+ maxPduSize + " of the remote meter.");
+			}
+
+			if (!ConformanceHelper.multipleReferenceIsAllowedFor(connection.negotiatedFeatures())) {
+				return 1;
+			}
+
+			int blocks = (maxPduSize - ACTION_WITH_LIST_HEADER_SIZE)
+					/ (METHOD_DESCRIPTOR_SIZE + BLOCK_PARAMETER_SIZE + blockSize);
+			int maxListSize = connection.connectionSettings().maxListSize();
+			if (maxListSize > 0) {
+				blocks = Math.min(blocks, maxListSize);
+			}
+			return Math.max(blocks, 1);
+		}
+
+		private void startRound(BitSet blocks) {
+			lock.lock();
+			try {
+				pendingBlocks = blocks;
+				nextBlock = blocks.nextSetBit(0);
+				outstanding = 0;
+				roundFinished = false;
+			} finally {
+				lock.unlock();
+			}
+			sendBlocks();
+		}
+
+		private void sendBlocks() {
+			boolean queryStatus = false;
+			while (true) {
+				int[] blocks;
+				lock.lock();
+				try {
+					if (result.isDone()) {
+						return;
+					}
+					if (nextBlock < 0 || outstanding == windowSize) {
+						if (nextBlock < 0 && outstanding == 0 && !roundFinished) {
+							roundFinished = true;
+							queryStatus = true;
+						}
+						break;
+					}
+					blocks = takeBlocks();
+					outstanding++;
+				} finally {
+					lock.unlock();
+				}
+
+				MethodParameter[] params;
+				try {
+					params = blockTransferParams(blocks);
+				} catch (IOException e) {
+					fail(e);
+					return;
+				}
+				connection.actionAsync(params).whenComplete(blocksSent);
+			}
+
+			if (queryStatus) {
+				queryTransferredBlocks();
+			}
+		}
+
+		private int[] takeBlocks() {
+			int[] blocks = new int[blocksPerRequest];
+			int numTaken = 0;
+			while (numTaken < blocksPerRequest && nextBlock >= 0) {
+				blocks[numTaken++] = nextBlock;
+				nextBlock = pendingBlocks.nextSetBit(nextBlock + 1);
+			}
+			return numTaken == blocks.length ? blocks : Arrays.copyOf(blocks, numTaken);
+		}
+
+		private MethodParameter[] blockTransferParams(int[] blocks) throws IOException {
+			MethodParameter[] params = new MethodParameter[blocks.length];
+			for (int i = 0; i < blocks.length; i++) {
+				long position = (long) blocks[i] * blockSize;
+				byte[] data = new byte[(int) Math.min(blockSize, imageSize - position)];
+				image.read(position, data);
+
+				DataObject parameter = DataObject.newStructureData(Arrays.asList(
+						DataObject.newUInteger32Data(blocks[i]), DataObject.newOctetStringData(data)));
+				params[i] = method(ImageTransferMethod.IMAGE_BLOCK_TRANSFER, parameter);
+			}
+			return params;
+		}
+
+		private void queryTransferredBlocks() {
+			onSuccess(connection.getAsync(address(ImageTransferAttribute.IMAGE_TRANSFERRED_BLOCKS_STATUS)),
+					new Step<List<GetResult>>() {
+						@Override
+						public void proceed(List<GetResult> results) throws IOException {
+							DataObject status = resultData(results.get(0), "image_transferred_blocks_status");
+							if (!status.isBitString()) {
+								throw new IOException("Invalid image transferred blocks status.");
+							}
+
+							BitSet missingBlocks = missingBlocks((BitString) status.value());
+							if (missingBlocks.isEmpty()) {
+								verify();
+							}
+							else if (resendRounds++ == MAX_RESEND_ROUNDS) {
+								throw new IOException(missingBlocks.cardinality() + " of " + numBlocks
+										+ " image blocks have not been transferred.");
+							}
+							else {
+								startRound(missingBlocks);
+							}
+						}
+					});
+		}
+
+		/*
+		 * The first bit of the status is the most significant bit of the first byte and stands for block 0.
+		 */
+		private BitSet missingBlocks(BitString status) {
+			byte[] bits = status.bitString();
+			BitSet missingBlocks = new BitSet(numBlocks);
+			for (int i = 0; i < numBlocks; i++) {
+				if (i >= status.numBits() || (bits[i / 8] & (0x80 >> (i % 8))) == 0) {
+					missingBlocks.set(i);
+				}
+			}
+			return missingBlocks;
+		}
+
+		private void verify() {
+			final DataObject parameter = DataObject.newInteger8Data((byte) 0);
+			onSuccess(connection.actionAsync(method(ImageTransferMethod.IMAGE_VERIFY, parameter)),
+					new Step<List<MethodResult>>() {
+						@Override
+						public void proceed(List<MethodResult> results) throws IOException {
+							Runnable activate = new Runnable() {
+								@Override
+								public void run() {
+									activate();
+								}
+							};
+							if (results.get(0).resultCode() == MethodResultCode.TEMPORARY_FAILURE) {
+								// verification is still in progress
+								pollStatus(VERIFICATION_SUCCESSFUL, VERIFICATION_FAILED, activate, 0);
+								return;
+							}
+							checkSuccess(results.get(0), "image_verify");
+							activate.run();
+						}
+					});
+		}
+
+		private void activate() {
+			final DataObject parameter = DataObject.newInteger8Data((byte) 0);
+			onSuccess(connection.actionAsync(method(ImageTransferMethod.IMAGE_ACTIVATE, parameter)),
+					new Step<List<MethodResult>>() {
+						@Override
+						public void proceed(List<MethodResult> results) throws IOException {
+							Runnable complete = new Runnable() {
+								@Override
+								public void run() {
+									result.complete(null);
+								}
+							};
+							if (results.get(0).resultCode() == MethodResultCode.TEMPORARY_FAILURE) {
+								// activation is still in progress
+								pollStatus(ACTIVATION_SUCCESSFUL, ACTIVATION_FAILED, complete, 0);
+								return;
+							}
+							checkSuccess(results.get(0), "image_activate");
+							complete.run();
+						}
+					});
+		}
+
+		private void pollStatus(final int successStatus, final int failedStatus, final Runnable next,
+				final int numPolls) {
+			connection.schedule(new Runnable() {
+				@Override
+				public void run() {
+					onSuccess(connection.getAsync(address(ImageTransferAttribute.IMAGE_TRANSFER_STATUS)),
+							new Step<List<GetResult>>() {
+								@Override
+								public void proceed(List<GetResult> results) throws IOException, TimeoutException {
+									int status = (int) longValue(resultData(results.get(0), "image_transfer_status"));
+									if (status == successStatus) {
+										next.run();
+									}
+									else if (status == failedStatus) {
+										throw new IOException("Remote meter reported image transfer status " + status
+												+ ".");
+									}
+									else if (numPolls + 1 == MAX_STATUS_POLLS) {
+										throw new TimeoutException(
+												"Remote meter did not finish the image transfer step.");
+									}
+									else {
+										pollStatus(successStatus, failedStatus, next, numPolls + 1);
+									}
+								}
+							});
+				}
+			}, STATUS_POLL_INTERVAL);
+		}
+
+		private MethodParameter method(ImageTransferMethod method, DataObject parameter) {
+			return new MethodParameter(method, instance, parameter);
+		}
+
+		private <T> void onSuccess(CompletableFuture<T> future, final Step<T> step) {
+			future.whenComplete(new BiConsumer<T, Throwable>() {
+				@Override
+				public void accept(T value, Throwable cause) {
+					if (cause != null) {
+						fail(cause);
+						return;
+					}
+					try {
+						step.proceed(value);
+					} catch (IOException | TimeoutException | RuntimeException e) {
+						fail(e);
+					}
+				}
+			});
+		}
+
+		private void fail(Throwable cause) {
+			result.completeExceptionally(cause);
+		}
+	}
+
+	private static DataObject resultData(GetResult result, String attributeName) throws IOException {
+		if (result.resultCode() != AccessResultCode.SUCCESS) {
+			throw new IOException("Reading " + attributeName + " failed with " + result.resultCode() + ".");
+		}
+		return result.resultData();
+	}
+
+	private static void checkSuccess(MethodResult result, String methodName) throws IOException {
+		if (result.resultCode() != MethodResultCode.SUCCESS) {
+			throw new IOException("Method " + methodName + " failed with " + result.resultCode() + ".");
+		}
+	}
+
+	private static long longValue(DataObject data) throws IOException {
+		if (!data.isNumber()) {
+			throw new IOException("Remote meter returned " + data.choiceIndex() + " instead of a number.");
+		}
+		return data.longValue();
+	}
+
+}
@@ -20,31 +20,43 @@
  */
 package org.openmuc.jdlms;
 
-import static org.openmuc.jdlms.internal.PduHelper.invokeIdFrom;
-
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.ColumnarTable;
 import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataVisitor;
 import org.openmuc.jdlms.interfaceclass.method.AssociationLnMethod;
+import org.openmuc.jdlms.internal.ColumnarConverter;
 import org.openmuc.jdlms.internal.ConformanceHelper;
 import org.openmuc.jdlms.internal.DataConverter;
+import org.openmuc.jdlms.internal.DataDecoder;
+import org.openmuc.jdlms.internal.DataParser;
+import org.openmuc.jdlms.internal.EncodedDataInputStream;
 import org.openmuc.jdlms.internal.PduHelper;
 import org.openmuc.jdlms.internal.Settings;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
 import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
 import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrEnum;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
 import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Request;
 import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Response;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_Next_Pblock;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_First_Pblock;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_List_And_First_Pblock;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_Pblock;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Response_With_Optional_Data;
 import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
 import org.openmuc.jdlms.internal.asn1.cosem.Conformance;
@@ -52,20 +64,28 @@ import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor;
 import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor_With_Selection;
 import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Method_Descriptor;
 import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Object_Instance_Id;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_G;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_SA;
 import org.openmuc.jdlms.internal.asn1.cosem.GET_Request;
 import org.openmuc.jdlms.internal.asn1.cosem.GET_Response;
 import org.openmuc.jdlms.internal.asn1.cosem.Get_Data_Result;
 import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_Next;
 import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_Normal;
 import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_With_Datablock;
 import org.openmuc.jdlms.internal.asn1.cosem.Integer8;
 import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
 import org.openmuc.jdlms.internal.asn1.cosem.SET_Request;
 import org.openmuc.jdlms.internal.asn1.cosem.SET_Response;
 import org.openmuc.jdlms.internal.asn1.cosem.Selective_Access_Descriptor;
 import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_Datablock;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_First_Datablock;
 import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_List_And_First_Datablock;
 import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned32;
 import org.openmuc.jdlms.internal.asn1.cosem.Unsigned8;
 import org.openmuc.jdlms.internal.security.DataTransmissionLevel;
 import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
@@ -73,6 +93,10 @@ import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
 /**
  * Variant of the connection class using decrypted messages with logical name referencing to communicate with the remote
  * smart meter
+ * <p>
+ * The connection may be shared by several threads. Responses are matched to their request by the invoke id, so up to
+ * 16 requests can be outstanding on one association at the same time.
+ * </p>
  */
 public class LnClientConnection extends ClientConnection {
 
@@ -86,86 +110,784 @@ public class LnClientConnection extends ClientConnection {
 	 * Bit field containing all operations this client can perform
 	 */
 	private static final Conformance PROPOSED_CONFORMANCE = new Conformance(
-			new byte[] { (byte) 0x00, (byte) 0xBC, (byte) 0x3F }, 24);
+			new byte[] { (byte) 0x00, (byte) 0xBE, (byte) 0x3F }, 24);
+
+	/**
+	 * Encoded size of the COSEM PDU tag, the GET request choice, the invoke id and the length of the attribute
+	 * descriptor list of a Get-Request-With-List
+	 */
+	private static final int GET_WITH_LIST_HEADER_SIZE = 6;
+
+	/**
+	 * Encoded size of the COSEM PDU tag, the SET/ACTION request choice, the invoke id and the lengths of the descriptor
+	 * list and the value list of a Set-Request-With-List or Action-Request-With-List
+	 */
+	private static final int SET_ACTION_WITH_LIST_HEADER_SIZE = 9;
+
+	/**
+	 * Encoded size of a Set-Request-With-Datablock or Action-Request-With-Pblock without the raw data: COSEM PDU tag,
+	 * request choice, invoke id, last block flag, block number and up to three bytes for the length of the raw data
+	 */
+	private static final int BLOCK_REQUEST_HEADER_SIZE = 11;
+
+	/**
+	 * Size of the get response tag, the response choice and the invoke id
+	 */
+	private static final int GET_RESPONSE_HEADER_SIZE = 3;
+
+	/**
+	 * Encoded size of the COSEM PDU tag, the request choice and the invoke id of a SET or ACTION request
+	 */
+	private static final int REQUEST_HEADER_SIZE = 3;
+
+	/**
+	 * Placeholder for the invoke id and priority of prepared requests, it is replaced on every send
+	 */
+	private static final Invoke_Id_And_Priority PREPARED_INVOKE_ID = new Invoke_Id_And_Priority(new byte[1]);
+
+	/**
+	 * Placeholder to measure the size of the first block request before the raw data is known
+	 */
+	private static final DataBlock_SA EMPTY_BLOCK = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(1),
+			new AxdrOctetString(new byte[0]));
 
-	private final ResponseQueue<ACTION_Response> actionResponseQueue = new ResponseQueue<ACTION_Response>();
-	private final ResponseQueue<GET_Response> getResponseQueue = new ResponseQueue<GET_Response>();
-	private final ResponseQueue<SET_Response> setResponseQueue = new ResponseQueue<SET_Response>();
+	/**
+	 * Form in which the data of a get response is returned
+	 */
+	private enum ResultForm {
+		TREE,
+		COLUMNS,
+		LAZY
+	}
+
+	private final GetCoalescer getCoalescer;
 
 	LnClientConnection(Settings settings, TransportLayerConnection transportCon) throws IOException {
 		super(settings, transportCon);
+
+		if (settings.coalescingWindow() > 0) {
+			getCoalescer = new GetCoalescer(new GetCoalescer.Sender() {
+				@Override
+				public CompletableFuture<List<GetResult>> send(AttributeAddress[] params) {
+					return submitGet(false, params, ResultForm.TREE);
+				}
+			}, this, settings.coalescingWindow());
+		}
+		else {
+			getCoalescer = null;
+		}
 	}
 
 	@Override
 	public List<GetResult> get(boolean highPriority, AttributeAddress... params) throws IOException, TimeoutException {
+		return waitFor(getAsync(highPriority, params));
+	}
+
+	/**
+	 * Convenience method to call {@code getAsync(false, params)}
+	 * 
+	 * @see #getAsync(boolean, AttributeAddress...)
+	 * 
+	 * @param params
+	 *            Varargs of specifiers which attributes to send (See {@link AttributeAddress})
+	 * @return future of the list of results from the smart meter in the same order as the requests
+	 */
+	public final CompletableFuture<List<GetResult>> getAsync(AttributeAddress... params) {
+		return getAsync(false, params);
+	}
+
+	/**
+	 * Non-blocking variant of {@link #get(boolean, AttributeAddress...)}. The returned future is completed by the
+	 * reader thread of the transport layer, so dependent actions should not block.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param params
+	 *            Varargs of specifiers which attributes to send (See {@link AttributeAddress})
+	 * @return future of the list of results from the smart meter in the same order as the requests. Completes
+	 *         exceptionally with an IOException if the connection breaks or with a TimeoutException if the request
+	 *         times out
+	 */
+	public CompletableFuture<List<GetResult>> getAsync(boolean highPriority, AttributeAddress... params) {
+		validateGetParams(params);
+
+		if (getCoalescer != null && !highPriority
+				&& ConformanceHelper.multipleReferenceIsAllowedFor(negotiatedFeatures())) {
+			int size = 0;
+			for (AttributeAddress param : params) {
+				size += pduSizeOf(descriptorWithSelectionFor(param));
+			}
+			return getCoalescer.add(params, size, maxSendPduSize() - GET_WITH_LIST_HEADER_SIZE);
+		}
+
+		return submitGet(highPriority, params, ResultForm.TREE);
+	}
+
+	@Override
+	public AccessResultCode get(boolean highPriority, AttributeAddress param, DataVisitor visitor)
+			throws IOException, TimeoutException {
+		return waitFor(getAsync(highPriority, param, visitor));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #get(boolean, AttributeAddress, DataVisitor)}.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param param
+	 *            the attribute to read
+	 * @param visitor
+	 *            the visitor receiving the value, it is called by the reader thread of the transport layer
+	 * @return future of the result code of the get operation. Completes exceptionally with an IOException if the
+	 *         connection breaks or with a TimeoutException if the request times out
+	 */
+	public CompletableFuture<AccessResultCode> getAsync(boolean highPriority, AttributeAddress param,
+			DataVisitor visitor) {
+		validateGetParams(new AttributeAddress[] { param });
+		return submit(new VisitingGetRequest(highPriority, param, visitor));
+	}
 
-		Invoke_Id_And_Priority id = invokeIdAndPriorityFor(highPriority);
-		final int invokeId = (id.getValue()[0] & 0xF);
-		COSEMpdu pdu = createGetPdu(id, params);
-		send(pdu);
-
-		GET_Response response = getResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
-
-		List<GetResult> result = new ArrayList<GetResult>(params.length);
-		if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_NORMAL) {
-			GetResult res = convertPduToGetResult(response.get_response_normal.result);
-			result.add(res);
-		}
-		else if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_WITH_DATABLOCK) {
-			GET_Request getRequest = new GET_Request();
-			ByteArrayOutputStream datablocks = new ByteArrayOutputStream();
-			Get_Request_Next nextBlock = new Get_Request_Next();
-			nextBlock.invoke_id_and_priority = response.get_response_with_datablock.invoke_id_and_priority;
-			while (response.get_response_with_datablock.result.last_block.getValue() == false) {
-				datablocks.write(response.get_response_with_datablock.result.result.raw_data.getValue());
-
-				nextBlock.block_number = response.get_response_with_datablock.result.block_number;
-				getRequest.setget_request_next(nextBlock);
-				pdu.setget_request(getRequest);
+	@Override
+	public List<GetResult> getColumns(boolean highPriority, AttributeAddress... params)
+			throws IOException, TimeoutException {
+		return waitFor(getColumnsAsync(highPriority, params));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #getColumns(boolean, AttributeAddress...)}. The returned future is completed by
+	 * the reader thread of the transport layer, so dependent actions should not block.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param params
+	 *            Varargs of specifiers which attributes to send (See {@link AttributeAddress})
+	 * @return future of the list of results from the smart meter in the same order as the requests. Completes
+	 *         exceptionally with an IOException if the connection breaks or an attribute is not an array or with a
+	 *         TimeoutException if the request times out
+	 */
+	public CompletableFuture<List<GetResult>> getColumnsAsync(boolean highPriority, AttributeAddress... params) {
+		validateGetParams(params);
+		return submitGet(highPriority, params, ResultForm.COLUMNS);
+	}
+
+	@Override
+	public List<GetResult> getLazy(boolean highPriority, AttributeAddress... params)
+			throws IOException, TimeoutException {
+		return waitFor(getLazyAsync(highPriority, params));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #getLazy(boolean, AttributeAddress...)}. The returned future is completed by the
+	 * reader thread of the transport layer, so dependent actions should not block.
+	 *
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param params
+	 *            Varargs of specifiers which attributes to send (See {@link AttributeAddress})
+	 * @return future of the list of results from the smart meter in the same order as the requests. Completes
+	 *         exceptionally with an IOException if the connection breaks or with a TimeoutException if the request
+	 *         times out
+	 */
+	public CompletableFuture<List<GetResult>> getLazyAsync(boolean highPriority, AttributeAddress... params) {
+		validateGetParams(params);
+		return submitGet(highPriority, params, ResultForm.LAZY);
+	}
+
+	@Override
+	public List<GetResult> get(boolean highPriority, PreparedGet request) throws IOException, TimeoutException {
+		return waitFor(getAsync(highPriority, request));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #get(boolean, PreparedGet)}. The returned future is completed by the reader
+	 * thread of the transport layer, so dependent actions should not block.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param request
+	 *            the prepared request
+	 * @return future of the list of results from the smart meter in the same order as the parameters of the request
+	 */
+	public CompletableFuture<List<GetResult>> getAsync(boolean highPriority, PreparedGet request) {
+		AttributeAddress[] params = request.params();
+		validateGetParams(params);
+
+		byte[] encodedPdu = request.encodedPdu();
+		try {
+			if (encodedPdu == null) {
+				encodedPdu = encode(createGetPdu(PREPARED_INVOKE_ID, params));
+				request.setEncodedPdu(encodedPdu);
+			}
+		} catch (IOException e) {
+			return failedFuture(e);
+		}
+
+		if (!fitsInOneRequest(encodedPdu, params.length)) {
+			return submitGet(highPriority, params, ResultForm.TREE);
+		}
+		return submit(new GetRequest(highPriority, params, encodedPdu));
+	}
+
+	private CompletableFuture<List<GetResult>> submitGet(boolean highPriority, AttributeAddress[] params,
+			ResultForm form) {
+		int[] sizes = new int[params.length];
+		for (int i = 0; i < params.length; i++) {
+			sizes[i] = pduSizeOf(descriptorWithSelectionFor(params[i]));
+		}
+		int[] bounds = RequestPlanner.split(sizes, maxSendPduSize() - GET_WITH_LIST_HEADER_SIZE, maxListSize());
+
+		List<CompletableFuture<List<GetResult>>> parts = new ArrayList<CompletableFuture<List<GetResult>>>(
+				bounds.length - 1);
+		for (int i = 0; i < bounds.length - 1; i++) {
+			AttributeAddress[] partParams = Arrays.copyOfRange(params, bounds[i], bounds[i + 1]);
+			parts.add(submit(new GetRequest(highPriority, partParams, form)));
+		}
+		return RequestPlanner.inOrder(parts);
+	}
+
+	@Override
+	public List<AccessResultCode> set(boolean highPriority, SetParameter... params) throws IOException {
+		try {
+			return waitFor(setAsync(highPriority, params));
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out while waiting for incoming response", e);
+		}
+	}
+
+	/**
+	 * Convenience method to call {@code setAsync(false, params)}
+	 * 
+	 * @see #setAsync(boolean, SetParameter...)
+	 * 
+	 * @param params
+	 *            Varargs of specifier which attributes to set to which values (See {@link SetParameter})
+	 * @return future of the list of results from the smart meter in the same order as the requests
+	 */
+	public final CompletableFuture<List<AccessResultCode>> setAsync(SetParameter... params) {
+		return setAsync(false, params);
+	}
+
+	/**
+	 * Non-blocking variant of {@link #set(boolean, SetParameter...)}. The returned future is completed by the reader
+	 * thread of the transport layer, so dependent actions should not block.
+	 * 
+	 * @param highPriority
+	 *            Sends this request with high priority, if supported
+	 * @param params
+	 *            Varargs of specifier which attributes to set to which values (See {@link SetParameter})
+	 * @return future of the list of results from the smart meter in the same order as the requests or of null if
+	 *         confirmed has been set to false on creation of this object
+	 */
+	public CompletableFuture<List<AccessResultCode>> setAsync(boolean highPriority, SetParameter... params) {
+		validateSetParams(params);
+
+		int[] sizes = new int[params.length];
+		int maxSize;
+		if (ConformanceHelper.isSetBlockTransferAllowed(negotiatedFeatures())) {
+			// values exceeding the PDU size are sent in data blocks, so a list is only split by its length and the
+			// values of one list are still written by one service invocation
+			maxSize = Integer.MAX_VALUE;
+		}
+		else {
+			for (int i = 0; i < params.length; i++) {
+				sizes[i] = pduSizeOf(descriptorWithSelectionFor(params[i].attributeAddress()))
+						+ pduSizeOf(DataConverter.toPdu(params[i].data()));
+			}
+			maxSize = maxSendPduSize() - SET_ACTION_WITH_LIST_HEADER_SIZE;
+		}
+		int[] bounds = RequestPlanner.split(sizes, maxSize, maxListSize());
+
+		List<CompletableFuture<List<AccessResultCode>>> parts = new ArrayList<CompletableFuture<List<AccessResultCode>>>(
+				bounds.length - 1);
+		for (int i = 0; i < bounds.length - 1; i++) {
+			SetParameter[] partParams = Arrays.copyOfRange(params, bounds[i], bounds[i + 1]);
+			parts.add(submit(new SetRequest(highPriority, partParams)));
+		}
+		return RequestPlanner.inOrder(parts);
+	}
+
+	@Override
+	public List<AccessResultCode> set(boolean highPriority, PreparedSet request) throws IOException {
+		try {
+			return waitFor(setAsync(highPriority, request));
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out while waiting for incoming response", e);
+		}
+	}
+
+	/**
+	 * Non-blocking variant of {@link #set(boolean, PreparedSet)}. The returned future is completed by the reader
+	 * thread of the transport layer, so dependent actions should not block.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param request
+	 *            the prepared request
+	 * @return future of the list of results from the smart meter in the same order as the parameters of the request
+	 *         or of null if confirmed has been set to false on creation of this object
+	 */
+	public CompletableFuture<List<AccessResultCode>> setAsync(boolean highPriority, PreparedSet request) {
+		SetParameter[] params = request.params();
+		validateSetParams(params);
+
+		byte[] encodedPdu = request.encodedPdu();
+		try {
+			if (encodedPdu == null) {
+				COSEMpdu pdu = new COSEMpdu();
+				pdu.setset_request(createSetRequest(PREPARED_INVOKE_ID, params));
+				encodedPdu = encode(pdu);
+				request.setEncodedPdu(encodedPdu);
+			}
+		} catch (IOException e) {
+			return failedFuture(e);
+		}
+
+		if (!fitsInOneRequest(encodedPdu, params.length)) {
+			return setAsync(highPriority, params);
+		}
+		return submit(new SetRequest(highPriority, params, encodedPdu));
+	}
+
+	@Override
+	public List<MethodResult> action(boolean highPriority, MethodParameter... params) throws IOException {
+		try {
+			return waitFor(actionAsync(highPriority, params));
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out while waiting for incoming response", e);
+		}
+	}
+
+	/**
+	 * Convenience method to call {@code actionAsync(false, params)}
+	 * 
+	 * @see #actionAsync(boolean, MethodParameter...)
+	 * 
+	 * @param params
+	 *            List of specifier which methods to be called and, if needed, what parameters to call (See
+	 *            {@link MethodParameter}
+	 * @return future of the list of results from the smart meter in the same order as the requests
+	 */
+	public final CompletableFuture<List<MethodResult>> actionAsync(MethodParameter... params) {
+		return actionAsync(false, params);
+	}
+
+	/**
+	 * Non-blocking variant of {@link #action(boolean, MethodParameter...)}. The returned future is completed by the
+	 * reader thread of the transport layer, so dependent actions should not block.
+	 * 
+	 * @param highPriority
+	 *            Sends this request with high priority, if supported
+	 * @param params
+	 *            List of specifier which methods to be called and, if needed, what parameters to call (See
+	 *            {@link MethodParameter}
+	 * @return future of the list of results from the smart meter in the same order as the requests or of null if
+	 *         confirmed has been set to false on creation of this object
+	 */
+	public CompletableFuture<List<MethodResult>> actionAsync(boolean highPriority, MethodParameter... params) {
+		validateActionParams(params);
+
+		int[] sizes = new int[params.length];
+		int maxSize;
+		if (ConformanceHelper.isActionBlockTransferAllowed(negotiatedFeatures())) {
+			// parameters exceeding the PDU size are sent in pblocks, so a list is only split by its length
+			maxSize = Integer.MAX_VALUE;
+		}
+		else {
+			for (int i = 0; i < params.length; i++) {
+				sizes[i] = pduSizeOf(methodDescriptorFor(params[i]))
+						+ pduSizeOf(DataConverter.toPdu(params[i].methodParameter()));
+			}
+			maxSize = maxSendPduSize() - SET_ACTION_WITH_LIST_HEADER_SIZE;
+		}
+		int[] bounds = RequestPlanner.split(sizes, maxSize, maxListSize());
+
+		List<CompletableFuture<List<MethodResult>>> parts = new ArrayList<CompletableFuture<List<MethodResult>>>(
+				bounds.length - 1);
+		for (int i = 0; i < bounds.length - 1; i++) {
+			MethodParameter[] partParams = Arrays.copyOfRange(params, bounds[i], bounds[i + 1]);
+			parts.add(submit(new ActionRequest(highPriority, partParams)));
+		}
+		return RequestPlanner.inOrder(parts);
+	}
+
+	@Override
+	public List<MethodResult> action(boolean highPriority, PreparedAction request) throws IOException {
+		try {
+			return waitFor(actionAsync(highPriority, request));
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out while waiting for incoming response", e);
+		}
+	}
+
+	/**
+	 * Non-blocking variant of {@link #action(boolean, PreparedAction)}. The returned future is completed by the
+	 * reader thread of the transport layer, so dependent actions should not block.
+	 * 
+	 * @param highPriority
+	 *            if true: sends this request with high priority, if supported
+	 * @param request
+	 *            the prepared request
+	 * @return future of the list of results from the smart meter in the same order as the parameters of the request
+	 *         or of null if confirmed has been set to false on creation of this object
+	 */
+	public CompletableFuture<List<MethodResult>> actionAsync(boolean highPriority, PreparedAction request) {
+		MethodParameter[] params = request.params();
+		validateActionParams(params);
+
+		byte[] encodedPdu = request.encodedPdu();
+		try {
+			if (encodedPdu == null) {
+				COSEMpdu pdu = new COSEMpdu();
+				pdu.setaction_request(createActionRequest(PREPARED_INVOKE_ID, params));
+				encodedPdu = encode(pdu);
+				request.setEncodedPdu(encodedPdu);
+			}
+		} catch (IOException e) {
+			return failedFuture(e);
+		}
+
+		if (!fitsInOneRequest(encodedPdu, params.length)) {
+			return actionAsync(highPriority, params);
+		}
+		return submit(new ActionRequest(highPriority, params, encodedPdu));
+	}
+
+	/*
+	 * A prepared request is sent as it is if neither its size nor its number of parameters exceed the limits of this
+	 * connection.
+	 */
+	private boolean fitsInOneRequest(byte[] encodedPdu, int numParams) {
+		return encodedPdu.length <= maxSendPduSize() && numParams <= maxListSize();
+	}
+
+	/*
+	 * Maximum number of parameters of one list request. Without multiple references every parameter needs a request
+	 * of its own.
+	 */
+	private int maxListSize() {
+		if (!ConformanceHelper.multipleReferenceIsAllowedFor(negotiatedFeatures())) {
+			return 1;
+		}
+		return connectionSettings().maxListSize();
+	}
+
+	private class GetRequest extends ConfirmedRequest<List<GetResult>> implements DataBlockDecoder.Listener {
+
+		private final AttributeAddress[] params;
+		private final ResultForm form;
+		private final COSEMpdu pdu;
+		private final byte[] encodedPdu;
+		private DataBlockDecoder blockDecoder;
+		private ColumnarConverter.TableVisitor columns;
+		private List<GetResult> blockResults;
+		private ByteArrayOutputStream rawBlocks;
+
+		GetRequest(boolean highPriority, AttributeAddress[] params, ResultForm form) {
+			super(LnClientConnection.this, highPriority);
+			this.params = params;
+			this.form = form;
+			this.pdu = createGetPdu(invokeIdAndPriority(), params);
+			this.encodedPdu = null;
+		}
+
+		GetRequest(boolean highPriority, AttributeAddress[] params, byte[] encodedPdu) {
+			super(LnClientConnection.this, highPriority);
+			this.params = params;
+			this.form = ResultForm.TREE;
+			this.pdu = null;
+			this.encodedPdu = encodedPdu;
+		}
+
+		@Override
+		protected void sendRequest() throws IOException {
+			if (encodedPdu != null) {
+				sendEncoded(encodedPdu);
+			}
+			else {
 				send(pdu);
+			}
+		}
 
-				try {
-					response = getResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
-				} catch (TimeoutException e) {
-					// Send PDU with wrong block number to indicate the
-					// device that the block transfer is
-					// aborted.
-					// This is the well defined behavior to abort a block
-					// transfer as in IEC 62056-53 section
-					// 7.4.1.8.2
-					// receiveTimedOut(pdu);
-					send(pdu);
-					throw new IOException(e);
-				}
+		@Override
+		protected void processResponse(COSEMpdu responsePdu) throws IOException {
+			if (responsePdu.getChoiceIndex() != COSEMpdu.Choices.GET_RESPONSE) {
+				throw new IOException("Received unexpected response of type " + responsePdu.getChoiceIndex()
+						+ " for a get request.");
 			}
-			datablocks.write(response.get_response_with_datablock.result.result.raw_data.getValue());
-			InputStream dataByteStream = new ByteArrayInputStream(datablocks.toByteArray());
-			while (dataByteStream.available() > 0) {
-				org.openmuc.jdlms.internal.asn1.cosem.Data resultPduData = new org.openmuc.jdlms.internal.asn1.cosem.Data();
-				resultPduData.decode(dataByteStream);
-				Get_Data_Result getResult = new Get_Data_Result();
-				getResult.setdata(resultPduData);
-				GetResult res = convertPduToGetResult(getResult);
+			GET_Response response = responsePdu.get_response;
+
+			List<GetResult> result = new ArrayList<GetResult>(params.length);
+			if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_NORMAL) {
+				GetResult res = convertPduToGetResult(response.get_response_normal.result, form == ResultForm.COLUMNS);
 				result.add(res);
 			}
+			else if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_WITH_DATABLOCK) {
+				DataBlock_G block = response.get_response_with_datablock.result;
+
+				if (block.result.getChoiceIndex() == DataBlock_G.SubChoice_result.Choices.DATA_ACCESS_RESULT) {
+					AccessResultCode resultCode = AccessResultCode
+							.forValue((int) block.result.data_access_result.getValue());
+					for (int i = 0; i < params.length; i++) {
+						result.add(new GetResult(resultCode));
+					}
+					complete(result);
+					return;
+				}
+
+				if (form == ResultForm.LAZY) {
+					// the lazy data objects keep the encoding of the whole data, so the blocks are collected first
+					if (rawBlocks == null) {
+						rawBlocks = new ByteArrayOutputStream();
+					}
+				}
+				else if (blockDecoder == null) {
+					blockResults = new ArrayList<GetResult>(params.length);
+					if (form == ResultForm.COLUMNS) {
+						// the table is filled while the blocks arrive, without decoding data objects
+						columns = new ColumnarConverter.TableVisitor();
+						blockDecoder = new DataBlockDecoder(params.length > 1, this, columns);
+					}
+					else {
+						blockDecoder = new DataBlockDecoder(params.length > 1, this);
+					}
+				}
+
+				if (block.last_block.getValue() == false) {
+					send(nextBlockRequestFor(response.get_response_with_datablock));
+
+					// decode the elements of this block while the meter prepares the next one
+					writeBlock(block.result.raw_data.getValue());
+					return;
+				}
+
+				writeBlock(block.result.raw_data.getValue());
+				if (form == ResultForm.LAZY) {
+					result = decodeLazyBlocks();
+				}
+				else {
+					blockDecoder.finish();
+					result = blockResults;
+				}
+			}
+			else if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_WITH_LIST) {
+				for (Get_Data_Result resultPdu : response.get_response_with_list.result.list()) {
+					GetResult res = convertPduToGetResult(resultPdu, form == ResultForm.COLUMNS);
+					result.add(res);
+				}
+			}
+			else {
+				throw new IllegalStateException(String.format(
+						"Unknown response type with Choise Index %s. Please report to developer of the stack.",
+						response.getChoiceIndex()));
+			}
+
+			complete(result);
 		}
-		else if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_WITH_LIST) {
-			for (Get_Data_Result resultPdu : response.get_response_with_list.result.list()) {
-				GetResult res = convertPduToGetResult(resultPdu);
-				result.add(res);
+
+		private void writeBlock(byte[] rawData) throws IOException {
+			if (form == ResultForm.LAZY) {
+				rawBlocks.write(rawData);
+				return;
+			}
+			try {
+				blockDecoder.write(rawData);
+			} catch (IllegalArgumentException e) {
+				// thrown by the table visitor if the data has no columnar form
+				throw new IOException(e.getMessage(), e);
 			}
 		}
-		else {
-			throw new IllegalStateException(String.format(
-					"Unknown response type with Choise Index %s. Please report to developer of the stack.",
-					response.getChoiceIndex()));
+
+		private List<GetResult> decodeLazyBlocks() throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(rawBlocks.toByteArray());
+			rawBlocks = null;
+
+			List<GetResult> result = new ArrayList<GetResult>(params.length);
+			if (params.length > 1) {
+				int numResults = DataDecoder.decodeLength(buffer);
+				for (int i = 0; i < numResults; i++) {
+					result.add(decodeGetDataResult(buffer, ResultForm.LAZY));
+				}
+			}
+			else {
+				result.add(new GetResult(DataDecoder.decodeLazily(buffer)));
+			}
+			return result;
 		}
 
-		return result;
+		/*
+		 * Normal and with-list responses are decoded straight into data objects. Block responses are left to the
+		 * generated PDU classes, their raw data is decoded by the DataBlockDecoder anyway.
+		 */
+		@Override
+		protected void processRawResponse(byte[] pdu) throws IOException {
+			int choice = pdu[1];
+			if (choice == GET_Response.Choices.GET_RESPONSE_WITH_DATABLOCK.getValue()) {
+				super.processRawResponse(pdu);
+				return;
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(pdu, GET_RESPONSE_HEADER_SIZE, pdu.length - GET_RESPONSE_HEADER_SIZE);
+			int numResults = 1;
+			if (choice == GET_Response.Choices.GET_RESPONSE_WITH_LIST.getValue()) {
+				numResults = DataDecoder.decodeLength(buffer);
+			}
+
+			List<GetResult> result = new ArrayList<GetResult>(numResults);
+			for (int i = 0; i < numResults; i++) {
+				result.add(decodeGetDataResult(buffer, form));
+			}
+			complete(result);
+		}
+
+		@Override
+		public void resultDecoded(GetResult result) {
+			blockResults.add(result);
+		}
+
+		@Override
+		public void resultVisited() {
+			blockResults.add(new GetResult(columns.table()));
+		}
 	}
 
-	private GetResult convertPduToGetResult(Get_Data_Result pdu) {
+	/**
+	 * Reports the value of a single attribute to a visitor.
+	 * 
+	 * @see #getAsync(boolean, AttributeAddress, DataVisitor)
+	 */
+	private class VisitingGetRequest extends ConfirmedRequest<AccessResultCode> {
+
+		private final DataVisitor visitor;
+		private final COSEMpdu pdu;
+		private DataBlockDecoder blockDecoder;
+
+		VisitingGetRequest(boolean highPriority, AttributeAddress param, DataVisitor visitor) {
+			super(LnClientConnection.this, highPriority);
+			this.visitor = visitor;
+			this.pdu = createGetPdu(invokeIdAndPriority(), param);
+		}
+
+		@Override
+		protected void sendRequest() throws IOException {
+			send(pdu);
+		}
+
+		@Override
+		protected void processRawResponse(byte[] pdu) throws IOException {
+			if (pdu[1] != GET_Response.Choices.GET_RESPONSE_NORMAL.getValue()) {
+				super.processRawResponse(pdu);
+				return;
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(pdu, GET_RESPONSE_HEADER_SIZE, pdu.length - GET_RESPONSE_HEADER_SIZE);
+			int choice = buffer.hasRemaining() ? buffer.get() : -1;
+			if (choice == Get_Data_Result.Choices.DATA.getValue()) {
+				DataParser.parse(buffer, visitor);
+				complete(AccessResultCode.SUCCESS);
+			}
+			else if (choice == Get_Data_Result.Choices.DATA_ACCESS_RESULT.getValue() && buffer.hasRemaining()) {
+				complete(AccessResultCode.forValue(buffer.get() & 0xff));
+			}
+			else {
+				throw new IOException("Invalid Get-Data-Result choice " + choice + ".");
+			}
+		}
+
+		@Override
+		protected void processResponse(COSEMpdu responsePdu) throws IOException {
+			if (responsePdu.getChoiceIndex() != COSEMpdu.Choices.GET_RESPONSE) {
+				throw new IOException("Received unexpected response of type " + responsePdu.getChoiceIndex()
+						+ " for a get request.");
+			}
+			GET_Response response = responsePdu.get_response;
+
+			if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_NORMAL) {
+				Get_Data_Result result = response.get_response_normal.result;
+				if (result.getChoiceIndex() == Get_Data_Result.Choices.DATA) {
+					DataParser.visit(DataConverter.toApi(result.data), visitor);
+					complete(AccessResultCode.SUCCESS);
+				}
+				else {
+					complete(AccessResultCode.forValue((int) result.data_access_result.getValue()));
+				}
+			}
+			else if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_WITH_DATABLOCK) {
+				DataBlock_G block = response.get_response_with_datablock.result;
+
+				if (block.result.getChoiceIndex() == DataBlock_G.SubChoice_result.Choices.DATA_ACCESS_RESULT) {
+					complete(AccessResultCode.forValue((int) block.result.data_access_result.getValue()));
+					return;
+				}
+
+				if (blockDecoder == null) {
+					blockDecoder = new DataBlockDecoder(visitor);
+				}
+
+				if (block.last_block.getValue() == false) {
+					send(nextBlockRequestFor(response.get_response_with_datablock));
+					blockDecoder.write(block.result.raw_data.getValue());
+					return;
+				}
+
+				blockDecoder.write(block.result.raw_data.getValue());
+				blockDecoder.finish();
+				complete(AccessResultCode.SUCCESS);
+			}
+			else {
+				throw new IOException("Received unexpected get response " + response.getChoiceIndex()
+						+ " for a single attribute.");
+			}
+		}
+	}
+
+	private static COSEMpdu nextBlockRequestFor(Get_Response_With_Datablock response) {
+		Get_Request_Next nextBlock = new Get_Request_Next();
+		nextBlock.invoke_id_and_priority = response.invoke_id_and_priority;
+		nextBlock.block_number = response.result.block_number;
+
+		GET_Request getRequest = new GET_Request();
+		getRequest.setget_request_next(nextBlock);
+		COSEMpdu nextPdu = new COSEMpdu();
+		nextPdu.setget_request(getRequest);
+		return nextPdu;
+	}
+
+	private static GetResult decodeGetDataResult(ByteBuffer buffer, ResultForm form) throws IOException {
+		if (!buffer.hasRemaining()) {
+			throw new IOException("Get response ends before the result.");
+		}
+		int choice = buffer.get();
+		if (choice == Get_Data_Result.Choices.DATA.getValue()) {
+			switch (form) {
+			case COLUMNS:
+				return new GetResult(parseColumns(buffer));
+			case LAZY:
+				return new GetResult(DataDecoder.decodeLazily(buffer));
+			default:
+				return new GetResult(DataDecoder.decode(buffer));
+			}
+		}
+		else if (choice == Get_Data_Result.Choices.DATA_ACCESS_RESULT.getValue() && buffer.hasRemaining()) {
+			return new GetResult(AccessResultCode.forValue(buffer.get() & 0xff));
+		}
+		throw new IOException("Invalid Get-Data-Result choice " + choice + ".");
+	}
+
+	private static ColumnarTable parseColumns(ByteBuffer buffer) throws IOException {
+		ColumnarConverter.TableVisitor visitor = new ColumnarConverter.TableVisitor();
+		DataParser.parse(buffer, visitor);
+		try {
+			return visitor.table();
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	private GetResult convertPduToGetResult(Get_Data_Result pdu, boolean columnar) throws IOException {
 		if (pdu.getChoiceIndex() == Get_Data_Result.Choices.DATA) {
+			if (columnar) {
+				return columnsOf(pdu.data);
+			}
 			return new GetResult(DataConverter.toApi(pdu.data));
 		}
 		else {
@@ -173,50 +895,173 @@ public class LnClientConnection extends ClientConnection {
 		}
 	}
 
-	@Override
-	public List<AccessResultCode> set(boolean highPriority, SetParameter... params) throws IOException {
-		Invoke_Id_And_Priority invokeIdAndPriority = invokeIdAndPriorityFor(highPriority);
-		int invokeId = invokeIdFrom(invokeIdAndPriority);
-		List<COSEMpdu> pdus = createSetPdu(invokeIdAndPriority, params);
-		send(pdus.remove(0));
+	private static GetResult columnsOf(Data data) throws IOException {
+		try {
+			return new GetResult(ColumnarConverter.toColumns(data));
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
 
-		if (!confirmedModeEnabled()) {
-			return null;
+	private class SetRequest extends ConfirmedRequest<List<AccessResultCode>> {
+
+		private final SetParameter[] params;
+		private final byte[] encodedPdu;
+		private DataBlockWriter blockWriter;
+
+		SetRequest(boolean highPriority, SetParameter[] params) {
+			super(LnClientConnection.this, highPriority);
+			this.params = params;
+			this.encodedPdu = null;
 		}
 
-		SET_Response response;
-		try {
-			response = setResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
-		} catch (TimeoutException e) {
-			throw new IOException("Interrupted while waiting for incoming response", e);
+		SetRequest(boolean highPriority, SetParameter[] params, byte[] encodedPdu) {
+			super(LnClientConnection.this, highPriority);
+			this.params = params;
+			this.encodedPdu = encodedPdu;
 		}
 
-		while (response.getChoiceIndex() == SET_Response.Choices.SET_RESPONSE_DATABLOCK) {
-			send(pdus.remove(0));
-			try {
-				response = setResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
-			} catch (TimeoutException e) {
-				throw new IOException("Interrupted while waiting for incoming response", e);
+		/*
+		 * Estimates the size of the Set-Request-Normal or Set-Request-With-List without encoding the values, so a
+		 * value exceeding the PDU size goes straight to the data blocks. The estimate leaves out the lengths of the
+		 * lists, sendIfFits has the final say.
+		 */
+		private boolean mayFitInOnePdu() throws IOException {
+			int size = REQUEST_HEADER_SIZE;
+			for (SetParameter param : params) {
+				size += pduSizeOf(descriptorWithSelectionFor(param.attributeAddress()))
+						+ EncodedDataInputStream.encodedLength(param.data());
+				if (size > maxSendPduSize()) {
+					return false;
+				}
 			}
+			return true;
+		}
+
+		private COSEMpdu normalPdu() {
+			COSEMpdu pdu = new COSEMpdu();
+			pdu.setset_request(createSetRequest(invokeIdAndPriority(), params));
+			return pdu;
 		}
 
-		switch (response.getChoiceIndex()) {
-		case SET_RESPONSE_NORMAL:
-			return axdrEnumToAccessResultCode(response.set_response_normal.result);
+		/*
+		 * PDU is too large to send in one chunk to the meter, the encoded values are sent in data blocks.
+		 */
+		private COSEMpdu firstDatablockPdu() throws IOException {
+			if (!ConformanceHelper.isSetBlockTransferAllowed(negotiatedFeatures())) {
+				throw new IOException("Set request exceeds the max receive PDU size of the remote meter and "
+						+ "block transfer is not supported.");
+			}
+			if (!confirmedModeEnabled()) {
+				throw new IOException("Set block transfer is not possible in unconfirmed mode.");
+			}
 
-		case SET_RESPONSE_WITH_LIST:
-			return axdrEnumsToAccessResultCodes(response.set_response_with_list.result.list());
+			List<DataObject> values = new ArrayList<DataObject>(params.length);
+			for (SetParameter param : params) {
+				values.add(param.data());
+			}
+			this.blockWriter = new DataBlockWriter(blockSourceFor(values));
+
+			COSEMpdu pdu = new COSEMpdu();
+			pdu.setset_request(createFirstDatablockRequest());
+			return pdu;
+		}
 
-		case SET_RESPONSE_LAST_DATABLOCK:
-			return axdrEnumToAccessResultCode(response.set_response_last_datablock.result);
+		private SET_Request createFirstDatablockRequest() throws IOException {
+			SET_Request firstBlockRequest = new SET_Request();
+			int headerSize;
+			if (params.length == 1) {
+				Cosem_Attribute_Descriptor_With_Selection desc = descriptorWithSelectionFor(
+						params[0].attributeAddress());
+				Set_Request_With_First_Datablock requestFirstBlock = new Set_Request_With_First_Datablock();
+				requestFirstBlock.invoke_id_and_priority = invokeIdAndPriority();
+				requestFirstBlock.cosem_attribute_descriptor = desc.cosem_attribute_descriptor;
+				requestFirstBlock.access_selection = desc.access_selection;
+				requestFirstBlock.datablock = EMPTY_BLOCK;
+				firstBlockRequest.setset_request_with_first_datablock(requestFirstBlock);
+
+				headerSize = firstBlockHeaderSize(firstBlockRequest);
+				requestFirstBlock.datablock = blockWriter.nextBlock(maxSendPduSize() - headerSize);
+			}
+			else {
+				Set_Request_With_List_And_First_Datablock requestListFirstBlock = new Set_Request_With_List_And_First_Datablock();
+				requestListFirstBlock.invoke_id_and_priority = invokeIdAndPriority();
+				requestListFirstBlock.attribute_descriptor_list = new Set_Request_With_List_And_First_Datablock.SubSeqOf_attribute_descriptor_list();
+				for (SetParameter param : params) {
+					requestListFirstBlock.attribute_descriptor_list
+							.add(descriptorWithSelectionFor(param.attributeAddress()));
+				}
+				requestListFirstBlock.datablock = EMPTY_BLOCK;
+				firstBlockRequest.setset_request_with_list_and_first_datablock(requestListFirstBlock);
 
-		case SET_RESPONSE_LAST_DATABLOCK_WITH_LIST:
-			return axdrEnumsToAccessResultCodes(response.set_response_last_datablock_with_list.result.list());
+				headerSize = firstBlockHeaderSize(firstBlockRequest);
+				requestListFirstBlock.datablock = blockWriter.nextBlock(maxSendPduSize() - headerSize);
+			}
 
-		default:
-			throw new IllegalStateException("Unknown response type");
+			return firstBlockRequest;
 		}
 
+		private COSEMpdu nextDatablockPdu() throws IOException {
+			DataBlock_SA datablock = blockWriter.nextBlock(maxSendPduSize() - BLOCK_REQUEST_HEADER_SIZE);
+
+			SET_Request request = new SET_Request();
+			request.setset_request_with_datablock(new Set_Request_With_Datablock(invokeIdAndPriority(), datablock));
+			COSEMpdu pdu = new COSEMpdu();
+			pdu.setset_request(request);
+			return pdu;
+		}
+
+		@Override
+		protected void sendRequest() throws IOException {
+			if (encodedPdu != null) {
+				sendEncoded(encodedPdu);
+			}
+			else if (!mayFitInOnePdu() || !sendIfFits(normalPdu())) {
+				send(firstDatablockPdu());
+			}
+
+			if (!confirmedModeEnabled()) {
+				complete(null);
+			}
+		}
+
+		@Override
+		protected void processResponse(COSEMpdu responsePdu) throws IOException {
+			if (responsePdu.getChoiceIndex() != COSEMpdu.Choices.SET_RESPONSE) {
+				throw new IOException("Received unexpected response of type " + responsePdu.getChoiceIndex()
+						+ " for a set request.");
+			}
+			SET_Response response = responsePdu.set_response;
+
+			switch (response.getChoiceIndex()) {
+			case SET_RESPONSE_DATABLOCK:
+				if (blockWriter == null) {
+					throw new IOException("Remote meter requested a data block, but the request was not sent in blocks.");
+				}
+				blockWriter.checkAcknowledged(response.set_response_datablock.block_number.getValue());
+				send(nextDatablockPdu());
+				break;
+
+			case SET_RESPONSE_NORMAL:
+				complete(axdrEnumToAccessResultCode(response.set_response_normal.result));
+				break;
+
+			case SET_RESPONSE_WITH_LIST:
+				complete(axdrEnumsToAccessResultCodes(response.set_response_with_list.result.list()));
+				break;
+
+			case SET_RESPONSE_LAST_DATABLOCK:
+				complete(axdrEnumToAccessResultCode(response.set_response_last_datablock.result));
+				break;
+
+			case SET_RESPONSE_LAST_DATABLOCK_WITH_LIST:
+				complete(axdrEnumsToAccessResultCodes(response.set_response_last_datablock_with_list.result.list()));
+				break;
+
+			default:
+				throw new IllegalStateException("Unknown response type");
+			}
+		}
 	}
 
 	private List<AccessResultCode> axdrEnumToAccessResultCode(AxdrEnum axdrEnum) {
@@ -233,34 +1078,146 @@ public class LnClientConnection extends ClientConnection {
 		return result;
 	}
 
-	@Override
-	public List<MethodResult> action(boolean highPriority, MethodParameter... params) throws IOException {
-		Invoke_Id_And_Priority id = invokeIdAndPriorityFor(highPriority);
-		int invokeId = invokeIdFrom(id);
-		List<COSEMpdu> pdus = createActionPdu(id, params);
+	private class ActionRequest extends ConfirmedRequest<List<MethodResult>> {
 
-		send(pdus.remove(0));
+		private final int numParams;
+		private final MethodParameter[] params;
+		private final byte[] encodedPdu;
+		private DataBlockWriter blockWriter;
+		private ByteArrayOutputStream datablocks;
 
-		List<MethodResult> result = null;
-		if (confirmedModeEnabled()) {
-			ACTION_Response response;
-			try {
-				response = actionResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
-			} catch (TimeoutException e) {
-				throw new IOException("Interrupted while waiting for incoming response", e);
+		ActionRequest(boolean highPriority, MethodParameter[] params) {
+			super(LnClientConnection.this, highPriority);
+			this.numParams = params.length;
+			this.params = params;
+			this.encodedPdu = null;
+		}
+
+		ActionRequest(boolean highPriority, MethodParameter[] params, byte[] encodedPdu) {
+			super(LnClientConnection.this, highPriority);
+			this.numParams = params.length;
+			this.params = params;
+			this.encodedPdu = encodedPdu;
+		}
+
+		/*
+		 * Estimates the size of the Action-Request-Normal or Action-Request-With-List without encoding the
+		 * parameters, so a parameter exceeding the PDU size goes straight to the pblocks. The estimate leaves out the
+		 * lengths of the lists, sendIfFits has the final say.
+		 */
+		private boolean mayFitInOnePdu() throws IOException {
+			int size = REQUEST_HEADER_SIZE;
+			for (MethodParameter param : params) {
+				size += pduSizeOf(methodDescriptorFor(param))
+						+ EncodedDataInputStream.encodedLength(param.methodParameter());
+				if (size > maxSendPduSize()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private COSEMpdu normalPdu() {
+			COSEMpdu pdu = new COSEMpdu();
+			pdu.setaction_request(createActionRequest(invokeIdAndPriority(), params));
+			return pdu;
+		}
+
+		/*
+		 * PDU is too large to send in one chunk to the meter, the encoded parameters are sent in pblocks.
+		 */
+		private COSEMpdu firstPblockPdu() throws IOException {
+			if (!ConformanceHelper.isActionBlockTransferAllowed(negotiatedFeatures())) {
+				throw new IOException("Action request exceeds the max receive PDU size of the remote meter and "
+						+ "block transfer is not supported.");
+			}
+			if (!confirmedModeEnabled()) {
+				throw new IOException("Action block transfer is not possible in unconfirmed mode.");
+			}
+
+			List<DataObject> values = new ArrayList<DataObject>(params.length);
+			for (MethodParameter param : params) {
+				values.add(param.methodParameter());
 			}
+			this.blockWriter = new DataBlockWriter(blockSourceFor(values));
 
-			while (response.getChoiceIndex() == ACTION_Response.Choices.ACTION_RESPONSE_NEXT_PBLOCK) {
-				send(pdus.remove(0));
+			COSEMpdu pdu = new COSEMpdu();
+			pdu.setaction_request(createFirstPblockRequest());
+			return pdu;
+		}
 
-				try {
-					response = actionResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
-				} catch (TimeoutException e) {
-					throw new IOException("Interrupted while waiting for incoming response", e);
+		private ACTION_Request createFirstPblockRequest() throws IOException {
+			ACTION_Request firstBlockRequest = new ACTION_Request();
+			int headerSize;
+			if (params.length == 1) {
+				Action_Request_With_First_Pblock requestFirstBlock = new Action_Request_With_First_Pblock();
+				requestFirstBlock.invoke_id_and_priority = invokeIdAndPriority();
+				requestFirstBlock.cosem_method_descriptor = methodDescriptorFor(params[0]);
+				requestFirstBlock.pblock = EMPTY_BLOCK;
+				firstBlockRequest.setaction_request_with_first_pblock(requestFirstBlock);
+
+				headerSize = firstBlockHeaderSize(firstBlockRequest);
+				requestFirstBlock.pblock = blockWriter.nextBlock(maxSendPduSize() - headerSize);
+			}
+			else {
+				Action_Request_With_List_And_First_Pblock requestListFirstBlock = new Action_Request_With_List_And_First_Pblock();
+				requestListFirstBlock.invoke_id_and_priority = invokeIdAndPriority();
+				requestListFirstBlock.cosem_method_descriptor_list = new Action_Request_With_List_And_First_Pblock.SubSeqOf_cosem_method_descriptor_list();
+				for (MethodParameter param : params) {
+					requestListFirstBlock.cosem_method_descriptor_list.add(methodDescriptorFor(param));
 				}
+				requestListFirstBlock.pblock = EMPTY_BLOCK;
+				firstBlockRequest.setaction_request_with_list_and_first_pblock(requestListFirstBlock);
+
+				headerSize = firstBlockHeaderSize(firstBlockRequest);
+				requestListFirstBlock.pblock = blockWriter.nextBlock(maxSendPduSize() - headerSize);
+			}
+
+			return firstBlockRequest;
+		}
+
+		private COSEMpdu nextPblockPdu() throws IOException {
+			DataBlock_SA pblock = blockWriter.nextBlock(maxSendPduSize() - BLOCK_REQUEST_HEADER_SIZE);
+
+			ACTION_Request request = new ACTION_Request();
+			request.setaction_request_with_pblock(new Action_Request_With_Pblock(invokeIdAndPriority(), pblock));
+			COSEMpdu pdu = new COSEMpdu();
+			pdu.setaction_request(request);
+			return pdu;
+		}
+
+		@Override
+		protected void sendRequest() throws IOException {
+			if (encodedPdu != null) {
+				sendEncoded(encodedPdu);
+			}
+			else if (!mayFitInOnePdu() || !sendIfFits(normalPdu())) {
+				send(firstPblockPdu());
 			}
 
-			result = new ArrayList<MethodResult>(params.length);
+			if (!confirmedModeEnabled()) {
+				complete(null);
+			}
+		}
+
+		@Override
+		protected void processResponse(COSEMpdu responsePdu) throws IOException {
+			if (responsePdu.getChoiceIndex() != COSEMpdu.Choices.ACTION_RESPONSE) {
+				throw new IOException("Received unexpected response of type " + responsePdu.getChoiceIndex()
+						+ " for an action request.");
+			}
+			ACTION_Response response = responsePdu.action_response;
+
+			if (response.getChoiceIndex() == ACTION_Response.Choices.ACTION_RESPONSE_NEXT_PBLOCK) {
+				if (blockWriter == null) {
+					throw new IOException("Remote meter requested a pblock, but the request was not sent in pblocks.");
+				}
+				blockWriter.checkAcknowledged(response.action_response_next_pblock.block_number.getValue());
+				send(nextPblockPdu());
+				return;
+			}
+
+			List<MethodResult> result = new ArrayList<MethodResult>(numParams);
 			if (response.getChoiceIndex() == ACTION_Response.Choices.ACTION_RESPONSE_NORMAL) {
 				Action_Response_With_Optional_Data resp = response.action_response_normal.single_response;
 				DataObject resultData = null;
@@ -268,8 +1225,8 @@ public class LnClientConnection extends ClientConnection {
 				if (resp.return_parameters.isUsed()) {
 					resultData = DataConverter.toApi(resp.return_parameters.getValue().data);
 				}
-				result.add(new MethodResult(MethodResultCode.methodResultCodeFor((int) resp.result.getValue()),
-						resultData));
+				result.add(
+						new MethodResult(MethodResultCode.methodResultCodeFor((int) resp.result.getValue()), resultData));
 			}
 			else if (response.getChoiceIndex() == ACTION_Response.Choices.ACTION_RESPONSE_WITH_LIST) {
 				for (Action_Response_With_Optional_Data resp : response.action_response_with_list.list_of_responses
@@ -283,27 +1240,25 @@ public class LnClientConnection extends ClientConnection {
 				}
 			}
 			else if (response.getChoiceIndex() == ACTION_Response.Choices.ACTION_RESPONSE_WITH_PBLOCK) {
-				ByteArrayOutputStream datablocks = new ByteArrayOutputStream();
-				COSEMpdu pdu = new COSEMpdu();
-				ACTION_Request request = new ACTION_Request();
-				Action_Request_Next_Pblock nextBlock = new Action_Request_Next_Pblock();
-				nextBlock.invoke_id_and_priority = response.action_response_with_pblock.invoke_id_and_priority;
-				while (response.action_response_with_pblock.pblock.last_block.getValue() == false) {
-					datablocks.write(response.action_response_with_pblock.pblock.raw_data.getValue());
+				if (datablocks == null) {
+					datablocks = new ByteArrayOutputStream();
+				}
+				datablocks.write(response.action_response_with_pblock.pblock.raw_data.getValue());
 
+				if (response.action_response_with_pblock.pblock.last_block.getValue() == false) {
+					Action_Request_Next_Pblock nextBlock = new Action_Request_Next_Pblock();
+					nextBlock.invoke_id_and_priority = response.action_response_with_pblock.invoke_id_and_priority;
 					nextBlock.block_number = response.action_response_with_pblock.pblock.block_number;
+
+					ACTION_Request request = new ACTION_Request();
 					request.setaction_request_next_pblock(nextBlock);
+					COSEMpdu pdu = new COSEMpdu();
 					pdu.setaction_request(request);
 					send(pdu);
-
-					try {
-						response = actionResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
-					} catch (TimeoutException e) {
-						throw new IOException("Interrupted while waiting for incoming response", e);
-					}
+					return;
 				}
-				datablocks.write(response.action_response_with_pblock.pblock.raw_data.getValue());
-				InputStream dataByteStream = new ByteArrayInputStream(datablocks.toByteArray());
+
+				InputStream dataByteStream = new AxdrReader(datablocks.toByteArray());
 				while (dataByteStream.available() > 0) {
 					Get_Data_Result dataResult = new Get_Data_Result();
 					dataResult.decode(dataByteStream);
@@ -317,39 +1272,49 @@ public class LnClientConnection extends ClientConnection {
 			else {
 				throw new UnsupportedOperationException("Unknown response type");
 			}
+
+			complete(result);
 		}
+	}
 
-		return result;
+	@Override
+	protected boolean processRawPdu(byte[] pdu) {
+		if (pdu.length < GET_RESPONSE_HEADER_SIZE || (pdu[0] & 0xff) != COSEMpdu.Choices.GET_RESPONSE.getValue()) {
+			return false;
+		}
+		int choice = pdu[1];
+		if (choice < GET_Response.Choices.GET_RESPONSE_NORMAL.getValue()
+				|| choice > GET_Response.Choices.GET_RESPONSE_WITH_LIST.getValue()) {
+			return false;
+		}
+
+		dispatchRawResponse(pdu[2] & 0x0f, pdu);
+		return true;
 	}
 
 	@Override
 	protected void processPdu(COSEMpdu pdu) {
 
-		try {
-			switch (pdu.getChoiceIndex()) {
-			case GET_RESPONSE:
-				getResponseQueue.put(PduHelper.invokeIdFrom(pdu.get_response), pdu.get_response);
-				break;
-			case SET_RESPONSE:
-				setResponseQueue.put(PduHelper.invokeIdFrom(pdu.set_response), pdu.set_response);
-				break;
-			case ACTION_RESPONSE:
-				actionResponseQueue.put(PduHelper.invokeIdFrom(pdu.action_response), pdu.action_response);
-				break;
-			case EVENT_NOTIFICATION_REQUEST:
-				// FIXME: fix this. check how DLMS event listening works
-				// if (connectionSettings().clientConnectionEventListener() != null) {
-				// EventNotification notification = DataConverter.toApi(pdu.event_notification_request);
-				// connectionSettings().clientConnectionEventListener().onEventReceived(notification);
-				// }
-				break;
+		switch (pdu.getChoiceIndex()) {
+		case GET_RESPONSE:
+			dispatchResponse(PduHelper.invokeIdFrom(pdu.get_response), pdu);
+			break;
+		case SET_RESPONSE:
+			dispatchResponse(PduHelper.invokeIdFrom(pdu.set_response), pdu);
+			break;
+		case ACTION_RESPONSE:
+			dispatchResponse(PduHelper.invokeIdFrom(pdu.action_response), pdu);
+			break;
+		case EVENT_NOTIFICATION_REQUEST:
+			// FIXME: fix this. check how DLMS event listening works
+			// if (connectionSettings().clientConnectionEventListener() != null) {
+			// EventNotification notification = DataConverter.toApi(pdu.event_notification_request);
+			// connectionSettings().clientConnectionEventListener().onEventReceived(notification);
+			// }
+			break;
 
-			default:
-				// TODO: handle this case..
-			}
-		} catch (InterruptedException e) {
-			// TODO
-			// LoggingHelper.logStackTrace(e, logger);
+		default:
+			// TODO: handle this case..
 		}
 	}
 
@@ -377,10 +1342,7 @@ public class LnClientConnection extends ClientConnection {
 		}
 	}
 
-	/*
-	 * Creates a PDU to read all attributes listed in params
-	 */
-	private COSEMpdu createGetPdu(Invoke_Id_And_Priority id, AttributeAddress... params) {
+	private void validateGetParams(AttributeAddress... params) {
 		if (params == null || params.length == 0) {
 			throw new IllegalArgumentException("No parameter provided for get");
 		}
@@ -398,6 +1360,26 @@ public class LnClientConnection extends ClientConnection {
 				}
 			}
 		}
+	}
+
+	private Cosem_Attribute_Descriptor_With_Selection descriptorWithSelectionFor(AttributeAddress param) {
+		Selective_Access_Descriptor access = null;
+		SelectiveAccessDescription accessSelection = param.accessSelection();
+		if (accessSelection != null) {
+			access = new Selective_Access_Descriptor(new Unsigned8(accessSelection.accessSelector()),
+					DataConverter.toPdu(accessSelection.accessParameter()));
+		}
+		return new Cosem_Attribute_Descriptor_With_Selection(
+				new Cosem_Attribute_Descriptor(new Unsigned16(param.classId()),
+						new Cosem_Object_Instance_Id(param.obisCode().bytes()), new Integer8(param.attributeId())),
+				access);
+	}
+
+	/*
+	 * Creates a PDU to read all attributes listed in params
+	 */
+	private COSEMpdu createGetPdu(Invoke_Id_And_Priority id, AttributeAddress... params) {
+		validateGetParams(params);
 
 		GET_Request getRequest = new GET_Request();
 		if (params.length == 1) {
@@ -420,16 +1402,7 @@ public class LnClientConnection extends ClientConnection {
 			requestList.invoke_id_and_priority = id;
 			requestList.attribute_descriptor_list = new Get_Request_With_List.SubSeqOf_attribute_descriptor_list();
 			for (AttributeAddress p : params) {
-				Selective_Access_Descriptor access = null;
-				SelectiveAccessDescription accessSelection = p.accessSelection();
-				if (accessSelection != null) {
-					access = new Selective_Access_Descriptor(new Unsigned8(accessSelection.accessSelector()),
-							DataConverter.toPdu(accessSelection.accessParameter()));
-				}
-				requestList.attribute_descriptor_list.add(new Cosem_Attribute_Descriptor_With_Selection(
-						new Cosem_Attribute_Descriptor(new Unsigned16(p.classId()),
-								new Cosem_Object_Instance_Id(p.obisCode().bytes()), new Integer8(p.attributeId())),
-						access));
+				requestList.attribute_descriptor_list.add(descriptorWithSelectionFor(p));
 			}
 
 			getRequest.setget_request_with_list(requestList);
@@ -449,7 +1422,13 @@ public class LnClientConnection extends ClientConnection {
 		}
 	}
 
-	private List<COSEMpdu> createSetPdu(Invoke_Id_And_Priority id, SetParameter[] params) throws IOException {
+	private static byte[] encode(COSEMpdu pdu) throws IOException {
+		BerByteArrayOutputStream os = new BerByteArrayOutputStream(256, true);
+		pdu.encode(os);
+		return os.getArray();
+	}
+
+	private void validateSetParams(SetParameter... params) {
 		if (params == null || params.length == 0) {
 			throw new IllegalArgumentException("No parameter provided for set");
 		}
@@ -460,12 +1439,12 @@ public class LnClientConnection extends ClientConnection {
 				}
 			}
 		}
+	}
 
-		List<COSEMpdu> result = new LinkedList<COSEMpdu>();
+	private SET_Request createSetRequest(Invoke_Id_And_Priority id, SetParameter[] params) {
+		validateSetParams(params);
 
 		SET_Request request = new SET_Request();
-		COSEMpdu pdu = null;
-
 		if (params.length == 1) {
 			Set_Request_Normal requestNormal = new Set_Request_Normal();
 			requestNormal.invoke_id_and_priority = id;
@@ -488,109 +1467,16 @@ public class LnClientConnection extends ClientConnection {
 			requestList.attribute_descriptor_list = new Set_Request_With_List.SubSeqOf_attribute_descriptor_list();
 			requestList.value_list = new Set_Request_With_List.SubSeqOf_value_list();
 			for (SetParameter p : params) {
-				Selective_Access_Descriptor access = null;
-				SelectiveAccessDescription accessSelection = p.attributeAddress().accessSelection();
-				if (accessSelection != null) {
-					access = new Selective_Access_Descriptor(new Unsigned8(accessSelection.accessSelector()),
-							DataConverter.toPdu(accessSelection.accessParameter()));
-				}
-				Cosem_Attribute_Descriptor desc = new Cosem_Attribute_Descriptor(
-						new Unsigned16(p.attributeAddress().classId()),
-						new Cosem_Object_Instance_Id(p.attributeAddress().obisCode().bytes()),
-						new Integer8(p.attributeAddress().attributeId()));
-				requestList.attribute_descriptor_list.add(new Cosem_Attribute_Descriptor_With_Selection(desc, access));
+				requestList.attribute_descriptor_list.add(descriptorWithSelectionFor(p.attributeAddress()));
 				requestList.value_list.add(DataConverter.toPdu(p.data()));
 			}
 			request.setset_request_with_list(requestList);
 		}
 
-		if (pduSizeOf(request) < maxSendPduSize()) {
-			pdu = new COSEMpdu();
-			pdu.setset_request(request);
-			result.add(pdu);
-		}
-		else {
-
-			// if (params.length == 1) {
-			// baos.reset();
-			// request.set_request_normal.value.encode(baos);
-			// dataBuffer = ByteBuffer.wrap(baos.getArray());
-			//
-			// Set_Request_With_First_Datablock requestFirstBlock = new Set_Request_With_First_Datablock();
-			// requestFirstBlock.invoke_id_and_priority = id;
-			// requestFirstBlock.cosem_attribute_descriptor = request.set_request_normal.cosem_attribute_descriptor;
-			// requestFirstBlock.access_selection = request.set_request_normal.access_selection;
-			// requestFirstBlock.datablock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(0),
-			// new AxdrOctetString(0));
-			//
-			// // TODO what is baos used here for?
-			// baos.reset();
-			// int length = requestFirstBlock.encode(baos);
-			// byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-			// dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-			// requestFirstBlock.datablock.raw_data = new AxdrOctetString(firstDataChunk);
-			//
-			// request.setset_request_with_first_datablock(requestFirstBlock);
-			// pdu = new COSEMpdu();
-			// pdu.setset_request(request);
-			// result.add(pdu);
-			// }
-			// else {
-			// baos.reset();
-			// for (int i = request.set_request_with_list.value_list.size() - 1; i >= 0; i--) {
-			// request.set_request_with_list.value_list.get(i).encode(baos);
-			// }
-			// dataBuffer = ByteBuffer.wrap(baos.getArray());
-			//
-			// Set_Request_With_List_And_First_Datablock requestListFirstBlock = new
-			// Set_Request_With_List_And_First_Datablock();
-			// requestListFirstBlock.invoke_id_and_priority = id;
-			// requestListFirstBlock.attribute_descriptor_list = new
-			// Set_Request_With_List_And_First_Datablock.SubSeqOf_attribute_descriptor_list();
-			// requestListFirstBlock.datablock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(1),
-			// new AxdrOctetString(0));
-			//
-			// for (Cosem_Attribute_Descriptor_With_Selection desc :
-			// request.set_request_with_list.attribute_descriptor_list
-			// .list()) {
-			// requestListFirstBlock.attribute_descriptor_list.add(desc);
-			// }
-			//
-			// baos.reset();
-			// int length = requestListFirstBlock.encode(baos);
-			// byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-			// dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-			// requestListFirstBlock.datablock.raw_data = new AxdrOctetString(firstDataChunk);
-			//
-			// request.setset_request_with_list_and_first_datablock(requestListFirstBlock);
-			// pdu = new COSEMpdu();
-			// pdu.setset_request(request);
-			// result.add(pdu);
-			// }
-			//
-			// int blockNr = 1;
-			// while (dataBuffer.hasRemaining()) {
-			// blockNr++;
-			// int blockLength = Math.min(maxSendPduSize() - 9, dataBuffer.remaining());
-			// byte[] dataBlock = new byte[blockLength];
-			// dataBuffer.get(dataBlock, 0, dataBlock.length);
-			//
-			// Set_Request_With_Datablock requestBlock = new Set_Request_With_Datablock();
-			// requestBlock.invoke_id_and_priority = id;
-			// requestBlock.datablock = new DataBlock_SA(new AxdrBoolean(dataBuffer.remaining() == 0),
-			// new Unsigned32(blockNr), new AxdrOctetString(dataBlock));
-			//
-			// request.setset_request_with_datablock(requestBlock);
-			// pdu = new COSEMpdu();
-			// pdu.setset_request(request);
-			// result.add(pdu);
-			// }
-		}
-
-		return result;
+		return request;
 	}
 
-	private List<COSEMpdu> createActionPdu(Invoke_Id_And_Priority id, MethodParameter... params) throws IOException {
+	private void validateActionParams(MethodParameter... params) {
 		if (params == null || params.length == 0) {
 			throw new IllegalArgumentException("No parameter provided for set");
 		}
@@ -599,17 +1485,21 @@ public class LnClientConnection extends ClientConnection {
 				throw new IllegalArgumentException("MethodID 0 not allowed on action");
 			}
 		}
+	}
 
-		List<COSEMpdu> result = new LinkedList<COSEMpdu>();
+	private Cosem_Method_Descriptor methodDescriptorFor(MethodParameter param) {
+		return new Cosem_Method_Descriptor(new Unsigned16(param.classId()),
+				new Cosem_Object_Instance_Id(param.obisCode().bytes()), new Integer8(param.methodId()));
+	}
 
-		ACTION_Request request = new ACTION_Request();
-		COSEMpdu pdu = null;
+	private ACTION_Request createActionRequest(Invoke_Id_And_Priority id, MethodParameter... params) {
+		validateActionParams(params);
 
+		ACTION_Request request = new ACTION_Request();
 		if (params.length == 1) {
 			Action_Request_Normal requestNormal = new Action_Request_Normal();
 			requestNormal.invoke_id_and_priority = id;
-			requestNormal.cosem_method_descriptor = new Cosem_Method_Descriptor(new Unsigned16(params[0].classId()),
-					new Cosem_Object_Instance_Id(params[0].obisCode().bytes()), new Integer8(params[0].methodId()));
+			requestNormal.cosem_method_descriptor = methodDescriptorFor(params[0]);
 			requestNormal.method_invocation_parameters.setValue(DataConverter.toPdu(params[0].methodParameter()));
 
 			request.setaction_request_normal(requestNormal);
@@ -620,87 +1510,32 @@ public class LnClientConnection extends ClientConnection {
 			requestList.cosem_method_descriptor_list = new Action_Request_With_List.SubSeqOf_cosem_method_descriptor_list();
 			requestList.method_invocation_parameters = new Action_Request_With_List.SubSeqOf_method_invocation_parameters();
 			for (MethodParameter param : params) {
-				Cosem_Method_Descriptor desc = new Cosem_Method_Descriptor(new Unsigned16(param.classId()),
-						new Cosem_Object_Instance_Id(param.obisCode().bytes()), new Integer8(param.methodId()));
-				requestList.cosem_method_descriptor_list.add(desc);
+				requestList.cosem_method_descriptor_list.add(methodDescriptorFor(param));
 				requestList.method_invocation_parameters.add(DataConverter.toPdu(param.methodParameter()));
 			}
 			request.setaction_request_with_list(requestList);
 		}
 
-		if (pduSizeOf(request) < maxSendPduSize()) {
-			pdu = new COSEMpdu();
-			pdu.setaction_request(request);
-			result.add(pdu);
-		}
-		else {
-			// PDU is too large to send in one chunk to the meter
-			// use of several Datablocks instead
-
-			// if (params.length == 1) {
-			// request.action_request_normal.method_invocation_parameters.encode(baos);
-			// dataBuffer = ByteBuffer.wrap(baos.getArray());
-			//
-			// Action_Request_With_First_Pblock requestFirstBlock = new Action_Request_With_First_Pblock();
-			// requestFirstBlock.invoke_id_and_priority = id;
-			// requestFirstBlock.cosem_method_descriptor = request.action_request_normal.cosem_method_descriptor;
-			//
-			// baos.reset();
-			// int length = requestFirstBlock.encode(baos);
-			// byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-			// dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-			// requestFirstBlock.pblock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(0),
-			// new AxdrOctetString(firstDataChunk));
-			//
-			// request.setaction_request_with_first_pblock(requestFirstBlock);
-			// pdu = new COSEMpdu();
-			// pdu.setaction_request(request);
-			// result.add(pdu);
-			// }
-			// else {
-			// baos.reset();
-			// request.action_request_with_list.method_invocation_parameters.encode(baos);
-			// dataBuffer = ByteBuffer.wrap(baos.getArray());
-			//
-			// Action_Request_With_List_And_First_Pblock requestListFirstBlock = new
-			// Action_Request_With_List_And_First_Pblock();
-			// requestListFirstBlock.invoke_id_and_priority = id;
-			// requestListFirstBlock.cosem_method_descriptor_list = new
-			// Action_Request_With_List_And_First_Pblock.SubSeqOf_cosem_method_descriptor_list();
-			//
-			// for (Cosem_Method_Descriptor desc : request.action_request_with_list.cosem_method_descriptor_list
-			// .list()) {
-			// requestListFirstBlock.cosem_method_descriptor_list.add(desc);
-			// }
-			//
-			// baos.reset();
-			// int length = requestListFirstBlock.encode(baos);
-			// byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-			// dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-			// requestListFirstBlock.pblock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(0),
-			// new AxdrOctetString(firstDataChunk));
-			//
-			// request.setaction_request_with_list_and_first_pblock(requestListFirstBlock);
-			// }
-			//
-			// int blockNr = 1;
-			// while (dataBuffer.hasRemaining()) {
-			// int blockLength = Math.min(maxSendPduSize() - 8, dataBuffer.remaining());
-			// byte[] dataBlock = new byte[blockLength];
-			// dataBuffer.get(dataBlock, 0, dataBlock.length);
-			//
-			// Action_Request_With_Pblock requestBlock = new Action_Request_With_Pblock();
-			// requestBlock.pBlock = new DataBlock_SA(new AxdrBoolean(dataBuffer.remaining() == 0),
-			// new Unsigned32(blockNr), new AxdrOctetString(dataBlock));
-			//
-			// request.setaction_request_with_pblock(requestBlock);
-			// pdu = new COSEMpdu();
-			// pdu.setaction_request(request);
-			// result.add(pdu);
-			// }
+		return request;
+	}
+
+	/*
+	 * Source of the raw data of a block transfer. A single value is encoded as Data, the values of a list request as
+	 * SEQUENCE OF Data.
+	 */
+	private EncodedDataInputStream blockSourceFor(List<DataObject> values) throws IOException {
+		if (values.size() == 1) {
+			return new EncodedDataInputStream(values.get(0));
 		}
+		return EncodedDataInputStream.sequenceOf(values);
+	}
 
-		return result;
+	/*
+	 * Size of a first block request without raw data, including the COSEM PDU tag and the bytes the length of the raw
+	 * data may grow by.
+	 */
+	private int firstBlockHeaderSize(AxdrType request) {
+		return 1 + pduSizeOf(request) + 2;
 	}
 
 	@Override
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+/**
+ * Action request which is encoded once and sent any number of times, e.g. to invoke the same methods on many meters.
+ * <p>
+ * The request PDU is encoded on first use and reused afterwards, only the invoke id and priority is set per request.
+ * A prepared request does not belong to a connection and can be shared by all connections and threads.
+ * </p>
+ * <p>
+ * If the request does not fit the negotiated limits of a connection, e.g. its max receive PDU size, it is sent like
+ * {@link LnClientConnection#actionAsync(boolean, MethodParameter...)} would send it.
+ * </p>
+ */
+public final class PreparedAction extends PreparedRequest {
+
+	private final MethodParameter[] params;
+
+	/**
+	 * @param params
+	 *            the parameters of the request
+	 */
+	public PreparedAction(MethodParameter... params) {
+		if (params == null || params.length == 0) {
+			throw new IllegalArgumentException("No parameter provided for action");
+		}
+		this.params = params.clone();
+	}
+
+	MethodParameter[] params() {
+		return params;
+	}
+
+}
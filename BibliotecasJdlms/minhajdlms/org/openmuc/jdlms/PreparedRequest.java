@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+/**
+ * Base of the prepared requests, holding the request PDU once it has been encoded.
+ */
+abstract class PreparedRequest {
+
+	private volatile byte[] encodedPdu;
+
+	/**
+	 * @return the encoded COSEM PDU with a placeholder for the invoke id and priority or null if the request has not
+	 *         been encoded yet
+	 */
+	byte[] encodedPdu() {
+		return encodedPdu;
+	}
+
+	void setEncodedPdu(byte[] encodedPdu) {
+		this.encodedPdu = encodedPdu;
+	}
+
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.openmuc.jdlms.datatypes.ColumnarTable;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.CosemDateTime.ClockStatus;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.interfaceclass.attribute.ClockAttribute;
+import org.openmuc.jdlms.interfaceclass.attribute.ProfileGenericAttribute;
+
+/**
+ * Reads the buffer of a profile generic object (class id 7), e.g. a load profile, row by row.
+ * <p>
+ * The rows are selected either by capture time, using the range descriptor, or by their index in the buffer, using
+ * the entry descriptor. Long selections are read in windows of a given length one after the other, so every response
+ * stays small and only the rows of a single window are held in memory. Each row is handed to a {@link RowListener} as
+ * soon as its window has been received. Alternatively, the rows of every window are handed to a
+ * {@link ColumnsListener} as {@link ColumnarTable}, which avoids a data object per value.
+ * </p>
+ */
+public class ProfileGenericReader {
+
+	/**
+	 * Receives the rows of the buffer in the order they are stored in the buffer.
+	 */
+	public interface RowListener {
+		/**
+		 * Called for every row read. The method is called by the reader thread of the transport layer and should not
+		 * block.
+		 *
+		 * @param row
+		 *            the values of the capture objects of the row
+		 */
+		void rowRead(List<DataObject> row);
+	}
+
+	/**
+	 * Receives the rows of the buffer window by window, stored in columns.
+	 */
+	public interface ColumnsListener {
+		/**
+		 * Called for every window read. The method is called by the reader thread of the transport layer and should
+		 * not block.
+		 *
+		 * @param window
+		 *            the rows of the window, one column per capture object
+		 */
+		void columnsRead(ColumnarTable window);
+	}
+
+	private static final int RANGE_DESCRIPTOR = 1;
+	private static final int ENTRY_DESCRIPTOR = 2;
+
+	/**
+	 * Range descriptor bounds are inclusive, so consecutive windows are separated by one second.
+	 */
+	private static final long RANGE_RESOLUTION = 1000;
+
+	private static final ObisCode CLOCK = new ObisCode(0, 0, 1, 0, 0, 255);
+
+	private final LnClientConnection connection;
+	private final ObisCode profile;
+	private final AttributeAddress restrictingObject;
+
+	/**
+	 * Creates a reader of the given profile generic object, selecting ranges by the time of the clock object.
+	 *
+	 * @param connection
+	 *            the connection to the remote meter
+	 * @param profile
+	 *            the logical name of the profile generic object
+	 */
+	public ProfileGenericReader(LnClientConnection connection, ObisCode profile) {
+		this(connection, profile, new AttributeAddress(ClockAttribute.TIME, CLOCK));
+	}
+
+	/**
+	 * Creates a reader of the given profile generic object.
+	 *
+	 * @param connection
+	 *            the connection to the remote meter
+	 * @param profile
+	 *            the logical name of the profile generic object
+	 * @param restrictingObject
+	 *            the capture object holding the capture time, used to select ranges
+	 */
+	public ProfileGenericReader(LnClientConnection connection, ObisCode profile, AttributeAddress restrictingObject) {
+		this.connection = connection;
+		this.profile = profile;
+		this.restrictingObject = restrictingObject;
+	}
+
+	/**
+	 * Reads all rows captured between from and to, blocking until all rows have been read.
+	 *
+	 * @param from
+	 *            the capture time of the first row, inclusive
+	 * @param to
+	 *            the capture time of the last row, inclusive
+	 * @param windowMillis
+	 *            the length of the time range read with one request in milliseconds, 0 to read the whole range with
+	 *            one request
+	 * @param listener
+	 *            the listener receiving the rows
+	 * @return the number of rows read
+	 * @throws IOException
+	 *             if the connection breaks or the remote meter rejects the request
+	 * @throws TimeoutException
+	 *             if a request times out
+	 */
+	public long readRange(Calendar from, Calendar to, long windowMillis, RowListener listener)
+			throws IOException, TimeoutException {
+		return ClientConnection.waitFor(readRangeAsync(from, to, windowMillis, listener));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #readRange(Calendar, Calendar, long, RowListener)}.
+	 *
+	 * @param from
+	 *            the capture time of the first row, inclusive
+	 * @param to
+	 *            the capture time of the last row, inclusive
+	 * @param windowMillis
+	 *            the length of the time range read with one request in milliseconds, 0 to read the whole range with
+	 *            one request
+	 * @param listener
+	 *            the listener receiving the rows
+	 * @return future of the number of rows read
+	 */
+	public CompletableFuture<Long> readRangeAsync(Calendar from, Calendar to, long windowMillis,
+			RowListener listener) {
+		return startRangeRead(from, to, windowMillis, listener, null);
+	}
+
+	/**
+	 * Reads all rows captured between from and to into columns, blocking until all rows have been read.
+	 *
+	 * @param from
+	 *            the capture time of the first row, inclusive
+	 * @param to
+	 *            the capture time of the last row, inclusive
+	 * @param windowMillis
+	 *            the length of the time range read with one request in milliseconds, 0 to read the whole range with
+	 *            one request
+	 * @param listener
+	 *            the listener receiving the columns of every window
+	 * @return the number of rows read
+	 * @throws IOException
+	 *             if the connection breaks or the remote meter rejects the request
+	 * @throws TimeoutException
+	 *             if a request times out
+	 */
+	public long readRangeColumns(Calendar from, Calendar to, long windowMillis, ColumnsListener listener)
+			throws IOException, TimeoutException {
+		return ClientConnection.waitFor(readRangeColumnsAsync(from, to, windowMillis, listener));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #readRangeColumns(Calendar, Calendar, long, ColumnsListener)}.
+	 *
+	 * @param from
+	 *            the capture time of the first row, inclusive
+	 * @param to
+	 *            the capture time of the last row, inclusive
+	 * @param windowMillis
+	 *            the length of the time range read with one request in milliseconds, 0 to read the whole range with
+	 *            one request
+	 * @param listener
+	 *            the listener receiving the columns of every window
+	 * @return future of the number of rows read
+	 */
+	public CompletableFuture<Long> readRangeColumnsAsync(Calendar from, Calendar to, long windowMillis,
+			ColumnsListener listener) {
+		return startRangeRead(from, to, windowMillis, null, listener);
+	}
+
+	/**
+	 * Reads the rows with the given indexes, blocking until all rows have been read.
+	 *
+	 * @param fromEntry
+	 *            the index of the first row, starting from 1
+	 * @param toEntry
+	 *            the index of the last row, inclusive. 0 for the last row in the buffer
+	 * @param windowEntries
+	 *            the number of rows read with one request, 0 to read all rows with one request
+	 * @param listener
+	 *            the listener receiving the rows
+	 * @return the number of rows read
+	 * @throws IOException
+	 *             if the connection breaks or the remote meter rejects the request
+	 * @throws TimeoutException
+	 *             if a request times out
+	 */
+	public long readEntries(long fromEntry, long toEntry, long windowEntries, RowListener listener)
+			throws IOException, TimeoutException {
+		return ClientConnection.waitFor(readEntriesAsync(fromEntry, toEntry, windowEntries, listener));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #readEntries(long, long, long, RowListener)}.
+	 *
+	 * @param fromEntry
+	 *            the index of the first row, starting from 1
+	 * @param toEntry
+	 *            the index of the last row, inclusive. 0 for the last row in the buffer
+	 * @param windowEntries
+	 *            the number of rows read with one request, 0 to read all rows with one request
+	 * @param listener
+	 *            the listener receiving the rows
+	 * @return future of the number of rows read
+	 */
+	public CompletableFuture<Long> readEntriesAsync(long fromEntry, long toEntry, long windowEntries,
+			RowListener listener) {
+		return startEntryRead(fromEntry, toEntry, windowEntries, listener, null);
+	}
+
+	/**
+	 * Reads the rows with the given indexes into columns, blocking until all rows have been read.
+	 *
+	 * @param fromEntry
+	 *            the index of the first row, starting from 1
+	 * @param toEntry
+	 *            the index of the last row, inclusive. 0 for the last row in the buffer
+	 * @param windowEntries
+	 *            the number of rows read with one request, 0 to read all rows with one request
+	 * @param listener
+	 *            the listener receiving the columns of every window
+	 * @return the number of rows read
+	 * @throws IOException
+	 *             if the connection breaks or the remote meter rejects the request
+	 * @throws TimeoutException
+	 *             if a request times out
+	 */
+	public long readEntriesColumns(long fromEntry, long toEntry, long windowEntries, ColumnsListener listener)
+			throws IOException, TimeoutException {
+		return ClientConnection.waitFor(readEntriesColumnsAsync(fromEntry, toEntry, windowEntries, listener));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #readEntriesColumns(long, long, long, ColumnsListener)}.
+	 *
+	 * @param fromEntry
+	 *            the index of the first row, starting from 1
+	 * @param toEntry
+	 *            the index of the last row, inclusive. 0 for the last row in the buffer
+	 * @param windowEntries
+	 *            the number of rows read with one request, 0 to read all rows with one request
+	 * @param listener
+	 *            the listener receiving the columns of every window
+	 * @return future of the number of rows read
+	 */
+	public CompletableFuture<Long> readEntriesColumnsAsync(long fromEntry, long toEntry, long windowEntries,
+			ColumnsListener listener) {
+		return startEntryRead(fromEntry, toEntry, windowEntries, null, listener);
+	}
+
+	private CompletableFuture<Long> startRangeRead(Calendar from, Calendar to, long windowMillis,
+			RowListener rowListener, ColumnsListener columnsListener) {
+		if (windowMillis < 0) {
+			throw new IllegalArgumentException("Window must not be negative.");
+		}
+		RangeRead read = new RangeRead(from, to, windowMillis, rowListener, columnsListener);
+		read.readNext();
+		return read.result;
+	}
+
+	private CompletableFuture<Long> startEntryRead(long fromEntry, long toEntry, long windowEntries,
+			RowListener rowListener, ColumnsListener columnsListener) {
+		if (fromEntry < 1 || toEntry < 0 || (toEntry > 0 && toEntry < fromEntry)) {
+			throw new IllegalArgumentException("Invalid entry range " + fromEntry + " to " + toEntry + ".");
+		}
+		if (windowEntries < 0) {
+			throw new IllegalArgumentException("Window must not be negative.");
+		}
+
+		final EntryRead read = new EntryRead(fromEntry, toEntry, windowEntries, rowListener, columnsListener);
+		if (toEntry > 0 || windowEntries == 0) {
+			read.readNext();
+			return read.result;
+		}
+
+		// the windows can only be determined once the number of rows in the buffer is known
+		connection.getAsync(new AttributeAddress(ProfileGenericAttribute.ENTRIES_IN_USE, profile))
+				.whenComplete(new BiConsumer<List<GetResult>, Throwable>() {
+					@Override
+					public void accept(List<GetResult> results, Throwable cause) {
+						if (cause != null) {
+							read.result.completeExceptionally(cause);
+							return;
+						}
+						GetResult result = results.get(0);
+						if (result.resultCode() != AccessResultCode.SUCCESS || !result.resultData().isNumber()) {
+							read.result.completeExceptionally(new IOException(
+									"Reading entries in use of profile " + profile + " failed with "
+											+ result.resultCode() + "."));
+							return;
+						}
+						read.lastEntry = result.resultData().longValue();
+						if (read.lastEntry == 0) {
+							read.result.complete(0L);
+							return;
+						}
+						read.readNext();
+					}
+				});
+		return read.result;
+	}
+
+	private SelectiveAccessDescription rangeDescriptor(long from, long to, TimeZone timeZone) {
+		DataObject restrictingObjectDefinition = DataObject.newStructureData(Arrays.asList(
+				DataObject.newUInteger16Data(restrictingObject.classId()),
+				DataObject.newOctetStringData(restrictingObject.obisCode().bytes()),
+				DataObject.newInteger8Data((byte) restrictingObject.attributeId()), DataObject.newUInteger16Data(0)));
+
+		DataObject parameter = DataObject.newStructureData(Arrays.asList(restrictingObjectDefinition,
+				dateTimeOf(from, timeZone), dateTimeOf(to, timeZone),
+				DataObject.newArrayData(Collections.<DataObject> emptyList())));
+
+		return new SelectiveAccessDescription(RANGE_DESCRIPTOR, parameter);
+	}
+
+	private static SelectiveAccessDescription entryDescriptor(long from, long to) {
+		DataObject parameter = DataObject.newStructureData(
+				Arrays.asList(DataObject.newUInteger32Data(from), DataObject.newUInteger32Data(to),
+						DataObject.newUInteger16Data(1), DataObject.newUInteger16Data(0)));
+
+		return new SelectiveAccessDescription(ENTRY_DESCRIPTOR, parameter);
+	}
+
+	/*
+	 * The capture time is encoded as date-time octet string, as required by the range descriptor. The hour is local
+	 * time including daylight saving time, so the deviation includes it as well.
+	 */
+	private static DataObject dateTimeOf(long millis, TimeZone timeZone) {
+		Calendar calendar = Calendar.getInstance(timeZone);
+		calendar.setTimeInMillis(millis);
+
+		int dstOffset = calendar.get(Calendar.DST_OFFSET);
+		int deviation = (calendar.get(Calendar.ZONE_OFFSET) + dstOffset) / 60000;
+		ClockStatus[] clockStatus = dstOffset != 0 ? new ClockStatus[] { ClockStatus.DAYLIGHT_SAVING_ACTIVE }
+				: new ClockStatus[0];
+
+		CosemDateTime dateTime = new CosemDateTime(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+				calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE),
+				calendar.get(Calendar.SECOND), deviation, clockStatus);
+
+		return DataObject.newOctetStringData(dateTime.encode());
+	}
+
+	/**
+	 * Reads the windows of a selection one after the other.
+	 */
+	private abstract class WindowedRead implements BiConsumer<List<GetResult>, Throwable> {
+		private final RowListener rowListener;
+		private final ColumnsListener columnsListener;
+		final CompletableFuture<Long> result = new CompletableFuture<Long>();
+		private long numRows = 0;
+
+		WindowedRead(RowListener rowListener, ColumnsListener columnsListener) {
+			this.rowListener = rowListener;
+			this.columnsListener = columnsListener;
+		}
+
+		/**
+		 * @return the selection of the next window or null if all windows have been read
+		 */
+		abstract SelectiveAccessDescription nextWindow();
+
+		void readNext() {
+			SelectiveAccessDescription access = nextWindow();
+			if (access == null) {
+				result.complete(numRows);
+				return;
+			}
+			AttributeAddress buffer = new AttributeAddress(ProfileGenericAttribute.BUFFER, profile, access);
+			if (columnsListener != null) {
+				connection.getColumnsAsync(false, buffer).whenComplete(this);
+			}
+			else {
+				connection.getAsync(buffer).whenComplete(this);
+			}
+		}
+
+		@Override
+		public void accept(List<GetResult> results, Throwable cause) {
+			if (cause != null) {
+				result.completeExceptionally(cause);
+				return;
+			}
+
+			GetResult window = results.get(0);
+			if (window.resultCode() != AccessResultCode.SUCCESS) {
+				result.completeExceptionally(new IOException(
+						"Reading buffer of profile " + profile + " failed with " + window.resultCode() + "."));
+				return;
+			}
+			if (columnsListener == null && !window.resultData().isComplex()) {
+				result.completeExceptionally(new IOException("Buffer of profile " + profile + " is not an array."));
+				return;
+			}
+
+			try {
+				if (columnsListener != null) {
+					columnsListener.columnsRead(window.resultColumns());
+					numRows += window.resultColumns().numRows();
+				}
+				else {
+					List<DataObject> rows = window.resultData().value();
+					for (DataObject row : rows) {
+						rowListener.rowRead(row.<List<DataObject>> value());
+						numRows++;
+					}
+				}
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+				return;
+			}
+
+			readNext();
+		}
+	}
+
+	private class RangeRead extends WindowedRead {
+		private final long to;
+		private final long windowMillis;
+		private final TimeZone timeZone;
+		private long next;
+
+		RangeRead(Calendar from, Calendar to, long windowMillis, RowListener rowListener,
+				ColumnsListener columnsListener) {
+			super(rowListener, columnsListener);
+			this.next = from.getTimeInMillis();
+			this.to = to.getTimeInMillis();
+			this.windowMillis = windowMillis;
+			this.timeZone = from.getTimeZone();
+		}
+
+		@Override
+		SelectiveAccessDescription nextWindow() {
+			if (next > to) {
+				return null;
+			}
+			long windowEnd = to;
+			if (windowMillis > 0) {
+				windowEnd = Math.min(next + windowMillis - RANGE_RESOLUTION, to);
+			}
+
+			SelectiveAccessDescription access = rangeDescriptor(next, windowEnd, timeZone);
+			next = Math.max(windowEnd, next) + RANGE_RESOLUTION;
+			return access;
+		}
+	}
+
+	private class EntryRead extends WindowedRead {
+		private final long windowEntries;
+		private long next;
+		long lastEntry;
+
+		EntryRead(long fromEntry, long toEntry, long windowEntries, RowListener rowListener,
+				ColumnsListener columnsListener) {
+			super(rowListener, columnsListener);
+			this.next = fromEntry;
+			this.lastEntry = toEntry;
+			this.windowEntries = windowEntries;
+		}
+
+		@Override
+		SelectiveAccessDescription nextWindow() {
+			if (next == 0 || (lastEntry > 0 && next > lastEntry)) {
+				return null;
+			}
+			if (windowEntries == 0 || lastEntry == 0) {
+				// a single window up to the last row, which is resolved by the remote meter
+				SelectiveAccessDescription access = entryDescriptor(next, lastEntry);
+				next = 0;
+				return access;
+			}
+
+			long windowEnd = Math.min(next + windowEntries - 1, lastEntry);
+			SelectiveAccessDescription access = entryDescriptor(next, windowEnd);
+			next = windowEnd + 1;
+			return access;
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Splits the parameters of a get, set or action call into several list requests.
+ * <p>
+ * The parameters are kept in order and every request is filled with as many parameters as possible, which results in
+ * the smallest number of requests. A request is limited by the encoded size of its parameters and by the maximum
+ * number of parameters the remote meter accepts in one list. A single parameter larger than the maximum size forms a
+ * request of its own, which is then sent using block transfer.
+ * </p>
+ */
+final class RequestPlanner {
+
+	/**
+	 * Splits parameters of the given encoded sizes into consecutive ranges.
+	 *
+	 * @param sizes
+	 *            the encoded size of every parameter
+	 * @param maxSize
+	 *            the maximum encoded size of all parameters of one request
+	 * @param maxListSize
+	 *            the maximum number of parameters of one request, 0 for no limit
+	 * @return the start index of every request, followed by the total number of parameters
+	 */
+	static int[] split(int[] sizes, int maxSize, int maxListSize) {
+		int[] bounds = new int[sizes.length + 1];
+		int numRequests = 0;
+
+		int requestSize = 0;
+		int listSize = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			boolean full = requestSize + sizes[i] > maxSize || (maxListSize > 0 && listSize == maxListSize);
+			if (i == 0 || (full && listSize > 0)) {
+				bounds[numRequests++] = i;
+				requestSize = 0;
+				listSize = 0;
+			}
+			requestSize += sizes[i];
+			listSize++;
+		}
+		bounds[numRequests] = sizes.length;
+
+		int[] result = new int[numRequests + 1];
+		System.arraycopy(bounds, 0, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Combines the results of consecutive requests into one list, keeping the order of the requests.
+	 *
+	 * @param parts
+	 *            the futures of the single requests
+	 * @param <T>
+	 *            the type of the single results
+	 * @return a future completed with all results, or with the first failure. The result is null if a request did not
+	 *         return a result (unconfirmed mode).
+	 */
+	static <T> CompletableFuture<List<T>> inOrder(final List<CompletableFuture<List<T>>> parts) {
+		if (parts.size() == 1) {
+			return parts.get(0);
+		}
+
+		final CompletableFuture<List<T>> result = new CompletableFuture<List<T>>();
+		final AtomicInteger outstanding = new AtomicInteger(parts.size());
+
+		BiConsumer<List<T>, Throwable> partDone = new BiConsumer<List<T>, Throwable>() {
+			@Override
+			public void accept(List<T> partResult, Throwable cause) {
+				if (cause != null) {
+					result.completeExceptionally(cause);
+					return;
+				}
+				if (outstanding.decrementAndGet() > 0) {
+					return;
+				}
+
+				List<T> results = new ArrayList<T>();
+				for (CompletableFuture<List<T>> part : parts) {
+					List<T> partResults = part.join();
+					if (partResults == null) {
+						result.complete(null);
+						return;
+					}
+					results.addAll(partResults);
+				}
+				result.complete(results);
+			}
+		};
+
+		for (CompletableFuture<List<T>> part : parts) {
+			part.whenComplete(partDone);
+		}
+
+		return result;
+	}
+
+	private RequestPlanner() {
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Watches the response timeouts of the outstanding requests. All connections with the same thread factory share one
+ * timer, whose daemon thread is created by that factory and ends while no timeout is pending. Tasks must not block,
+ * see {@link ClientConnection#schedule(Runnable, long)}.
+ */
+final class RequestTimer {
+
+	/*
+	 * Time after which the idle timer thread ends.
+	 */
+	private static final long KEEP_ALIVE_MILLIS = 1000;
+
+	private static final Map<ThreadFactory, RequestTimer> timers = new HashMap<ThreadFactory, RequestTimer>();
+	private static final Lock timersLock = new ReentrantLock();
+
+	private final ThreadFactory threadFactory;
+	private final ScheduledThreadPoolExecutor executor;
+	private int users = 0;
+
+	private RequestTimer(final ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+		this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = threadFactory.newThread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor.setRemoveOnCancelPolicy(true);
+		this.executor.setKeepAliveTime(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Returns the timer of the given thread factory. Every call has to be followed by one call of {@link #release()}.
+	 * 
+	 * @param threadFactory
+	 *            the factory of the timer thread
+	 * @return the timer
+	 */
+	static RequestTimer acquire(ThreadFactory threadFactory) {
+		timersLock.lock();
+		try {
+			RequestTimer timer = timers.get(threadFactory);
+			if (timer == null) {
+				timer = new RequestTimer(threadFactory);
+				timers.put(threadFactory, timer);
+			}
+			timer.users++;
+			return timer;
+		} finally {
+			timersLock.unlock();
+		}
+	}
+
+	/**
+	 * Forgets the timer as soon as no connection uses it anymore. Tasks still scheduled run nevertheless, the thread
+	 * ends after the last one.
+	 */
+	void release() {
+		timersLock.lock();
+		try {
+			if (--users == 0) {
+				timers.remove(threadFactory);
+			}
+		} finally {
+			timersLock.unlock();
+		}
+	}
+
+	ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+		return executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+}
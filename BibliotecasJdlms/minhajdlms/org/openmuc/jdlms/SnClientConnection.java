@@ -29,7 +29,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -37,9 +36,12 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataVisitor;
 import org.openmuc.jdlms.interfaceclass.method.AssociationSnMethod;
+import org.openmuc.jdlms.internal.ColumnarConverter;
 import org.openmuc.jdlms.internal.ConformanceHelper;
 import org.openmuc.jdlms.internal.DataConverter;
+import org.openmuc.jdlms.internal.DataParser;
 import org.openmuc.jdlms.internal.Settings;
 import org.openmuc.jdlms.internal.SnInterfaceClass;
 import org.openmuc.jdlms.internal.SnInterfaceClassList;
@@ -67,6 +69,10 @@ import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
 /**
  * Variant of the connection class using decrypt messages with short name referencing to communicate with the remote
  * smart meter
+ * <p>
+ * Short name responses carry no invoke id, so only one request can be outstanding at a time. The asynchronous
+ * methods are therefore not supported and throw an {@link UnsupportedOperationException}; use the blocking variants.
+ * </p>
  */
 public class SnClientConnection extends ClientConnection {
 
@@ -136,7 +142,7 @@ public class SnClientConnection extends ClientConnection {
 			throw new IOException("Interrupted while waiting for incoming response", e);
 		}
 
-		List<GetResult> result = new LinkedList<GetResult>();
+		List<GetResult> result = new ArrayList<GetResult>(response.size());
 		for (ReadResponse.SubChoice data : response.list()) {
 			GetResult resultItem;
 
@@ -184,7 +190,7 @@ public class SnClientConnection extends ClientConnection {
 				throw new IOException("Interrupted while waiting for incoming response", e);
 			}
 
-			result = new LinkedList<AccessResultCode>();
+			result = new ArrayList<AccessResultCode>(response.size());
 			for (WriteResponse.SubChoice data : response.list()) {
 				AccessResultCode item;
 				if (data.getChoiceIndex() == WriteResponse.SubChoice.Choices.SUCCESS) {
@@ -360,6 +366,57 @@ public class SnClientConnection extends ClientConnection {
 		return result;
 	}
 
+	@Override
+	public List<GetResult> getColumns(boolean highPriority, AttributeAddress... params) throws IOException {
+		List<GetResult> columnResults = new ArrayList<GetResult>(params.length);
+		for (GetResult getResult : get(highPriority, params)) {
+			if (getResult.resultCode() == AccessResultCode.SUCCESS) {
+				try {
+					columnResults.add(new GetResult(ColumnarConverter.toColumns(getResult.resultData())));
+				} catch (IllegalArgumentException e) {
+					throw new IOException(e.getMessage(), e);
+				}
+			}
+			else {
+				columnResults.add(getResult);
+			}
+		}
+		return columnResults;
+	}
+
+	/**
+	 * Same as {@link #get(boolean, AttributeAddress...)}, the data of short name responses is decoded right away.
+	 */
+	@Override
+	public List<GetResult> getLazy(boolean highPriority, AttributeAddress... params) throws IOException {
+		return get(highPriority, params);
+	}
+
+	@Override
+	public AccessResultCode get(boolean highPriority, AttributeAddress param, DataVisitor visitor)
+			throws IOException {
+		GetResult getResult = get(highPriority, param).get(0);
+		if (getResult.resultCode() == AccessResultCode.SUCCESS) {
+			DataParser.visit(getResult.resultData(), visitor);
+		}
+		return getResult.resultCode();
+	}
+
+	@Override
+	public List<GetResult> get(boolean highPriority, PreparedGet request) throws IOException {
+		return get(highPriority, request.params());
+	}
+
+	@Override
+	public List<AccessResultCode> set(boolean highPriority, PreparedSet request) throws IOException {
+		return set(highPriority, request.params());
+	}
+
+	@Override
+	public List<MethodResult> action(boolean highPriority, PreparedAction request) throws IOException {
+		return action(highPriority, request.params());
+	}
+
 	@Override
 	protected void processPdu(COSEMpdu pdu) {
 		try {
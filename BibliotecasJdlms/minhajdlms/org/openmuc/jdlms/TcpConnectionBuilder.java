@@ -22,11 +22,15 @@ package org.openmuc.jdlms;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 import javax.net.SocketFactory;
 
 import org.openmuc.jdlms.internal.TcpSettings;
+import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
+import org.openmuc.jdlms.internal.transportlayer.tcp.NioTcpTransportLayerConnection;
 import org.openmuc.jdlms.internal.transportlayer.tcp.TcpTransportLayerConnection;
 
 public class TcpConnectionBuilder extends ConnectionBuilder<TcpConnectionBuilder> {
@@ -35,6 +39,7 @@ public class TcpConnectionBuilder extends ConnectionBuilder<TcpConnectionBuilder
 
 	private final InetAddress inetAddress;
 	private int tcpPort;
+	private boolean nonBlockingIo;
 
 	/**
 	 * Construct a {@link TcpConnectionBuilder} with client access point 1, logical device address 16 and a default TCP
@@ -67,11 +72,29 @@ public class TcpConnectionBuilder extends ConnectionBuilder<TcpConnectionBuilder
 		return this;
 	}
 
+	/**
+	 * Selects whether the connection is served by one of a few shared selector threads instead of a reader thread of
+	 * its own. Use this if many connections are open at the same time. The default is false.
+	 * <p>
+	 * With non-blocking IO the responses are decoded by the shared selector threads, so callbacks of the connection
+	 * like the event listener must not block.
+	 * </p>
+	 * 
+	 * @param nonBlockingIo
+	 *            true to use non-blocking IO
+	 * @return the ConnectionBuilder
+	 */
+	public TcpConnectionBuilder nonBlockingIo(boolean nonBlockingIo) {
+		this.nonBlockingIo = nonBlockingIo;
+
+		return this;
+	}
+
 	@Override
 	public LnClientConnection buildLnConnection() throws IOException {
 		TcpSettings settings = new TcpSettingsImpl(this);
 
-		TcpTransportLayerConnection transportLayer = buildTcpTransportLayer(settings);
+		TransportLayerConnection transportLayer = buildTcpTransportLayer(settings);
 
 		LnClientConnection connection = new LnClientConnection(settings, transportLayer);
 
@@ -83,12 +106,19 @@ public class TcpConnectionBuilder extends ConnectionBuilder<TcpConnectionBuilder
 	@Override
 	public SnClientConnection buildSnConnection() throws IOException {
 		TcpSettings settings = new TcpSettingsImpl(this);
-		TcpTransportLayerConnection transportLayer = buildTcpTransportLayer(settings);
+		TransportLayerConnection transportLayer = buildTcpTransportLayer(settings);
 
 		return new SnClientConnection(settings, transportLayer);
 	}
 
-	private TcpTransportLayerConnection buildTcpTransportLayer(TcpSettings settings) throws IOException {
+	private TransportLayerConnection buildTcpTransportLayer(TcpSettings settings) throws IOException {
+		if (nonBlockingIo) {
+			SocketChannel channel = SocketChannel
+					.open(new InetSocketAddress(settings.inetAddress(), settings.tcpPort()));
+
+			return new NioTcpTransportLayerConnection(channel, settings);
+		}
+
 		Socket socket = SocketFactory.getDefault().createSocket(settings.inetAddress(), settings.tcpPort());
 
 		return new TcpTransportLayerConnection(socket, settings);
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.openmuc.jdlms.internal.UdpSettings;
+import org.openmuc.jdlms.internal.transportlayer.udp.UdpTransportLayerConnection;
+
+/**
+ * Builds connections using the wrapper over UDP according to IEC 62056-47. All UDP connections of a process share
+ * one local UDP socket.
+ */
+public class UdpConnectionBuilder extends ConnectionBuilder<UdpConnectionBuilder> {
+
+	private static final int DEFAULT_DLMS_PORT = 4059;
+
+	private final InetAddress inetAddress;
+	private int udpPort;
+	private int retransmissionTimeout;
+	private int maxRetransmissions;
+
+	/**
+	 * Construct a {@link UdpConnectionBuilder} with client access point 16, logical device address 1, a default UDP
+	 * port 4059 and up to 3 retransmissions after 3 seconds each.
+	 * 
+	 * @param inetAddress
+	 *            the Internet address of the remote meter.
+	 */
+	public UdpConnectionBuilder(InetAddress inetAddress) {
+		super();
+
+		this.inetAddress = inetAddress;
+
+		this.udpPort = DEFAULT_DLMS_PORT;
+		this.retransmissionTimeout = 3000;
+		this.maxRetransmissions = 3;
+
+		clientAccessPoint(16);
+		logicalDeviceAddress(1);
+	}
+
+	/**
+	 * Sets the server UDP port.
+	 * 
+	 * @param udpPort
+	 *            the server port
+	 * @return the ConnectionBuilder
+	 */
+	public UdpConnectionBuilder udpPort(int udpPort) {
+		this.udpPort = udpPort;
+
+		return this;
+	}
+
+	/**
+	 * Sets the time after which a request is sent again if no response has been received. The retransmission timeout
+	 * should exceed the usual round trip time of the link, since a late response to a retransmitted request is
+	 * received twice. The response timeout should cover all retransmissions.
+	 * 
+	 * @param retransmissionTimeout
+	 *            time in milliseconds, 0 disables retransmissions
+	 * @return the ConnectionBuilder
+	 */
+	public UdpConnectionBuilder retransmissionTimeout(int retransmissionTimeout) {
+		if (retransmissionTimeout < 0) {
+			throw new IllegalArgumentException("Retransmission timeout must not be negative");
+		}
+		this.retransmissionTimeout = retransmissionTimeout;
+
+		return this;
+	}
+
+	/**
+	 * Sets how often a request is sent again at most.
+	 * 
+	 * @param maxRetransmissions
+	 *            the maximum number of retransmissions per request, 0 disables retransmissions
+	 * @return the ConnectionBuilder
+	 */
+	public UdpConnectionBuilder maxRetransmissions(int maxRetransmissions) {
+		if (maxRetransmissions < 0) {
+			throw new IllegalArgumentException("Max retransmissions must not be negative");
+		}
+		this.maxRetransmissions = maxRetransmissions;
+
+		return this;
+	}
+
+	@Override
+	public LnClientConnection buildLnConnection() throws IOException {
+		UdpSettings settings = new UdpSettingsImpl(this);
+
+		UdpTransportLayerConnection transportLayer = new UdpTransportLayerConnection(settings);
+
+		LnClientConnection connection = new LnClientConnection(settings, transportLayer);
+
+		try {
+			connection.connect();
+		} catch (IOException e) {
+			// there is no reader thread noticing a failed association, so the wPorts are freed here
+			transportLayer.close();
+			throw e;
+		}
+
+		return connection;
+	}
+
+	@Override
+	public SnClientConnection buildSnConnection() throws IOException {
+		UdpSettings settings = new UdpSettingsImpl(this);
+		UdpTransportLayerConnection transportLayer = new UdpTransportLayerConnection(settings);
+
+		return new SnClientConnection(settings, transportLayer);
+	}
+
+	private class UdpSettingsImpl extends SettingsImpl implements UdpSettings {
+		private final InetAddress inetAddress;
+		private final int udpPort;
+		private final int retransmissionTimeout;
+		private final int maxRetransmissions;
+
+		public UdpSettingsImpl(UdpConnectionBuilder builder) {
+			super(builder);
+
+			this.inetAddress = builder.inetAddress;
+			this.udpPort = builder.udpPort;
+			this.retransmissionTimeout = builder.retransmissionTimeout;
+			this.maxRetransmissions = builder.maxRetransmissions;
+		}
+
+		@Override
+		public InetAddress inetAddress() {
+			return this.inetAddress;
+		}
+
+		@Override
+		public int udpPort() {
+			return this.udpPort;
+		}
+
+		@Override
+		public int retransmissionTimeout() {
+			return this.retransmissionTimeout;
+		}
+
+		@Override
+		public int maxRetransmissions() {
+			return this.maxRetransmissions;
+		}
+
+	}
+
+}
@@ -90,7 +90,8 @@ class LnConsoleApp extends ConsoleApp {
 		AttributeAddress scanChannels = new AttributeAddress(AssociationLnAttribute.OBJECT_LIST,
 				new ObisCode("0.0.40.0.0.255"));
 
-		return connection.get(scanChannels).get(0);
+		// only a few values of every object definition are printed
+		return connection.getLazy(false, scanChannels).get(0);
 	}
 
 	@Override
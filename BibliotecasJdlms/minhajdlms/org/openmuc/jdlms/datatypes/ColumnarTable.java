@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.datatypes;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An array of structures, e.g. the buffer of a profile generic object, stored column by column.
+ * <p>
+ * Integer, enumerated, boolean and short bit string values are stored in {@code long[]} columns, floating point values
+ * in {@code double[]} columns and date-time values as milliseconds since the epoch in {@code long[]} columns. Only
+ * values of other types, e.g. octet strings, are kept as {@link DataObject}. Compared to a {@link DataObject} tree,
+ * this needs no object per value and lets aggregations run over primitive arrays.
+ * </p>
+ * <p>
+ * The column arrays are returned without copying them and must not be modified.
+ * </p>
+ */
+public final class ColumnarTable {
+
+	public enum ColumnType {
+		/**
+		 * Integer, enumerated, boolean and bit string values up to 64 bits, read by {@link #longColumn(int)}.
+		 */
+		LONG,
+		/**
+		 * Floating point values, read by {@link #doubleColumn(int)}.
+		 */
+		DOUBLE,
+		/**
+		 * Date-time values as milliseconds since the epoch, read by {@link #longColumn(int)}.
+		 */
+		TIMESTAMP,
+		/**
+		 * Values of any other type, read by {@link #objectColumn(int)}.
+		 */
+		OBJECT
+	}
+
+	private final int numRows;
+	private final ColumnType[] types;
+	private final long[][] longColumns;
+	private final double[][] doubleColumns;
+	private final DataObject[][] objectColumns;
+	private final BitSet[] nullRows;
+
+	private ColumnarTable(Builder builder) {
+		this.numRows = builder.numRows;
+		this.types = builder.types;
+		this.longColumns = builder.longColumns;
+		this.doubleColumns = builder.doubleColumns;
+		this.objectColumns = builder.objectColumns;
+		this.nullRows = builder.nullRows;
+
+		for (int i = 0; i < types.length; i++) {
+			if (types[i] == null) {
+				// column holds null values only
+				types[i] = ColumnType.OBJECT;
+				objectColumns[i] = new DataObject[numRows];
+			}
+			else if (longColumns[i] != null) {
+				longColumns[i] = Arrays.copyOf(longColumns[i], numRows);
+			}
+			else if (doubleColumns[i] != null) {
+				doubleColumns[i] = Arrays.copyOf(doubleColumns[i], numRows);
+			}
+			else {
+				objectColumns[i] = Arrays.copyOf(objectColumns[i], numRows);
+			}
+		}
+	}
+
+	public int numRows() {
+		return numRows;
+	}
+
+	public int numColumns() {
+		return types.length;
+	}
+
+	public ColumnType columnType(int column) {
+		return types[column];
+	}
+
+	/**
+	 * @param column
+	 *            the index of the column
+	 * @return the values of a {@link ColumnType#LONG} or {@link ColumnType#TIMESTAMP} column. Null values are 0.
+	 * @throws IllegalArgumentException
+	 *             if the column is of another type
+	 */
+	public long[] longColumn(int column) {
+		if (longColumns[column] == null) {
+			throw new IllegalArgumentException("Column " + column + " is of type " + types[column] + ".");
+		}
+		return longColumns[column];
+	}
+
+	/**
+	 * @param column
+	 *            the index of the column
+	 * @return the values of a {@link ColumnType#DOUBLE} column. Null values are 0.
+	 * @throws IllegalArgumentException
+	 *             if the column is of another type
+	 */
+	public double[] doubleColumn(int column) {
+		if (doubleColumns[column] == null) {
+			throw new IllegalArgumentException("Column " + column + " is of type " + types[column] + ".");
+		}
+		return doubleColumns[column];
+	}
+
+	/**
+	 * @param column
+	 *            the index of the column
+	 * @return the values of a {@link ColumnType#OBJECT} column. Null values are null.
+	 * @throws IllegalArgumentException
+	 *             if the column is of another type
+	 */
+	public DataObject[] objectColumn(int column) {
+		if (objectColumns[column] == null) {
+			throw new IllegalArgumentException("Column " + column + " is of type " + types[column] + ".");
+		}
+		return objectColumns[column];
+	}
+
+	/**
+	 * Checks if the value of a row has been null data, don't care or an unspecified date-time.
+	 *
+	 * @param row
+	 *            the index of the row
+	 * @param column
+	 *            the index of the column
+	 * @return true if the value is null
+	 */
+	public boolean isNull(int row, int column) {
+		return nullRows[column].get(row);
+	}
+
+	/**
+	 * Collects the values of a table row by row. The values of a row are added column by column.
+	 */
+	public static final class Builder {
+		private static final int MIN_CAPACITY = 16;
+
+		private final ColumnType[] types;
+		private final long[][] longColumns;
+		private final double[][] doubleColumns;
+		private final DataObject[][] objectColumns;
+		private final BitSet[] nullRows;
+
+		private int capacity;
+		private int numRows = 0;
+		private int column = 0;
+
+		/**
+		 * @param numColumns
+		 *            the number of columns
+		 * @param expectedRows
+		 *            the expected number of rows, used as initial capacity
+		 */
+		public Builder(int numColumns, int expectedRows) {
+			this.types = new ColumnType[numColumns];
+			this.longColumns = new long[numColumns][];
+			this.doubleColumns = new double[numColumns][];
+			this.objectColumns = new DataObject[numColumns][];
+			this.nullRows = new BitSet[numColumns];
+			for (int i = 0; i < numColumns; i++) {
+				nullRows[i] = new BitSet();
+			}
+			this.capacity = Math.max(expectedRows, MIN_CAPACITY);
+		}
+
+		/**
+		 * @return the type of the column the next value is added to, null if only null values have been added
+		 */
+		public ColumnType nextColumnType() {
+			checkColumnCount();
+			return types[column];
+		}
+
+		public void addLong(long value) {
+			checkColumnCount();
+			longColumn(ColumnType.LONG)[numRows] = value;
+			column++;
+		}
+
+		public void addTimestamp(long epochMillis) {
+			checkColumnCount();
+			longColumn(ColumnType.TIMESTAMP)[numRows] = epochMillis;
+			column++;
+		}
+
+		public void addDouble(double value) {
+			checkColumnCount();
+			if (types[column] == null) {
+				setType(ColumnType.DOUBLE);
+				doubleColumns[column] = new double[capacity];
+			}
+			else {
+				checkType(ColumnType.DOUBLE);
+			}
+			doubleColumns[column][numRows] = value;
+			column++;
+		}
+
+		public void addObject(DataObject value) {
+			checkColumnCount();
+			if (types[column] == null) {
+				setType(ColumnType.OBJECT);
+				objectColumns[column] = new DataObject[capacity];
+			}
+			else {
+				checkType(ColumnType.OBJECT);
+			}
+			objectColumns[column][numRows] = value;
+			column++;
+		}
+
+		public void addNull() {
+			checkColumnCount();
+			nullRows[column].set(numRows);
+			column++;
+		}
+
+		/**
+		 * Finishes the current row.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if the row does not have a value for every column
+		 */
+		public void endRow() {
+			if (column != types.length) {
+				throw new IllegalArgumentException(
+						"Row " + numRows + " has " + column + " instead of " + types.length + " columns.");
+			}
+			column = 0;
+			numRows++;
+			if (numRows == capacity) {
+				grow();
+			}
+		}
+
+		public ColumnarTable build() {
+			if (column != 0) {
+				throw new IllegalArgumentException("Last row is incomplete.");
+			}
+			return new ColumnarTable(this);
+		}
+
+		private long[] longColumn(ColumnType type) {
+			if (types[column] == null) {
+				setType(type);
+				longColumns[column] = new long[capacity];
+			}
+			else {
+				checkType(type);
+			}
+			return longColumns[column];
+		}
+
+		private void checkColumnCount() {
+			if (column == types.length) {
+				throw new IllegalArgumentException("Row " + numRows + " has more than " + types.length + " columns.");
+			}
+		}
+
+		private void setType(ColumnType type) {
+			types[column] = type;
+		}
+
+		private void checkType(ColumnType type) {
+			if (types[column] != type) {
+				throw new IllegalArgumentException("Column " + column + " is of type " + types[column]
+						+ ", but row " + numRows + " holds a value of type " + type + ".");
+			}
+		}
+
+		private void grow() {
+			capacity *= 2;
+			for (int i = 0; i < types.length; i++) {
+				if (longColumns[i] != null) {
+					longColumns[i] = Arrays.copyOf(longColumns[i], capacity);
+				}
+				else if (doubleColumns[i] != null) {
+					doubleColumns[i] = Arrays.copyOf(doubleColumns[i], capacity);
+				}
+				else if (objectColumns[i] != null) {
+					objectColumns[i] = Arrays.copyOf(objectColumns[i], capacity);
+				}
+			}
+		}
+	}
+
+}
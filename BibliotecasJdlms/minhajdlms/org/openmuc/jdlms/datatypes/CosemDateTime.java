@@ -172,7 +172,7 @@ public class CosemDateTime implements CosemDateFormat {
 		offset += CosemDate.SIZE;
 		CosemTime time = CosemTime.decode(Arrays.copyOfRange(octetString, offset, CosemTime.SIZE + offset));
 
-		offset += 3;
+		offset += CosemTime.SIZE;
 		byte[] subOctetString = Arrays.copyOfRange(octetString, offset, octetString.length);
 
 		return new CosemDateTime(date, time, subOctetString);
@@ -20,8 +20,11 @@
  */
 package org.openmuc.jdlms.datatypes;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
 
+import org.openmuc.jdlms.internal.UncheckedDataFactory;
 import org.openmuc.jdlms.internal.asn1.cosem.Data.Choices;
 
 /**
@@ -34,6 +37,28 @@ import org.openmuc.jdlms.internal.asn1.cosem.Data.Choices;
  */
 public class DataObject {
 
+	private static final DataObject NULL_DATA = new DataObject(null, Choices.NULL_DATA);
+	private static final DataObject TRUE = new DataObject(Boolean.TRUE, Choices.BOOL);
+	private static final DataObject FALSE = new DataObject(Boolean.FALSE, Choices.BOOL);
+
+	/*
+	 * Data objects of one byte types are shared, they are created on first use.
+	 */
+	private static final DataObject[] INTEGER8_VALUES = new DataObject[256];
+	private static final DataObject[] BCD_VALUES = new DataObject[256];
+	private static final DataObject[] UNSIGNED8_VALUES = new DataObject[256];
+	private static final DataObject[] ENUMERATE_VALUES = new DataObject[256];
+
+	static {
+		// arrays decoded lazily have been checked by the decoder
+		UncheckedDataFactory.install(new UncheckedDataFactory() {
+			@Override
+			protected DataObject arrayData(List<DataObject> array) {
+				return new DataObject(randomAccessListOf(array), Choices.ARRAY);
+			}
+		});
+	}
+
 	private final Choices choice;
 	private final Object value;
 
@@ -48,7 +73,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newNullData() {
-		return new DataObject(null, Choices.NULL_DATA);
+		return NULL_DATA;
 	}
 
 	/**
@@ -61,6 +86,39 @@ public class DataObject {
 	 *             If a sub element of array has another data type than the first
 	 */
 	public static DataObject newArrayData(List<DataObject> array) throws IllegalArgumentException {
+		checkArrayType(array);
+
+		return new DataObject(randomAccessListOf(array), Choices.ARRAY);
+	}
+
+	/**
+	 * Constructs a compact array data. A compact array is encoded with a single type description for all elements
+	 * followed by the values of the elements without their tags, which is considerably smaller than an array of
+	 * structures.
+	 * 
+	 * @param array
+	 *            The array of values
+	 * @return The data
+	 * @throws IllegalArgumentException
+	 *             If a sub element of array has another data type than the first
+	 */
+	public static DataObject newCompactArrayData(List<DataObject> array) throws IllegalArgumentException {
+		checkArrayType(array);
+
+		return new DataObject(randomAccessListOf(array), Choices.COMPACT_ARRAY);
+	}
+
+	/*
+	 * Elements are accessed by index, e.g. by get(int), so linked lists are copied once on construction.
+	 */
+	private static List<DataObject> randomAccessListOf(List<DataObject> elements) {
+		if (elements instanceof RandomAccess) {
+			return elements;
+		}
+		return new ArrayList<DataObject>(elements);
+	}
+
+	private static void checkArrayType(List<DataObject> array) throws IllegalArgumentException {
 		if (array.size() > 0) {
 			Choices arrayType = array.get(0).choiceIndex();
 
@@ -73,8 +131,6 @@ public class DataObject {
 				index++;
 			}
 		}
-
-		return new DataObject(array, Choices.ARRAY);
 	}
 
 	/**
@@ -85,7 +141,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newStructureData(List<DataObject> structure) {
-		return new DataObject(structure, Choices.STRUCTURE);
+		return new DataObject(randomAccessListOf(structure), Choices.STRUCTURE);
 	}
 
 	/**
@@ -96,7 +152,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newBoolData(boolean bool) {
-		return new DataObject(bool, Choices.BOOL);
+		return bool ? TRUE : FALSE;
 	}
 
 	/**
@@ -118,7 +174,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newInteger32Data(int int32) {
-		return new DataObject(int32, Choices.INTEGER);
+		return new NumberData(int32, Choices.DOUBLE_LONG);
 	}
 
 	/**
@@ -134,7 +190,7 @@ public class DataObject {
 		if (uIn32 < 0 || uIn32 > 0xFFFFFFFFL) {
 			throw new IllegalArgumentException("Unsigned32 " + uIn32 + " out of range");
 		}
-		return new DataObject(uIn32, Choices.DOUBLE_LONG_UNSIGNED);
+		return new NumberData(uIn32, Choices.DOUBLE_LONG_UNSIGNED);
 	}
 
 	/**
@@ -148,6 +204,23 @@ public class DataObject {
 		return new DataObject(string.clone(), Choices.OCTET_STRING);
 	}
 
+	/**
+	 * Constructs a byte array data from a part of an array, e.g. of a received message.
+	 * 
+	 * @param bytes
+	 *            The array holding the byte array to store
+	 * @param offset
+	 *            The index of the first byte to store
+	 * @param length
+	 *            The number of bytes to store
+	 * @return The data
+	 * @throws IndexOutOfBoundsException
+	 *             if the part exceeds the array
+	 */
+	public static DataObject newOctetStringData(byte[] bytes, int offset, int length) {
+		return new DataObject(copyOf(bytes, offset, length), Choices.OCTET_STRING);
+	}
+
 	/**
 	 * Constructs a string, encoded as byte array data.
 	 * 
@@ -159,6 +232,33 @@ public class DataObject {
 		return new DataObject(string.clone(), Choices.VISIBLE_STRING);
 	}
 
+	/**
+	 * Constructs a string, encoded as byte array data, from a part of an array, e.g. of a received message.
+	 * 
+	 * @param bytes
+	 *            The array holding the byte string to store
+	 * @param offset
+	 *            The index of the first byte to store
+	 * @param length
+	 *            The number of bytes to store
+	 * @return The data
+	 * @throws IndexOutOfBoundsException
+	 *             if the part exceeds the array
+	 */
+	public static DataObject newVisibleStringData(byte[] bytes, int offset, int length) {
+		return new DataObject(copyOf(bytes, offset, length), Choices.VISIBLE_STRING);
+	}
+
+	private static byte[] copyOf(byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || length > bytes.length - offset) {
+			throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+					+ ") out of bounds for length " + bytes.length);
+		}
+		byte[] copy = new byte[length];
+		System.arraycopy(bytes, offset, copy, 0, length);
+		return copy;
+	}
+
 	/**
 	 * Constructs a 2 digit BCD number data
 	 * 
@@ -167,7 +267,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newBcdData(byte bcd) throws IllegalArgumentException {
-		return new DataObject(bcd, Choices.BCD);
+		return sharedByteData(BCD_VALUES, bcd, bcd & 0xff, Choices.BCD);
 	}
 
 	/**
@@ -178,7 +278,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newInteger8Data(byte int8) throws IllegalArgumentException {
-		return new DataObject(int8, Choices.INTEGER);
+		return sharedByteData(INTEGER8_VALUES, int8, int8 & 0xff, Choices.INTEGER);
 	}
 
 	/**
@@ -194,7 +294,7 @@ public class DataObject {
 		if (uInt8 < 0 || uInt8 > 0xFF) {
 			throw new IllegalArgumentException("Unsigned8 " + uInt8 + " out of range");
 		}
-		return new DataObject(uInt8, Choices.UNSIGNED);
+		return sharedByteData(UNSIGNED8_VALUES, uInt8, uInt8, Choices.UNSIGNED);
 	}
 
 	/**
@@ -205,7 +305,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newInteger16Data(short int16) {
-		return new DataObject(int16, Choices.LONG_INTEGER);
+		return new NumberData(int16, Choices.LONG_INTEGER);
 	}
 
 	/**
@@ -221,7 +321,7 @@ public class DataObject {
 		if (uInt16 < 0 || uInt16 > 0xFFFF) {
 			throw new IllegalArgumentException("Unsigned16 " + uInt16 + " out of range");
 		}
-		return new DataObject(uInt16, Choices.LONG_UNSIGNED);
+		return new NumberData(uInt16, Choices.LONG_UNSIGNED);
 	}
 
 	/**
@@ -232,7 +332,7 @@ public class DataObject {
 	 * @return The data
 	 */
 	public static DataObject newInteger64Data(long int64) {
-		return new DataObject(int64, Choices.LONG64);
+		return new NumberData(int64, Choices.LONG64);
 	}
 
 	/**
@@ -249,7 +349,7 @@ public class DataObject {
 		if (uInt64 < 0) {
 			throw new IllegalArgumentException("Unsigned64 " + uInt64 + " out of range");
 		}
-		return new DataObject(uInt64, Choices.LONG64);
+		return new NumberData(uInt64, Choices.LONG64_UNSIGNED);
 	}
 
 	/**
@@ -265,7 +365,19 @@ public class DataObject {
 		if (enumVal < 0 || enumVal > 0xFF) {
 			throw new IllegalArgumentException("Enumeration " + enumVal + " out of range");
 		}
-		return new DataObject(enumVal, Choices.ENUMERATE);
+		return sharedByteData(ENUMERATE_VALUES, enumVal, enumVal, Choices.ENUMERATE);
+	}
+
+	/*
+	 * Concurrent first uses may create a value twice, which is harmless as data objects are immutable.
+	 */
+	private static DataObject sharedByteData(DataObject[] values, long value, int index, Choices choice) {
+		DataObject data = values[index];
+		if (data == null) {
+			data = new NumberData(value, choice);
+			values[index] = data;
+		}
+		return data;
 	}
 
 	/**
@@ -277,7 +389,7 @@ public class DataObject {
 	 * 
 	 */
 	public static DataObject newFloat32Data(float float32) {
-		return new DataObject(float32, Choices.FLOAT32);
+		return new NumberData(Double.doubleToRawLongBits(float32), Choices.FLOAT32);
 	}
 
 	/**
@@ -289,7 +401,7 @@ public class DataObject {
 	 * 
 	 */
 	public static DataObject newFloat64Data(double float64) {
-		return new DataObject(float64, Choices.FLOAT64);
+		return new NumberData(Double.doubleToRawLongBits(float64), Choices.FLOAT64);
 	}
 
 	/**
@@ -340,7 +452,65 @@ public class DataObject {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T value() throws ClassCastException {
-		return (T) this.value;
+		return (T) rawValue();
+	}
+
+	/**
+	 * Returns the value of a number data without boxing it. Floating point numbers are rounded towards zero.
+	 * 
+	 * @return the value
+	 * @throws ClassCastException
+	 *             if the data is not a number
+	 * @see #isNumber()
+	 */
+	public long longValue() throws ClassCastException {
+		throw new ClassCastException("Data of type " + choice + " is not a number.");
+	}
+
+	/**
+	 * Returns the value of a number data without boxing it.
+	 * 
+	 * @return the value
+	 * @throws ClassCastException
+	 *             if the data is not a number
+	 * @see #isNumber()
+	 */
+	public double doubleValue() throws ClassCastException {
+		throw new ClassCastException("Data of type " + choice + " is not a number.");
+	}
+
+	/**
+	 * Returns the number of elements of an array, compact array or structure.
+	 * 
+	 * @return the number of elements
+	 * @throws ClassCastException
+	 *             if the data is not of a complex type
+	 */
+	public int size() throws ClassCastException {
+		return complexValue().size();
+	}
+
+	/**
+	 * Returns an element of an array, compact array or structure.
+	 * 
+	 * @param index
+	 *            the index of the element
+	 * @return the element
+	 * @throws ClassCastException
+	 *             if the data is not of a complex type
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than {@link #size()}
+	 */
+	public DataObject get(int index) throws ClassCastException {
+		return complexValue().get(index);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<DataObject> complexValue() {
+		if (!isComplex()) {
+			throw new ClassCastException("Data of type " + choice + " has no elements.");
+		}
+		return (List<DataObject>) value;
 	}
 
 	/**
@@ -432,4 +602,60 @@ public class DataObject {
 		return choice == Choices.NULL_DATA;
 	}
 
+	/**
+	 * Number data. The value is stored as long instead of a boxed number, floating point numbers by their bits. It is
+	 * only boxed if requested by {@link #value()}.
+	 */
+	private static final class NumberData extends DataObject {
+
+		private final long bits;
+
+		NumberData(long bits, Choices choice) {
+			super(null, choice);
+			this.bits = bits;
+		}
+
+		@Override
+		public Object rawValue() {
+			switch (choiceIndex()) {
+			case BCD:
+			case INTEGER:
+				return (byte) bits;
+			case UNSIGNED:
+			case LONG_INTEGER:
+				return (short) bits;
+			case LONG_UNSIGNED:
+			case DOUBLE_LONG:
+			case ENUMERATE:
+				return (int) bits;
+			case FLOAT32:
+				return (float) Double.longBitsToDouble(bits);
+			case FLOAT64:
+				return Double.longBitsToDouble(bits);
+			default:
+				return bits;
+			}
+		}
+
+		@Override
+		public long longValue() {
+			if (isFloatingPoint()) {
+				return (long) Double.longBitsToDouble(bits);
+			}
+			return bits;
+		}
+
+		@Override
+		public double doubleValue() {
+			if (isFloatingPoint()) {
+				return Double.longBitsToDouble(bits);
+			}
+			return bits;
+		}
+
+		private boolean isFloatingPoint() {
+			return choiceIndex() == Choices.FLOAT32 || choiceIndex() == Choices.FLOAT64;
+		}
+	}
+
 }
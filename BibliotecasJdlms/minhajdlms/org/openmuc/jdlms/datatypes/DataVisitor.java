@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.datatypes;
+
+import java.nio.ByteBuffer;
+
+import org.openmuc.jdlms.internal.asn1.cosem.Data.Choices;
+
+/**
+ * Receives the values of a data element one by one while it is parsed, instead of a {@link DataObject} tree.
+ * <p>
+ * The values are reported in the order they are encoded. An array or structure is reported by its start, followed by
+ * its elements and {@link #onEnd()}. Compact arrays are reported like arrays.
+ * </p>
+ * <p>
+ * The methods are called by the reader thread of the transport layer and should not block.
+ * </p>
+ */
+public interface DataVisitor {
+
+	/**
+	 * @param numElements
+	 *            the number of elements of the array
+	 */
+	void onArrayStart(int numElements);
+
+	/**
+	 * @param numElements
+	 *            the number of elements of the structure
+	 */
+	void onStructureStart(int numElements);
+
+	/**
+	 * Called after the last element of an array or structure.
+	 */
+	void onEnd();
+
+	/**
+	 * Called for null data and don't care values.
+	 */
+	void onNull();
+
+	void onBool(boolean value);
+
+	/**
+	 * Called for integer, unsigned, BCD and enumerated values.
+	 *
+	 * @param type
+	 *            the type of the value
+	 * @param value
+	 *            the value, unsigned types are never negative except for values of long64-unsigned above 2^63-1
+	 */
+	void onLong(Choices type, long value);
+
+	/**
+	 * Called for float32 and float64 values.
+	 *
+	 * @param type
+	 *            the type of the value
+	 * @param value
+	 *            the value
+	 */
+	void onDouble(Choices type, double value);
+
+	/**
+	 * Called for octet strings, visible strings and date, time and date-time values. Date, time and date-time values
+	 * are passed in their octet string encoding, e.g. to be decoded by {@link CosemDateTime#decode(byte[])}.
+	 *
+	 * @param type
+	 *            the type of the value
+	 * @param value
+	 *            the bytes of the value between position and limit. The buffer is only valid during the call.
+	 */
+	void onOctetString(Choices type, ByteBuffer value);
+
+	/**
+	 * @param value
+	 *            the bytes of the bit string between position and limit, the first bit being the most significant bit
+	 *            of the first byte. The buffer is only valid during the call.
+	 * @param numBits
+	 *            the number of bits
+	 */
+	void onBitString(ByteBuffer value, int numBits);
+
+}
@@ -34,6 +34,7 @@ public enum InterfaceClass {
 	ASSOCIATION_SN(12, 1),
 	ASSOCIATION_LN(15, 0),
 	SAP_ASSIGNMENT(17, 0),
+	IMAGE_TRANSFER(18, 0),
 	ACTIVITY_CALENDAR(20, 0),
 	REGISTER_MONITOR(21, 0),
 	UTILITY_TABLES(26, 0),
@@ -45,6 +45,7 @@ public class AttributeDirectory {
 		classes.put(AssociationLnAttribute.INTERFACE_CLASS, AssociationLnAttribute.class);
 		classes.put(AssociationSnAttribute.INTERFACE_CLASS, AssociationSnAttribute.class);
 		classes.put(SapAssignmentAttribute.INTERFACE_CLASS, SapAssignmentAttribute.class);
+		classes.put(ImageTransferAttribute.INTERFACE_CLASS, ImageTransferAttribute.class);
 		classes.put(RegisterMonitorAttribute.INTERFACE_CLASS, RegisterMonitorAttribute.class);
 		classes.put(UtilityTablesAttribute.INTERFACE_CLASS, UtilityTablesAttribute.class);
 		classes.put(SingleActionScheduleAttribute.INTERFACE_CLASS, SingleActionScheduleAttribute.class);
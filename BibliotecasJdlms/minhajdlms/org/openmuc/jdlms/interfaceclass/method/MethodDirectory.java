@@ -44,6 +44,7 @@ public class MethodDirectory {
 		classes.put(AssociationLnMethod.INTERFACE_CLASS, AssociationLnMethod.class);
 		classes.put(AssociationSnMethod.INTERFACE_CLASS, AssociationSnMethod.class);
 		classes.put(SapAssignmentMethod.INTERFACE_CLASS, SapAssignmentMethod.class);
+		classes.put(ImageTransferMethod.INTERFACE_CLASS, ImageTransferMethod.class);
 		classes.put(RegisterTableMethod.INTERFACE_CLASS, RegisterTableMethod.class);
 
 		// Protocol related interface classes
@@ -22,13 +22,13 @@ package org.openmuc.jdlms.internal;
 
 import static org.openmuc.jdlms.internal.security.DataTransmissionLevel.ENCRYPTED;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
 import org.openmuc.jasn1.ber.types.BerAnyNoDecode;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
 import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
 import org.openmuc.jdlms.internal.asn1.iso.acse.ACSE_apdu;
 import org.openmuc.jdlms.internal.asn1.iso.acse.Association_information;
@@ -82,7 +82,7 @@ public class APdu {
 			byte[] plaintext = CipheringGcm.decrypt(ciphertext, encryptionSettings.serverSystemTitle,
 					settings.globalEncryptionKey(), settings.authenticationKey());
 			cosemPdu = new COSEMpdu();
-			cosemPdu.decode(new ByteArrayInputStream(plaintext));
+			cosemPdu.decode(new AxdrReader(plaintext));
 		}
 		else {
 			cosemPdu = new COSEMpdu();
@@ -105,14 +105,61 @@ public class APdu {
 		this.cosemPdu = cosemPdu;
 	}
 
-	public int encode(byte[] buffer, Settings settings, EncryptionSettings encryptionSettings) throws IOException {
-		int numBytesEncoded = 0;
-		BerByteArrayOutputStream baos = new BerByteArrayOutputStream(buffer, buffer.length - 1);
+	public int encode(BerByteArrayOutputStream os, Settings settings, EncryptionSettings encryptionSettings)
+			throws IOException {
+		return encode(os, Integer.MAX_VALUE, settings, encryptionSettings);
+	}
+
+	/**
+	 * Encodes the APDU backwards into the output stream, encrypting the COSEM PDU if the data transmission level
+	 * requires it.
+	 * 
+	 * @param os
+	 *            the output stream, the encoded bytes are found from {@code os.index + 1} to the end of the buffer
+	 * @param maxCosemPduSize
+	 *            the maximum size of the plain COSEM PDU
+	 * @param settings
+	 *            the connection settings
+	 * @param encryptionSettings
+	 *            the frame counter of the connection
+	 * @return the number of bytes encoded or -1 if the plain COSEM PDU exceeds maxCosemPduSize. Nothing is encrypted
+	 *         in that case, so the frame counter is not incremented.
+	 * @throws IOException
+	 *             if the PDU could not be encoded
+	 */
+	public int encode(BerByteArrayOutputStream os, int maxCosemPduSize, Settings settings,
+			EncryptionSettings encryptionSettings) throws IOException {
+		int numBytesEncoded = cosemPdu.encode(os);
+		if (numBytesEncoded > maxCosemPduSize) {
+			return -1;
+		}
+
+		return encodeWritten(os, numBytesEncoded, settings, encryptionSettings);
+	}
+
+	/**
+	 * Encodes the APDU around a COSEM PDU which has already been written to the output stream, e.g. copied from a
+	 * prepared request. The COSEM PDU of this object is ignored.
+	 * 
+	 * @param os
+	 *            the output stream holding the plain COSEM PDU from {@code os.index + 1} to the end of the buffer
+	 * @param cosemPduSize
+	 *            the size of the plain COSEM PDU
+	 * @param settings
+	 *            the connection settings
+	 * @param encryptionSettings
+	 *            the frame counter of the connection
+	 * @return the number of bytes encoded
+	 * @throws IOException
+	 *             if the PDU could not be encoded
+	 */
+	public int encodeWritten(BerByteArrayOutputStream os, int cosemPduSize, Settings settings,
+			EncryptionSettings encryptionSettings) throws IOException {
+		int numBytesEncoded = cosemPduSize;
 
-		numBytesEncoded += cosemPdu.encode(baos);
 		if (settings.dataTransmissionLevel() == ENCRYPTED) {
 
-			int origTag = buffer[buffer.length - numBytesEncoded] & 0xff;
+			int origTag = os.buffer[os.index + 1] & 0xff;
 			int newTag;
 
 			if (origTag < 25) {
@@ -121,13 +168,13 @@ public class APdu {
 			else {
 				newTag = origTag + 8;
 			}
-			byte[] ciphertext = CipheringGcm.encrypt(buffer, buffer.length - numBytesEncoded, numBytesEncoded,
+			byte[] ciphertext = CipheringGcm.encrypt(os.buffer, os.index + 1, numBytesEncoded,
 					settings.systemTitle(), encryptionSettings.frameCounter++, settings.globalEncryptionKey(),
 					settings.authenticationKey(), (byte) newTag);
 
 			numBytesEncoded = ciphertext.length;
-			System.arraycopy(ciphertext, 0, buffer, buffer.length - numBytesEncoded, ciphertext.length);
-			baos = new BerByteArrayOutputStream(buffer, buffer.length - numBytesEncoded - 1);
+			os.reset();
+			os.write(ciphertext);
 		}
 
 		if (acseAPdu != null) {
@@ -137,7 +184,7 @@ public class APdu {
 			else if (acseAPdu.aare != null) {
 				acseAPdu.aare.user_information = new Association_information(new BerAnyNoDecode(numBytesEncoded));
 			}
-			numBytesEncoded = acseAPdu.encode(baos, true);
+			numBytesEncoded = acseAPdu.encode(os, true);
 		}
 
 		return numBytesEncoded;
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of byte arrays shared by all connections.
+ * <p>
+ * Arrays are handed out in power of two sizes between 1 KiB and 128 KiB. Only a bounded number of arrays is kept per
+ * size, so the memory held by the pool stays bounded regardless of the number of connections.
+ * </p>
+ */
+public final class BufferPool {
+
+	private static final int MIN_SIZE_SHIFT = 10;
+	private static final int MAX_SIZE_SHIFT = 17;
+	private static final int MAX_POOLED_PER_SIZE = 8;
+
+	private static final ArrayBlockingQueue<?>[] pools = //
+			new ArrayBlockingQueue<?>[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+
+	static {
+		for (int i = 0; i < pools.length; i++) {
+			pools[i] = new ArrayBlockingQueue<byte[]>(MAX_POOLED_PER_SIZE);
+		}
+	}
+
+	/**
+	 * Takes an array out of the pool or creates a new one.
+	 *
+	 * @param minSize
+	 *            the minimum length of the array
+	 * @return an array of at least minSize bytes. The content of the array is undefined.
+	 */
+	public static byte[] acquire(int minSize) {
+		int shift = shiftOf(minSize);
+		if (shift > MAX_SIZE_SHIFT) {
+			return new byte[minSize];
+		}
+
+		byte[] buffer = poolOf(shift).poll();
+		if (buffer == null) {
+			buffer = new byte[1 << shift];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns an array to the pool. The array must not be used by the caller afterwards. Arrays that were not handed
+	 * out by {@link #acquire(int)} or that would exceed the pool limit are left to the garbage collector.
+	 *
+	 * @param buffer
+	 *            the array to return
+	 */
+	public static void release(byte[] buffer) {
+		int shift = shiftOf(buffer.length);
+		if (shift > MAX_SIZE_SHIFT || buffer.length != 1 << shift) {
+			return;
+		}
+
+		// dropped if the pool of the size is full
+		poolOf(shift).offer(buffer);
+	}
+
+	private static int shiftOf(int size) {
+		if (size <= 1 << MIN_SIZE_SHIFT) {
+			return MIN_SIZE_SHIFT;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ArrayBlockingQueue<byte[]> poolOf(int shift) {
+		return (ArrayBlockingQueue<byte[]>) pools[shift - MIN_SIZE_SHIFT];
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private BufferPool() {
+	}
+
+}
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.openmuc.jdlms.datatypes.BitString;
+import org.openmuc.jdlms.datatypes.ColumnarTable;
+import org.openmuc.jdlms.datatypes.ColumnarTable.ColumnType;
+import org.openmuc.jdlms.datatypes.CosemDate;
+import org.openmuc.jdlms.datatypes.CosemDateFormat;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.CosemTime;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataVisitor;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.Data.SubSeq_compact_array;
+import org.openmuc.jdlms.internal.asn1.cosem.TypeDescription;
+
+/**
+ * Converts arrays of structures into {@link ColumnarTable}s without creating a {@link DataObject} per value.
+ * <p>
+ * Date-time values are converted to milliseconds since the epoch. As meters commonly send the capture time as octet
+ * string of 12 bytes instead of as date-time, such octet strings are converted as well if they hold a valid date-time
+ * and the column holds no other octet strings.
+ * </p>
+ * <p>
+ * Encoded data is converted by a {@link TableVisitor} while it is parsed, without decoding the data first.
+ * </p>
+ */
+public final class ColumnarConverter {
+
+	private static final int DATE_TIME_SIZE = 12;
+	private static final int UNSPECIFIED_DEVIATION = 0x8000;
+	private static final long INVALID_DATE_TIME = Long.MIN_VALUE;
+
+	public static ColumnarTable toColumns(Data pdu) {
+		if (pdu.getChoiceIndex() == Data.Choices.COMPACT_ARRAY) {
+			return compactArrayToColumns(pdu.compact_array);
+		}
+		if (pdu.getChoiceIndex() != Data.Choices.ARRAY) {
+			throw new IllegalArgumentException(pdu.getChoiceIndex() + " can not be converted to columns.");
+		}
+
+		List<Data> rows = pdu.array.list();
+		ColumnarTable.Builder builder = new ColumnarTable.Builder(numColumnsOf(rows.isEmpty() ? null : rows.get(0)),
+				rows.size());
+		for (Data row : rows) {
+			if (row.getChoiceIndex() == Data.Choices.STRUCTURE) {
+				for (Data value : row.structure.list()) {
+					addValue(value, builder);
+				}
+			}
+			else {
+				addValue(row, builder);
+			}
+			builder.endRow();
+		}
+		return builder.build();
+	}
+
+	public static ColumnarTable toColumns(DataObject data) {
+		if (!data.isComplex() || data.choiceIndex() == Data.Choices.STRUCTURE) {
+			throw new IllegalArgumentException(data.choiceIndex() + " can not be converted to columns.");
+		}
+
+		List<DataObject> rows = data.value();
+		int numColumns = 0;
+		if (!rows.isEmpty()) {
+			DataObject first = rows.get(0);
+			numColumns = first.choiceIndex() == Data.Choices.STRUCTURE ? first.<List<DataObject>> value().size() : 1;
+		}
+
+		ColumnarTable.Builder builder = new ColumnarTable.Builder(numColumns, rows.size());
+		for (DataObject row : rows) {
+			if (row.choiceIndex() == Data.Choices.STRUCTURE) {
+				for (DataObject value : row.<List<DataObject>> value()) {
+					addValue(value, builder);
+				}
+			}
+			else {
+				addValue(row, builder);
+			}
+			builder.endRow();
+		}
+		return builder.build();
+	}
+
+	private static int numColumnsOf(Data firstRow) {
+		if (firstRow == null) {
+			return 0;
+		}
+		return firstRow.getChoiceIndex() == Data.Choices.STRUCTURE ? firstRow.structure.size() : 1;
+	}
+
+	private static void addValue(Data data, ColumnarTable.Builder builder) {
+		switch (data.getChoiceIndex()) {
+		case BOOL:
+			builder.addLong(data.bool.getValue() ? 1 : 0);
+			break;
+		case BIT_STRING:
+			addBitString(new BitString(data.bit_string.getValue(), data.bit_string.getNumBits()), builder);
+			break;
+		case DOUBLE_LONG:
+			builder.addLong(data.double_long.getValue());
+			break;
+		case DOUBLE_LONG_UNSIGNED:
+			builder.addLong(data.double_long_unsigned.getValue());
+			break;
+		case BCD:
+			builder.addLong(data.bcd.getValue());
+			break;
+		case INTEGER:
+			builder.addLong(data.integer.getValue());
+			break;
+		case LONG_INTEGER:
+			builder.addLong(data.long_integer.getValue());
+			break;
+		case UNSIGNED:
+			builder.addLong(data.unsigned.getValue());
+			break;
+		case LONG_UNSIGNED:
+			builder.addLong(data.long_unsigned.getValue());
+			break;
+		case LONG64:
+			builder.addLong(data.long64.getValue());
+			break;
+		case LONG64_UNSIGNED:
+			builder.addLong(data.long64_unsigned.getValue());
+			break;
+		case ENUMERATE:
+			builder.addLong(data.enumerate.getValue());
+			break;
+		case FLOAT32:
+			builder.addDouble(ByteBuffer.wrap(data.float32.getValue()).getFloat());
+			break;
+		case FLOAT64:
+			builder.addDouble(ByteBuffer.wrap(data.float64.getValue()).getDouble());
+			break;
+		case DATE_TIME:
+			addDateTime(data.date_time.getValue(), builder);
+			break;
+		case OCTET_STRING:
+			addOctetString(data.octet_string.getValue(), builder);
+			break;
+		case NULL_DATA:
+		case DONT_CARE:
+			builder.addNull();
+			break;
+		default:
+			builder.addObject(DataConverter.toApi(data));
+			break;
+		}
+	}
+
+	private static void addValue(DataObject data, ColumnarTable.Builder builder) {
+		switch (data.choiceIndex()) {
+		case BOOL:
+			builder.addLong((Boolean) data.value() ? 1 : 0);
+			break;
+		case BIT_STRING:
+			addBitString(data.<BitString> value(), builder);
+			break;
+		case DOUBLE_LONG:
+		case DOUBLE_LONG_UNSIGNED:
+		case BCD:
+		case INTEGER:
+		case LONG_INTEGER:
+		case UNSIGNED:
+		case LONG_UNSIGNED:
+		case LONG64:
+		case LONG64_UNSIGNED:
+		case ENUMERATE:
+			builder.addLong(data.longValue());
+			break;
+		case FLOAT32:
+		case FLOAT64:
+			builder.addDouble(data.doubleValue());
+			break;
+		case DATE_TIME:
+			addDateTime(((CosemDateFormat) data.value()).encode(), builder);
+			break;
+		case OCTET_STRING:
+			addOctetString(data.<byte[]> value(), builder);
+			break;
+		case NULL_DATA:
+		case DONT_CARE:
+			builder.addNull();
+			break;
+		default:
+			builder.addObject(data);
+			break;
+		}
+	}
+
+	private static ColumnarTable compactArrayToColumns(SubSeq_compact_array compactArray) {
+		TypeDescription description = compactArray.contents_description;
+		ByteBuffer contents = ByteBuffer.wrap(compactArray.array_contents.getValue());
+
+		List<TypeDescription> columnTypes = null;
+		int numColumns = 1;
+		if (description.getChoiceIndex() == TypeDescription.Choices.STRUCTURE) {
+			columnTypes = description.structure.list();
+			numColumns = columnTypes.size();
+		}
+
+		ColumnarTable.Builder builder = new ColumnarTable.Builder(numColumns, 0);
+		try {
+			while (contents.hasRemaining()) {
+				int position = contents.position();
+				if (columnTypes == null) {
+					addCompactValue(description, contents, builder);
+				}
+				else {
+					for (TypeDescription columnType : columnTypes) {
+						addCompactValue(columnType, contents, builder);
+					}
+				}
+				builder.endRow();
+				if (contents.position() == position) {
+					throw new IllegalArgumentException(
+							"Compact array contents do not match the contents description.");
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Compact array contents end in the middle of an element.");
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+		return builder.build();
+	}
+
+	private static void addCompactValue(TypeDescription type, ByteBuffer contents, ColumnarTable.Builder builder)
+			throws IOException {
+		switch (type.getChoiceIndex()) {
+		case BOOL:
+			builder.addLong(contents.get() != 0 ? 1 : 0);
+			break;
+		case BCD:
+		case INTEGER:
+			builder.addLong(contents.get());
+			break;
+		case UNSIGNED:
+		case ENUMERATE:
+			builder.addLong(contents.get() & 0xFF);
+			break;
+		case LONG_INTEGER:
+			builder.addLong(contents.getShort());
+			break;
+		case LONG_UNSIGNED:
+			builder.addLong(contents.getShort() & 0xFFFF);
+			break;
+		case DOUBLE_LONG:
+			builder.addLong(contents.getInt());
+			break;
+		case DOUBLE_LONG_UNSIGNED:
+			builder.addLong(contents.getInt() & 0xFFFFFFFFL);
+			break;
+		case LONG64:
+		case LONG64_UNSIGNED:
+			builder.addLong(contents.getLong());
+			break;
+		case FLOAT32:
+			builder.addDouble(contents.getFloat());
+			break;
+		case FLOAT64:
+			builder.addDouble(contents.getDouble());
+			break;
+		case DATE_TIME: {
+			long epochMillis = epochMillisOf(contents.array(), contents.position());
+			contents.position(contents.position() + DATE_TIME_SIZE);
+			addEpochMillis(epochMillis, builder);
+			break;
+		}
+		case NULL_DATA:
+		case DONT_CARE:
+			builder.addNull();
+			break;
+		default:
+			DataObject value = CompactArrayConverter.valueToApi(type, contents);
+			if (value.choiceIndex() == Data.Choices.OCTET_STRING) {
+				addOctetString(value.<byte[]> value(), builder);
+			}
+			else if (value.choiceIndex() == Data.Choices.BIT_STRING) {
+				addBitString(value.<BitString> value(), builder);
+			}
+			else {
+				builder.addObject(value);
+			}
+			break;
+		}
+	}
+
+	/*
+	 * Bit strings up to 64 bits are stored as number, the first bit being the most significant bit.
+	 */
+	private static void addBitString(BitString bitString, ColumnarTable.Builder builder) {
+		if (bitString.numBits() > 64) {
+			builder.addObject(DataObject.newBitStringData(bitString));
+			return;
+		}
+
+		byte[] bytes = bitString.bitString();
+		int numBytes = (bitString.numBits() + 7) / 8;
+		long value = 0;
+		for (int i = 0; i < numBytes; i++) {
+			value = (value << 8) | (bytes[i] & 0xFF);
+		}
+		builder.addLong(value >>> (numBytes * 8 - bitString.numBits()));
+	}
+
+	private static void addDateTime(byte[] dateTime, ColumnarTable.Builder builder) {
+		addEpochMillis(dateTime.length == DATE_TIME_SIZE ? epochMillisOf(dateTime, 0) : INVALID_DATE_TIME, builder);
+	}
+
+	private static void addEpochMillis(long epochMillis, ColumnarTable.Builder builder) {
+		if (epochMillis == INVALID_DATE_TIME) {
+			builder.addNull();
+		}
+		else {
+			builder.addTimestamp(epochMillis);
+		}
+	}
+
+	private static void addOctetString(byte[] octetString, ColumnarTable.Builder builder) {
+		ColumnType columnType = builder.nextColumnType();
+		if (octetString.length == DATE_TIME_SIZE && columnType != ColumnType.OBJECT) {
+			long epochMillis = epochMillisOf(octetString, 0);
+			if (epochMillis != INVALID_DATE_TIME || columnType == ColumnType.TIMESTAMP) {
+				addEpochMillis(epochMillis, builder);
+				return;
+			}
+		}
+		builder.addObject(DataObject.newOctetStringData(octetString));
+	}
+
+	/*
+	 * Converts a date-time encoding to milliseconds since the epoch. The deviation is the offset of the local time to
+	 * UTC in minutes, as in CosemDateTime.toCalendar(). Returns INVALID_DATE_TIME if the date or time is not fully
+	 * specified.
+	 */
+	static long epochMillisOf(byte[] dateTime, int offset) {
+		int year = ((dateTime[offset] & 0xFF) << 8) | (dateTime[offset + 1] & 0xFF);
+		int month = dateTime[offset + 2] & 0xFF;
+		int dayOfMonth = dateTime[offset + 3] & 0xFF;
+		int hour = dateTime[offset + 5] & 0xFF;
+		int minute = dateTime[offset + 6] & 0xFF;
+		int second = dateTime[offset + 7] & 0xFF;
+		int hundredths = dateTime[offset + 8] & 0xFF;
+		int deviation = ((dateTime[offset + 9] & 0xFF) << 8) | (dateTime[offset + 10] & 0xFF);
+
+		if (year == 0xFFFF || month < 1 || month > 12 || dayOfMonth < 1 || dayOfMonth > 31 || hour > 23
+				|| minute > 59 || second > 59) {
+			return INVALID_DATE_TIME;
+		}
+		if (hundredths == 0xFF) {
+			hundredths = 0;
+		}
+		else if (hundredths > 99) {
+			return INVALID_DATE_TIME;
+		}
+		int deviationMinutes = deviation == UNSPECIFIED_DEVIATION ? 0 : (short) deviation;
+
+		long seconds = ((daysSinceEpoch(year, month, dayOfMonth) * 24 + hour) * 60 + minute - deviationMinutes) * 60
+				+ second;
+		return seconds * 1000 + hundredths * 10;
+	}
+
+	/*
+	 * Days since 1970-01-01 of a date of the proleptic Gregorian calendar.
+	 */
+	private static long daysSinceEpoch(int year, int month, int dayOfMonth) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + dayOfMonth - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/**
+	 * Builds a {@link ColumnarTable} from the values reported by a data parser. Values nested in the cells of a row
+	 * are assembled to data objects, all other values are added to the table directly.
+	 * <p>
+	 * The visitor throws an {@link IllegalArgumentException} if the data is not an array. It can be reused for
+	 * further tables after {@link #table()} has been called.
+	 * </p>
+	 */
+	public static final class TableVisitor implements DataVisitor {
+
+		private static final int BEFORE_TABLE = 0;
+		private static final int IN_TABLE = 1;
+		private static final int IN_ROW = 2;
+		private static final int AFTER_TABLE = 3;
+
+		private int state = BEFORE_TABLE;
+		private int numRows;
+		private ColumnarTable.Builder builder;
+		private ColumnarTable table;
+
+		/*
+		 * Elements of the arrays and structures nested in the current cell, innermost last.
+		 */
+		private final Deque<List<DataObject>> nested = new ArrayDeque<List<DataObject>>();
+		private final Deque<Boolean> nestedArrays = new ArrayDeque<Boolean>();
+
+		/**
+		 * Returns the table of the data parsed last and resets the visitor.
+		 *
+		 * @return the table
+		 * @throws IllegalArgumentException
+		 *             if the data has not been parsed completely
+		 */
+		public ColumnarTable table() {
+			if (state != AFTER_TABLE) {
+				throw new IllegalArgumentException("Data ends before the end of the table.");
+			}
+			ColumnarTable result = table;
+			table = null;
+			builder = null;
+			state = BEFORE_TABLE;
+			return result;
+		}
+
+		@Override
+		public void onArrayStart(int numElements) {
+			if (state == BEFORE_TABLE) {
+				numRows = numElements;
+				state = IN_TABLE;
+				return;
+			}
+			startNested(Data.Choices.ARRAY);
+		}
+
+		@Override
+		public void onStructureStart(int numElements) {
+			if (state == IN_TABLE && nested.isEmpty()) {
+				if (builder == null) {
+					builder = new ColumnarTable.Builder(numElements, numRows);
+				}
+				state = IN_ROW;
+				return;
+			}
+			startNested(Data.Choices.STRUCTURE);
+		}
+
+		@Override
+		public void onEnd() {
+			if (!nested.isEmpty()) {
+				List<DataObject> elements = nested.pop();
+				DataObject value = nestedArrays.pop() ? DataObject.newArrayData(elements)
+						: DataObject.newStructureData(elements);
+				if (nested.isEmpty()) {
+					builder.addObject(value);
+					endCell();
+				}
+				else {
+					nested.peek().add(value);
+				}
+			}
+			else if (state == IN_ROW) {
+				builder.endRow();
+				state = IN_TABLE;
+			}
+			else {
+				if (builder == null) {
+					builder = new ColumnarTable.Builder(0, 0);
+				}
+				table = builder.build();
+				state = AFTER_TABLE;
+			}
+		}
+
+		@Override
+		public void onNull() {
+			if (!nested.isEmpty()) {
+				nested.peek().add(DataObject.newNullData());
+				return;
+			}
+			startCell(Data.Choices.NULL_DATA);
+			builder.addNull();
+			endCell();
+		}
+
+		@Override
+		public void onBool(boolean value) {
+			if (!nested.isEmpty()) {
+				nested.peek().add(DataObject.newBoolData(value));
+				return;
+			}
+			startCell(Data.Choices.BOOL);
+			builder.addLong(value ? 1 : 0);
+			endCell();
+		}
+
+		@Override
+		public void onLong(Data.Choices type, long value) {
+			if (!nested.isEmpty()) {
+				nested.peek().add(longData(type, value));
+				return;
+			}
+			startCell(type);
+			builder.addLong(value);
+			endCell();
+		}
+
+		@Override
+		public void onDouble(Data.Choices type, double value) {
+			if (!nested.isEmpty()) {
+				nested.peek().add(type == Data.Choices.FLOAT32 ? DataObject.newFloat32Data((float) value)
+						: DataObject.newFloat64Data(value));
+				return;
+			}
+			startCell(type);
+			builder.addDouble(value);
+			endCell();
+		}
+
+		@Override
+		public void onOctetString(Data.Choices type, ByteBuffer value) {
+			byte[] bytes = new byte[value.remaining()];
+			value.get(bytes);
+
+			if (!nested.isEmpty()) {
+				nested.peek().add(octetStringData(type, bytes));
+				return;
+			}
+			startCell(type);
+			if (type == Data.Choices.DATE_TIME) {
+				addDateTime(bytes, builder);
+			}
+			else if (type == Data.Choices.OCTET_STRING) {
+				addOctetString(bytes, builder);
+			}
+			else {
+				builder.addObject(octetStringData(type, bytes));
+			}
+			endCell();
+		}
+
+		@Override
+		public void onBitString(ByteBuffer value, int numBits) {
+			byte[] bytes = new byte[value.remaining()];
+			value.get(bytes);
+			BitString bitString = new BitString(bytes, numBits);
+
+			if (!nested.isEmpty()) {
+				nested.peek().add(DataObject.newBitStringData(bitString));
+				return;
+			}
+			startCell(Data.Choices.BIT_STRING);
+			addBitString(bitString, builder);
+			endCell();
+		}
+
+		private void startNested(Data.Choices type) {
+			if (nested.isEmpty()) {
+				startCell(type);
+			}
+			nested.push(new ArrayList<DataObject>());
+			nestedArrays.push(type == Data.Choices.ARRAY);
+		}
+
+		/*
+		 * Rows which are no structure form a table with a single column.
+		 */
+		private void startCell(Data.Choices type) {
+			if (state == BEFORE_TABLE) {
+				throw new IllegalArgumentException(type + " can not be converted to columns.");
+			}
+			if (state == AFTER_TABLE) {
+				throw new IllegalArgumentException("Data continues after the end of the table.");
+			}
+			if (state == IN_TABLE && builder == null) {
+				builder = new ColumnarTable.Builder(1, numRows);
+			}
+		}
+
+		private void endCell() {
+			if (state == IN_TABLE) {
+				builder.endRow();
+			}
+		}
+
+		private static DataObject longData(Data.Choices type, long value) {
+			switch (type) {
+			case BCD:
+				return DataObject.newBcdData((byte) value);
+			case INTEGER:
+				return DataObject.newInteger8Data((byte) value);
+			case UNSIGNED:
+				return DataObject.newUInteger8Data((short) value);
+			case LONG_INTEGER:
+				return DataObject.newInteger16Data((short) value);
+			case LONG_UNSIGNED:
+				return DataObject.newUInteger16Data((int) value);
+			case DOUBLE_LONG:
+				return DataObject.newInteger32Data((int) value);
+			case DOUBLE_LONG_UNSIGNED:
+				return DataObject.newUInteger32Data(value);
+			case LONG64:
+				return DataObject.newInteger64Data(value);
+			case LONG64_UNSIGNED:
+				return DataObject.newUInteger64Data(value);
+			default:
+				return DataObject.newEnumerateData((int) value);
+			}
+		}
+
+		private static DataObject octetStringData(Data.Choices type, byte[] bytes) {
+			switch (type) {
+			case VISIBLE_STRING:
+				return DataObject.newVisibleStringData(bytes);
+			case DATE_TIME:
+				return DataObject.newDateTimeData(CosemDateTime.decode(bytes));
+			case DATE:
+				return DataObject.newDateData(CosemDate.decode(bytes));
+			case TIME:
+				return DataObject.newTimeData(CosemTime.decode(bytes));
+			default:
+				return DataObject.newOctetStringData(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private ColumnarConverter() {
+	}
+
+}
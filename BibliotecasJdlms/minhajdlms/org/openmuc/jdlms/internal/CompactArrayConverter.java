@@ -0,0 +1,441 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.jdlms.datatypes.BitString;
+import org.openmuc.jdlms.datatypes.CosemDate;
+import org.openmuc.jdlms.datatypes.CosemDateFormat;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.CosemTime;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrNull;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.Data.SubSeq_compact_array;
+import org.openmuc.jdlms.internal.asn1.cosem.TypeDescription;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+
+/**
+ * Converts compact arrays between their PDU and their API representation.
+ * <p>
+ * The contents of a compact array are the values of all elements without their tags, as the type of the elements is
+ * given once by the contents description. Only the values of variable length types (octet string, visible string and
+ * bit string) carry a length. The number of elements follows from the length of the contents.
+ * </p>
+ */
+final class CompactArrayConverter {
+
+	private static final int DATE_TIME_SIZE = 12;
+	private static final int DATE_SIZE = 5;
+	private static final int TIME_SIZE = 4;
+
+	static DataObject toApi(SubSeq_compact_array compactArray) throws IOException {
+		TypeDescription description = compactArray.contents_description;
+		ByteBuffer contents = ByteBuffer.wrap(compactArray.array_contents.getValue());
+
+		List<DataObject> elements = new ArrayList<DataObject>();
+		try {
+			while (contents.hasRemaining()) {
+				int position = contents.position();
+				elements.add(valueToApi(description, contents));
+				if (contents.position() == position) {
+					throw new IllegalArgumentException(
+							"Compact array contents do not match the contents description.");
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Compact array contents end in the middle of an element.");
+		}
+
+		return DataObject.newCompactArrayData(elements);
+	}
+
+	static Data toPdu(DataObject compactArray) {
+		List<DataObject> elements = compactArray.value();
+
+		TypeDescription description;
+		if (elements.isEmpty()) {
+			description = new TypeDescription();
+			description.setnull_data(new AxdrNull());
+		}
+		else {
+			description = typeDescriptionOf(elements.get(0));
+		}
+
+		ByteArrayOutputStream contents = new ByteArrayOutputStream();
+		for (DataObject element : elements) {
+			writeValue(element, description, contents);
+		}
+
+		Data result = new Data();
+		result.setcompact_array(new SubSeq_compact_array(description, new AxdrOctetString(contents.toByteArray())));
+		return result;
+	}
+
+	static DataObject valueToApi(TypeDescription description, ByteBuffer contents) throws IOException {
+		switch (description.getChoiceIndex()) {
+		case ARRAY: {
+			int numElements = (int) description.array.number_of_elements.getValue();
+			List<DataObject> elements = new ArrayList<DataObject>(numElements);
+			for (int i = 0; i < numElements; i++) {
+				elements.add(valueToApi(description.array.type_description, contents));
+			}
+			return DataObject.newArrayData(elements);
+		}
+
+		case STRUCTURE: {
+			List<TypeDescription> elementTypes = description.structure.list();
+			List<DataObject> elements = new ArrayList<DataObject>(elementTypes.size());
+			for (TypeDescription elementType : elementTypes) {
+				elements.add(valueToApi(elementType, contents));
+			}
+			return DataObject.newStructureData(elements);
+		}
+
+		case BOOL:
+			return DataObject.newBoolData(contents.get() != 0);
+
+		case BIT_STRING: {
+			int numBits = readLength(contents);
+			return DataObject.newBitStringData(new BitString(readBytes(contents, (numBits + 7) / 8), numBits));
+		}
+
+		case DOUBLE_LONG:
+			return DataObject.newInteger32Data(contents.getInt());
+
+		case DOUBLE_LONG_UNSIGNED:
+			return DataObject.newUInteger32Data(contents.getInt() & 0xFFFFFFFFL);
+
+		case OCTET_STRING:
+			return DataObject.newOctetStringData(readBytes(contents, readLength(contents)));
+
+		case VISIBLE_STRING:
+			return DataObject.newVisibleStringData(readBytes(contents, readLength(contents)));
+
+		case BCD:
+			return DataObject.newBcdData(contents.get());
+
+		case INTEGER:
+			return DataObject.newInteger8Data(contents.get());
+
+		case LONG_INTEGER:
+			return DataObject.newInteger16Data(contents.getShort());
+
+		case UNSIGNED:
+			return DataObject.newUInteger8Data((short) (contents.get() & 0xFF));
+
+		case LONG_UNSIGNED:
+			return DataObject.newUInteger16Data(contents.getShort() & 0xFFFF);
+
+		case LONG64:
+			return DataObject.newInteger64Data(contents.getLong());
+
+		case LONG64_UNSIGNED:
+			return DataObject.newUInteger64Data(contents.getLong());
+
+		case ENUMERATE:
+			return DataObject.newEnumerateData(contents.get() & 0xFF);
+
+		case FLOAT32:
+			return DataObject.newFloat32Data(contents.getFloat());
+
+		case FLOAT64:
+			return DataObject.newFloat64Data(contents.getDouble());
+
+		case DATE_TIME:
+			return DataObject.newDateTimeData(CosemDateTime.decode(readBytes(contents, DATE_TIME_SIZE)));
+
+		case DATE:
+			return DataObject.newDateData(CosemDate.decode(readBytes(contents, DATE_SIZE)));
+
+		case TIME:
+			return DataObject.newTimeData(CosemTime.decode(readBytes(contents, TIME_SIZE)));
+
+		case NULL_DATA:
+		case DONT_CARE:
+			return DataObject.newNullData();
+
+		default:
+			throw new IllegalArgumentException("Unknown type description in compact array.");
+		}
+	}
+
+	private static TypeDescription typeDescriptionOf(DataObject element) {
+		TypeDescription description = new TypeDescription();
+
+		switch (element.choiceIndex()) {
+		case ARRAY: {
+			List<DataObject> elements = element.value();
+			if (elements.isEmpty()) {
+				throw new IllegalArgumentException("Compact array element contains an empty array.");
+			}
+			description.setarray(new TypeDescription.SubSeq_array(new Unsigned16(elements.size()),
+					typeDescriptionOf(elements.get(0))));
+			break;
+		}
+
+		case STRUCTURE: {
+			List<DataObject> elements = element.value();
+			description.setstructure(new TypeDescription.SubSeqOf_structure());
+			for (DataObject structureElement : elements) {
+				description.structure.add(typeDescriptionOf(structureElement));
+			}
+			break;
+		}
+
+		case BOOL:
+			description.setbool(new AxdrNull());
+			break;
+		case BIT_STRING:
+			description.setbit_string(new AxdrNull());
+			break;
+		case DOUBLE_LONG:
+			description.setdouble_long(new AxdrNull());
+			break;
+		case DOUBLE_LONG_UNSIGNED:
+			description.setdouble_long_unsigned(new AxdrNull());
+			break;
+		case OCTET_STRING:
+			description.setoctet_string(new AxdrNull());
+			break;
+		case VISIBLE_STRING:
+			description.setvisible_string(new AxdrNull());
+			break;
+		case BCD:
+			description.setbcd(new AxdrNull());
+			break;
+		case INTEGER:
+			description.setinteger(new AxdrNull());
+			break;
+		case LONG_INTEGER:
+			description.setlong_integer(new AxdrNull());
+			break;
+		case UNSIGNED:
+			description.setunsigned(new AxdrNull());
+			break;
+		case LONG_UNSIGNED:
+			description.setlong_unsigned(new AxdrNull());
+			break;
+		case LONG64:
+			description.setlong64(new AxdrNull());
+			break;
+		case LONG64_UNSIGNED:
+			description.setlong64_unsigned(new AxdrNull());
+			break;
+		case ENUMERATE:
+			description.setenumerate(new AxdrNull());
+			break;
+		case FLOAT32:
+			description.setfloat32(new AxdrNull());
+			break;
+		case FLOAT64:
+			description.setfloat64(new AxdrNull());
+			break;
+		case DATE_TIME:
+			description.setdate_time(new AxdrNull());
+			break;
+		case DATE:
+			description.setdate(new AxdrNull());
+			break;
+		case TIME:
+			description.settime(new AxdrNull());
+			break;
+		case NULL_DATA:
+			description.setnull_data(new AxdrNull());
+			break;
+		case DONT_CARE:
+			description.setdont_care(new AxdrNull());
+			break;
+
+		default:
+			throw new IllegalArgumentException(element.choiceIndex() + " can not be part of a compact array.");
+		}
+
+		return description;
+	}
+
+	private static void writeValue(DataObject element, TypeDescription description, ByteArrayOutputStream contents) {
+		TypeDescription.Choices type = description.getChoiceIndex();
+		if (type.getValue() != element.choiceIndex().getValue()) {
+			throw new IllegalArgumentException(
+					"Compact array element of type " + element.choiceIndex() + " does not match type " + type + ".");
+		}
+
+		switch (type) {
+		case ARRAY:
+		case STRUCTURE: {
+			List<DataObject> elements = element.value();
+			List<TypeDescription> elementTypes;
+			if (type == TypeDescription.Choices.ARRAY) {
+				if (elements.size() != description.array.number_of_elements.getValue()) {
+					throw new IllegalArgumentException("Arrays of a compact array differ in size.");
+				}
+				elementTypes = null;
+			}
+			else {
+				elementTypes = description.structure.list();
+				if (elements.size() != elementTypes.size()) {
+					throw new IllegalArgumentException("Structures of a compact array differ in size.");
+				}
+			}
+			for (int i = 0; i < elements.size(); i++) {
+				TypeDescription elementType = elementTypes == null ? description.array.type_description
+						: elementTypes.get(i);
+				writeValue(elements.get(i), elementType, contents);
+			}
+			break;
+		}
+
+		case BOOL:
+			contents.write((Boolean) element.value() ? 1 : 0);
+			break;
+
+		case BIT_STRING: {
+			BitString bitString = element.value();
+			writeLength(bitString.numBits(), contents);
+			contents.write(bitString.bitString(), 0, (bitString.numBits() + 7) / 8);
+			break;
+		}
+
+		case OCTET_STRING:
+		case VISIBLE_STRING: {
+			byte[] value = element.value();
+			writeLength(value.length, contents);
+			contents.write(value, 0, value.length);
+			break;
+		}
+
+		case BCD:
+		case INTEGER:
+		case UNSIGNED:
+		case ENUMERATE:
+			writeNumber(element, 1, contents);
+			break;
+
+		case LONG_INTEGER:
+		case LONG_UNSIGNED:
+			writeNumber(element, 2, contents);
+			break;
+
+		case DOUBLE_LONG:
+		case DOUBLE_LONG_UNSIGNED:
+			writeNumber(element, 4, contents);
+			break;
+
+		case LONG64:
+		case LONG64_UNSIGNED:
+			writeNumber(element, 8, contents);
+			break;
+
+		case FLOAT32:
+			writeBytes(ByteBuffer.allocate(4).putFloat((float) element.doubleValue()), contents);
+			break;
+
+		case FLOAT64:
+			writeBytes(ByteBuffer.allocate(8).putDouble(element.doubleValue()), contents);
+			break;
+
+		case DATE_TIME:
+		case DATE:
+		case TIME: {
+			byte[] value = ((CosemDateFormat) element.value()).encode();
+			contents.write(value, 0, value.length);
+			break;
+		}
+
+		default:
+			// null data and don't care have no contents
+			break;
+		}
+	}
+
+	private static void writeNumber(DataObject element, int size, ByteArrayOutputStream contents) {
+		long value = element.longValue();
+		for (int i = size - 1; i >= 0; i--) {
+			contents.write((int) (value >> (i * 8)));
+		}
+	}
+
+	private static void writeBytes(ByteBuffer buffer, ByteArrayOutputStream contents) {
+		contents.write(buffer.array(), 0, buffer.capacity());
+	}
+
+	/*
+	 * A-XDR length: a single byte up to 127, otherwise 0x80 plus the number of the following length bytes.
+	 */
+	private static void writeLength(int length, ByteArrayOutputStream contents) {
+		if (length < 0x80) {
+			contents.write(length);
+			return;
+		}
+		int numBytes = length > 0xFFFFFF ? 4 : length > 0xFFFF ? 3 : length > 0xFF ? 2 : 1;
+		contents.write(0x80 | numBytes);
+		for (int i = numBytes - 1; i >= 0; i--) {
+			contents.write(length >> (i * 8));
+		}
+	}
+
+	private static int readLength(ByteBuffer contents) throws IOException {
+		int first = contents.get() & 0xFF;
+		if ((first & 0x80) == 0) {
+			return first;
+		}
+		int numBytes = first & 0x7F;
+		if (numBytes > 4) {
+			throw new IOException("Length of " + numBytes + " bytes in compact array contents is not supported.");
+		}
+		long length = 0;
+		for (int i = 0; i < numBytes; i++) {
+			length = (length << 8) | (contents.get() & 0xFF);
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Length " + length + " in compact array contents exceeds the maximum array size.");
+		}
+		return (int) length;
+	}
+
+	/*
+	 * The length is checked against the remaining contents before allocating, as it is read from the received data.
+	 */
+	private static byte[] readBytes(ByteBuffer contents, int length) throws IOException {
+		if (length < 0 || length > contents.remaining()) {
+			throw new IOException("Element of " + length + " bytes exceeds the remaining " + contents.remaining()
+					+ " bytes of the compact array contents.");
+		}
+		byte[] bytes = new byte[length];
+		contents.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private CompactArrayConverter() {
+	}
+
+}
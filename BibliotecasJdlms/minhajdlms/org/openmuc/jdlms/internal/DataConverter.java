@@ -20,8 +20,9 @@
  */
 package org.openmuc.jdlms.internal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.openmuc.jdlms.AttributeAddress;
@@ -63,16 +64,16 @@ public final class DataConverter {
 
 		switch (choice) {
 		case ARRAY:
-			innerData = new LinkedList<DataObject>();
-			for (Data item : pdu.array.list()) {
-				innerData.add(toApi(item));
+			innerData = new ArrayList<DataObject>(pdu.array.size());
+			for (int i = 0; i < pdu.array.size(); i++) {
+				innerData.add(toApi(pdu.array.get(i)));
 			}
 			return DataObject.newArrayData(innerData);
 
 		case STRUCTURE:
-			innerData = new LinkedList<DataObject>();
-			for (Data item : pdu.structure.list()) {
-				innerData.add(toApi(item));
+			innerData = new ArrayList<DataObject>(pdu.structure.size());
+			for (int i = 0; i < pdu.structure.size(); i++) {
+				innerData.add(toApi(pdu.structure.get(i)));
 			}
 			return DataObject.newStructureData(innerData);
 
@@ -138,7 +139,12 @@ public final class DataConverter {
 			return DataObject.newTimeData(time);
 
 		case COMPACT_ARRAY:
-			// TODO: support compact arrays
+			try {
+				return CompactArrayConverter.toApi(pdu.compact_array);
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e.getMessage(), e);
+			}
+
 		case DONT_CARE:
 		case NULL_DATA:
 		default:
@@ -202,7 +208,7 @@ public final class DataConverter {
 			}
 		}
 		else if (choice == Choices.COMPACT_ARRAY) {
-			// TODO Implement compact array
+			result = CompactArrayConverter.toPdu(data);
 		}
 
 		return result;
@@ -231,7 +237,6 @@ public final class DataConverter {
 
 	private static Data convertNumberToPduData(DataObject data, Choices choice) {
 		ByteBuffer buffer;
-		Number value = data.value();
 
 		Data result = new Data();
 
@@ -239,7 +244,7 @@ public final class DataConverter {
 		case FLOAT64:
 
 			buffer = ByteBuffer.allocate(8);
-			buffer.putDouble(value.doubleValue());
+			buffer.putDouble(data.doubleValue());
 			buffer.flip();
 
 			result.setfloat64(new AxdrOctetString(8, buffer.array()));
@@ -247,46 +252,46 @@ public final class DataConverter {
 
 		case FLOAT32:
 			buffer = ByteBuffer.allocate(4);
-			buffer.putDouble(value.floatValue());
+			buffer.putFloat((float) data.doubleValue());
 			buffer.flip();
 
 			result.setfloat32(new AxdrOctetString(4, buffer.array()));
 			break;
 
 		case ENUMERATE:
-			result.setenumerate(new Enum(value.longValue()));
+			result.setenumerate(new Enum(data.longValue()));
 			break;
 
 		case LONG64_UNSIGNED:
-			result.setlong64_unsigned(new Unsigned64(value.longValue()));
+			result.setlong64_unsigned(new Unsigned64(data.longValue()));
 			break;
 
 		case LONG64:
-			result.setlong64(new Integer64(value.longValue()));
+			result.setlong64(new Integer64(data.longValue()));
 			break;
 
 		case LONG_UNSIGNED:
-			result.setlong_unsigned(new Unsigned16(value.longValue()));
+			result.setlong_unsigned(new Unsigned16(data.longValue()));
 			break;
 
 		case UNSIGNED:
-			result.setunsigned(new Unsigned8(value.longValue()));
+			result.setunsigned(new Unsigned8(data.longValue()));
 			break;
 
 		case LONG_INTEGER:
-			result.setlong_integer(new Integer16(value.longValue()));
+			result.setlong_integer(new Integer16(data.longValue()));
 			break;
 		case INTEGER:
-			result.setinteger(new Integer8(value.longValue()));
+			result.setinteger(new Integer8(data.longValue()));
 			break;
 		case BCD:
-			result.setbcd(new Integer8(value.longValue()));
+			result.setbcd(new Integer8(data.longValue()));
 			break;
 		case DOUBLE_LONG_UNSIGNED:
-			result.setdouble_long_unsigned(new Unsigned32(value.longValue()));
+			result.setdouble_long_unsigned(new Unsigned32(data.longValue()));
 			break;
 		case DOUBLE_LONG:
-			result.setdouble_long(new Integer32(value.longValue()));
+			result.setdouble_long(new Integer32(data.longValue()));
 
 			break;
 		default:
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.jdlms.datatypes.BitString;
+import org.openmuc.jdlms.datatypes.CosemDate;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.CosemTime;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Decodes A-XDR encoded data directly into {@link DataObject}s.
+ * <p>
+ * Produces the same result as decoding a {@link Data} PDU and converting it with {@link DataConverter#toApi(Data)},
+ * without creating the intermediate PDU object per value.
+ * </p>
+ */
+public final class DataDecoder {
+
+	private static final int DATE_TIME_SIZE = 12;
+	private static final int DATE_SIZE = 5;
+	private static final int TIME_SIZE = 4;
+
+	/**
+	 * Decodes the data element starting at the position of the buffer. The position is moved behind the element.
+	 *
+	 * @param buffer
+	 *            the encoded data
+	 * @return the decoded data
+	 * @throws IOException
+	 *             if the buffer ends within the element or holds an unknown data type
+	 */
+	public static DataObject decode(ByteBuffer buffer) throws IOException {
+		try {
+			return decodeData(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Encoded data ends in the middle of a data element.");
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid data element: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Variant of {@link #decode(ByteBuffer)} which decodes the elements of arrays and structures on first access. The
+	 * encoding is only checked for its structure and the element types of arrays, the returned data object keeps a
+	 * reference to the buffer.
+	 *
+	 * @param buffer
+	 *            the encoded data, it must not be modified afterwards
+	 * @return the decoded data
+	 * @throws IOException
+	 *             if the buffer ends within the element or holds an unknown data type
+	 * @see LazyDataList
+	 */
+	public static DataObject decodeLazily(ByteBuffer buffer) throws IOException {
+		try {
+			return decodeDataLazily(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Encoded data ends in the middle of a data element.");
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid data element: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Decodes an A-XDR length starting at the position of the buffer. The position is moved behind the length.
+	 *
+	 * @param buffer
+	 *            the encoded data
+	 * @return the decoded length
+	 * @throws IOException
+	 *             if the buffer ends within the length or the length exceeds an int
+	 */
+	public static int decodeLength(ByteBuffer buffer) throws IOException {
+		try {
+			return lengthOf(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Encoded data ends in the middle of a length.");
+		}
+	}
+
+	private static DataObject decodeData(ByteBuffer buffer) throws IOException {
+		int tag = buffer.get() & 0xff;
+
+		switch (Data.Choices.valueOf(tag)) {
+		case ARRAY:
+			return DataObject.newArrayData(decodeElements(buffer));
+
+		case STRUCTURE:
+			return DataObject.newStructureData(decodeElements(buffer));
+
+		case BOOL:
+			return DataObject.newBoolData(buffer.get() != 0);
+
+		case BIT_STRING: {
+			int numBits = lengthOf(buffer);
+			return DataObject.newBitStringData(new BitString(bytesOf(buffer, (numBits + 7) / 8), numBits));
+		}
+
+		case DOUBLE_LONG:
+			return DataObject.newInteger32Data(buffer.getInt());
+
+		case DOUBLE_LONG_UNSIGNED:
+			return DataObject.newUInteger32Data(buffer.getInt() & 0xffffffffL);
+
+		case OCTET_STRING: {
+			int length = lengthOf(buffer);
+			int offset = buffer.arrayOffset() + buffer.position();
+			skipBytes(buffer, length);
+			return DataObject.newOctetStringData(buffer.array(), offset, length);
+		}
+
+		case VISIBLE_STRING: {
+			int length = lengthOf(buffer);
+			int offset = buffer.arrayOffset() + buffer.position();
+			skipBytes(buffer, length);
+			return DataObject.newVisibleStringData(buffer.array(), offset, length);
+		}
+
+		case BCD:
+			return DataObject.newBcdData(buffer.get());
+
+		case INTEGER:
+			return DataObject.newInteger8Data(buffer.get());
+
+		case LONG_INTEGER:
+			return DataObject.newInteger16Data(buffer.getShort());
+
+		case UNSIGNED:
+			return DataObject.newUInteger8Data((short) (buffer.get() & 0xff));
+
+		case LONG_UNSIGNED:
+			return DataObject.newUInteger16Data(buffer.getShort() & 0xffff);
+
+		case LONG64:
+			return DataObject.newInteger64Data(buffer.getLong());
+
+		case LONG64_UNSIGNED:
+			return DataObject.newUInteger64Data(buffer.getLong());
+
+		case ENUMERATE:
+			return DataObject.newEnumerateData(buffer.get() & 0xff);
+
+		case FLOAT32:
+			return DataObject.newFloat32Data(buffer.getFloat());
+
+		case FLOAT64:
+			return DataObject.newFloat64Data(buffer.getDouble());
+
+		case DATE_TIME:
+			return DataObject.newDateTimeData(CosemDateTime.decode(bytesOf(buffer, DATE_TIME_SIZE)));
+
+		case DATE:
+			return DataObject.newDateData(CosemDate.decode(bytesOf(buffer, DATE_SIZE)));
+
+		case TIME:
+			return DataObject.newTimeData(CosemTime.decode(bytesOf(buffer, TIME_SIZE)));
+
+		case COMPACT_ARRAY:
+			return decodeCompactArray(buffer);
+
+		case NULL_DATA:
+		case DONT_CARE:
+			return DataObject.newNullData();
+
+		default:
+			throw new IOException("Unknown data type " + tag + ".");
+		}
+	}
+
+	private static List<DataObject> decodeElements(ByteBuffer buffer) throws IOException {
+		int numElements = lengthOf(buffer);
+		if (numElements > buffer.remaining()) {
+			// every element needs at least one byte, so the length is corrupt
+			throw new BufferUnderflowException();
+		}
+
+		List<DataObject> elements = new ArrayList<DataObject>(numElements);
+		for (int i = 0; i < numElements; i++) {
+			elements.add(decodeData(buffer));
+		}
+		return elements;
+	}
+
+	private static DataObject decodeDataLazily(ByteBuffer buffer) throws IOException {
+		int tagPosition = buffer.position();
+		int tag = buffer.get() & 0xff;
+
+		switch (Data.Choices.valueOf(tag)) {
+		case ARRAY:
+			return UncheckedDataFactory.newArrayData(lazyElementsOf(buffer, true));
+
+		case STRUCTURE:
+			return DataObject.newStructureData(lazyElementsOf(buffer, false));
+
+		default:
+			// other types are small enough to be decoded right away
+			buffer.position(tagPosition);
+			return decodeData(buffer);
+		}
+	}
+
+	/*
+	 * Only the positions of the elements are recorded. The element types of an array are checked here, as
+	 * DataObject.newArrayData would otherwise decode every element to check them, so arrays are created by
+	 * UncheckedDataFactory.
+	 */
+	private static LazyDataList lazyElementsOf(ByteBuffer buffer, boolean sameType) throws IOException {
+		int numElements = lengthOf(buffer);
+		if (numElements > buffer.remaining()) {
+			// every element needs at least one byte, so the length is corrupt
+			throw new BufferUnderflowException();
+		}
+
+		int[] offsets = new int[numElements];
+		int start = buffer.position();
+		for (int i = 0; i < numElements; i++) {
+			int offset = buffer.position();
+			if (sameType && i > 0 && buffer.get(offset) != buffer.get(start)) {
+				throw new IllegalArgumentException("Array is of type " + Data.Choices.valueOf(buffer.get(start) & 0xff)
+						+ ", but array at " + i + " is of type " + Data.Choices.valueOf(buffer.get(offset) & 0xff));
+			}
+			offsets[i] = offset;
+			skipData(buffer);
+		}
+
+		ByteBuffer data = buffer.duplicate();
+		data.limit(buffer.position());
+		return new LazyDataList(data, offsets);
+	}
+
+	private static void skipData(ByteBuffer buffer) throws IOException {
+		int tag = buffer.get() & 0xff;
+
+		switch (Data.Choices.valueOf(tag)) {
+		case ARRAY:
+		case STRUCTURE: {
+			int numElements = lengthOf(buffer);
+			for (int i = 0; i < numElements; i++) {
+				skipData(buffer);
+			}
+			break;
+		}
+		case BOOL:
+		case BCD:
+		case INTEGER:
+		case UNSIGNED:
+		case ENUMERATE:
+			skipBytes(buffer, 1);
+			break;
+		case LONG_INTEGER:
+		case LONG_UNSIGNED:
+			skipBytes(buffer, 2);
+			break;
+		case DOUBLE_LONG:
+		case DOUBLE_LONG_UNSIGNED:
+		case FLOAT32:
+			skipBytes(buffer, 4);
+			break;
+		case LONG64:
+		case LONG64_UNSIGNED:
+		case FLOAT64:
+			skipBytes(buffer, 8);
+			break;
+		case BIT_STRING:
+			skipBytes(buffer, (int) ((lengthOf(buffer) + 7L) / 8));
+			break;
+		case OCTET_STRING:
+		case VISIBLE_STRING:
+			skipBytes(buffer, lengthOf(buffer));
+			break;
+		case DATE_TIME:
+			skipBytes(buffer, DATE_TIME_SIZE);
+			break;
+		case DATE:
+			skipBytes(buffer, DATE_SIZE);
+			break;
+		case TIME:
+			skipBytes(buffer, TIME_SIZE);
+			break;
+		case COMPACT_ARRAY:
+			skipTypeDescription(buffer);
+			skipBytes(buffer, lengthOf(buffer));
+			break;
+		case NULL_DATA:
+		case DONT_CARE:
+			break;
+		default:
+			throw new IOException("Unknown data type " + tag + ".");
+		}
+	}
+
+	private static void skipTypeDescription(ByteBuffer buffer) throws IOException {
+		int tag = buffer.get() & 0xff;
+
+		if (tag == Data.Choices.ARRAY.getValue()) {
+			// number of elements followed by the type of the elements
+			skipBytes(buffer, 2);
+			skipTypeDescription(buffer);
+		}
+		else if (tag == Data.Choices.STRUCTURE.getValue()) {
+			int numElements = lengthOf(buffer);
+			for (int i = 0; i < numElements; i++) {
+				skipTypeDescription(buffer);
+			}
+		}
+	}
+
+	private static void skipBytes(ByteBuffer buffer, int length) {
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		buffer.position(buffer.position() + length);
+	}
+
+	/*
+	 * Compact arrays are rare, so their type description is still decoded by the generated PDU class.
+	 */
+	private static DataObject decodeCompactArray(ByteBuffer buffer) throws IOException {
+		int tagPosition = buffer.position() - 1;
+		Data data = new Data();
+		int length = data.decode(new AxdrReader(buffer.array(), buffer.arrayOffset() + tagPosition,
+				buffer.limit() - tagPosition));
+		buffer.position(tagPosition + length);
+		return CompactArrayConverter.toApi(data.compact_array);
+	}
+
+	private static int lengthOf(ByteBuffer buffer) throws IOException {
+		int length = buffer.get() & 0xff;
+		if ((length & 0x80) == 0) {
+			return length;
+		}
+
+		int lengthOfLength = length & 0x7f;
+		if (lengthOfLength > 4) {
+			throw new IOException("Length of " + lengthOfLength + " bytes is not supported.");
+		}
+		length = 0;
+		for (int i = 0; i < lengthOfLength; i++) {
+			length = (length << 8) | (buffer.get() & 0xff);
+		}
+		if (length < 0) {
+			throw new IOException("Length exceeds the maximum array size.");
+		}
+		return length;
+	}
+
+	private static byte[] bytesOf(ByteBuffer buffer, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private DataDecoder() {
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.openmuc.jdlms.datatypes.BitString;
+import org.openmuc.jdlms.datatypes.CosemDateFormat;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataVisitor;
+import org.openmuc.jdlms.internal.asn1.cosem.Data.Choices;
+
+/**
+ * Reports A-XDR encoded data to a {@link DataVisitor} without creating objects per value.
+ */
+public final class DataParser {
+
+	private static final int DATE_TIME_SIZE = 12;
+	private static final int DATE_SIZE = 5;
+	private static final int TIME_SIZE = 4;
+
+	/**
+	 * Parses the data element starting at the position of the buffer. The position is moved behind the element.
+	 *
+	 * @param buffer
+	 *            the encoded data
+	 * @param visitor
+	 *            the visitor receiving the values
+	 * @throws IOException
+	 *             if the buffer ends within the element or holds an unknown data type
+	 */
+	public static void parse(ByteBuffer buffer, DataVisitor visitor) throws IOException {
+		try {
+			parseData(buffer, visitor);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Encoded data ends in the middle of a data element.");
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid data element: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reports an already decoded data object to a visitor, in the same order as {@link #parse(ByteBuffer, DataVisitor)}
+	 * would.
+	 *
+	 * @param data
+	 *            the data object
+	 * @param visitor
+	 *            the visitor receiving the values
+	 */
+	public static void visit(DataObject data, DataVisitor visitor) {
+		switch (data.choiceIndex()) {
+		case ARRAY:
+		case COMPACT_ARRAY: {
+			List<DataObject> elements = data.value();
+			visitor.onArrayStart(elements.size());
+			visitElements(elements, visitor);
+			break;
+		}
+		case STRUCTURE: {
+			List<DataObject> elements = data.value();
+			visitor.onStructureStart(elements.size());
+			visitElements(elements, visitor);
+			break;
+		}
+		case BOOL:
+			visitor.onBool((Boolean) data.value());
+			break;
+		case BIT_STRING: {
+			BitString bitString = data.value();
+			visitor.onBitString(ByteBuffer.wrap(bitString.bitString(), 0, (bitString.numBits() + 7) / 8),
+					bitString.numBits());
+			break;
+		}
+		case FLOAT32:
+		case FLOAT64:
+			visitor.onDouble(data.choiceIndex(), data.doubleValue());
+			break;
+		case OCTET_STRING:
+		case VISIBLE_STRING:
+			visitor.onOctetString(data.choiceIndex(), ByteBuffer.wrap(data.<byte[]> value()));
+			break;
+		case DATE_TIME:
+		case DATE:
+		case TIME:
+			visitor.onOctetString(data.choiceIndex(), ByteBuffer.wrap(((CosemDateFormat) data.value()).encode()));
+			break;
+		case NULL_DATA:
+		case DONT_CARE:
+			visitor.onNull();
+			break;
+		default:
+			visitor.onLong(data.choiceIndex(), data.longValue());
+			break;
+		}
+	}
+
+	private static void visitElements(List<DataObject> elements, DataVisitor visitor) {
+		for (DataObject element : elements) {
+			visit(element, visitor);
+		}
+		visitor.onEnd();
+	}
+
+	private static void parseData(ByteBuffer buffer, DataVisitor visitor) throws IOException {
+		int tag = buffer.get() & 0xff;
+		Choices choice = Choices.valueOf(tag);
+
+		switch (choice) {
+		case ARRAY:
+		case STRUCTURE: {
+			int numElements = DataDecoder.decodeLength(buffer);
+			if (choice == Choices.ARRAY) {
+				visitor.onArrayStart(numElements);
+			}
+			else {
+				visitor.onStructureStart(numElements);
+			}
+			for (int i = 0; i < numElements; i++) {
+				parseData(buffer, visitor);
+			}
+			visitor.onEnd();
+			break;
+		}
+		case BOOL:
+			visitor.onBool(buffer.get() != 0);
+			break;
+		case BIT_STRING: {
+			int numBits = DataDecoder.decodeLength(buffer);
+			visitBytes(buffer, (numBits + 7) / 8, null, numBits, visitor);
+			break;
+		}
+		case BCD:
+		case INTEGER:
+			visitor.onLong(choice, buffer.get());
+			break;
+		case UNSIGNED:
+		case ENUMERATE:
+			visitor.onLong(choice, buffer.get() & 0xff);
+			break;
+		case LONG_INTEGER:
+			visitor.onLong(choice, buffer.getShort());
+			break;
+		case LONG_UNSIGNED:
+			visitor.onLong(choice, buffer.getShort() & 0xffff);
+			break;
+		case DOUBLE_LONG:
+			visitor.onLong(choice, buffer.getInt());
+			break;
+		case DOUBLE_LONG_UNSIGNED:
+			visitor.onLong(choice, buffer.getInt() & 0xffffffffL);
+			break;
+		case LONG64:
+		case LONG64_UNSIGNED:
+			visitor.onLong(choice, buffer.getLong());
+			break;
+		case FLOAT32:
+			visitor.onDouble(choice, buffer.getFloat());
+			break;
+		case FLOAT64:
+			visitor.onDouble(choice, buffer.getDouble());
+			break;
+		case OCTET_STRING:
+		case VISIBLE_STRING:
+			visitBytes(buffer, DataDecoder.decodeLength(buffer), choice, 0, visitor);
+			break;
+		case DATE_TIME:
+			visitBytes(buffer, DATE_TIME_SIZE, choice, 0, visitor);
+			break;
+		case DATE:
+			visitBytes(buffer, DATE_SIZE, choice, 0, visitor);
+			break;
+		case TIME:
+			visitBytes(buffer, TIME_SIZE, choice, 0, visitor);
+			break;
+		case COMPACT_ARRAY:
+			// the elements of a compact array are only known after decoding its type description
+			buffer.position(buffer.position() - 1);
+			visit(DataDecoder.decode(buffer), visitor);
+			break;
+		case NULL_DATA:
+		case DONT_CARE:
+			visitor.onNull();
+			break;
+		default:
+			throw new IOException("Unknown data type " + tag + ".");
+		}
+	}
+
+	/*
+	 * Passes the next length bytes to the visitor by limiting the buffer, so no copy is needed.
+	 */
+	private static void visitBytes(ByteBuffer buffer, int length, Choices choice, int numBits, DataVisitor visitor) {
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		int limit = buffer.limit();
+		int end = buffer.position() + length;
+		buffer.limit(end);
+		try {
+			if (choice == null) {
+				visitor.onBitString(buffer, numBits);
+			}
+			else {
+				visitor.onOctetString(choice, buffer);
+			}
+		} finally {
+			buffer.limit(limit);
+			buffer.position(end);
+		}
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private DataParser() {
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.nio.ByteBuffer;
+
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+
+/**
+ * Buffer a connection encodes its APDUs into.
+ * <p>
+ * The array is taken from the {@link BufferPool} by {@link #reset()} and returned by {@link #release()} as soon as the
+ * PDU has been sent, so idle connections hold no array and the arrays are shared by all connections. PDUs are encoded
+ * backwards from the end of the array, so the encoded bytes are found between {@link #offset()} and the end of
+ * {@link #array()}. If a PDU does not fit, the array grows automatically.
+ * </p>
+ * <p>
+ * The arrays are {@link #HEADROOM} bytes larger than the capacity, so the transport layer finds free space in front of
+ * the PDU to put its header there instead of copying the PDU.
+ * </p>
+ * <p>
+ * The buffer is not thread safe, the caller has to synchronize the encoding and sending of a PDU.
+ * </p>
+ */
+public final class EncodeBuffer {
+
+	/**
+	 * Bytes kept free in front of a PDU of at most the capacity of the buffer.
+	 */
+	public static final int HEADROOM = 16;
+
+	private final BerByteArrayOutputStream os = new BerByteArrayOutputStream(new byte[0], 0, true);
+	private int capacity;
+	private boolean acquired = false;
+
+	/**
+	 * @param size
+	 *            the initial size of the arrays taken from the pool
+	 */
+	public EncodeBuffer(int size) {
+		this.capacity = size;
+	}
+
+	/**
+	 * Sets the size of the arrays taken from the pool, so a PDU of the given size is encoded without growing the
+	 * array.
+	 *
+	 * @param size
+	 *            the size in bytes
+	 */
+	public void ensureCapacity(int size) {
+		capacity = Math.max(capacity, size);
+	}
+
+	/**
+	 * Discards the current content and returns the stream to encode the next PDU into.
+	 *
+	 * @return the output stream writing into this buffer
+	 */
+	public BerByteArrayOutputStream reset() {
+		return reset(capacity);
+	}
+
+	/**
+	 * Discards the current content and copies already encoded bytes into the buffer.
+	 *
+	 * @param encoded
+	 *            the encoded bytes
+	 * @return the output stream to encode further bytes in front of the copied bytes
+	 */
+	public BerByteArrayOutputStream reset(byte[] encoded) {
+		reset(Math.max(capacity, encoded.length));
+		os.index -= encoded.length;
+		System.arraycopy(encoded, 0, os.buffer, os.index + 1, encoded.length);
+		return os;
+	}
+
+	private BerByteArrayOutputStream reset(int size) {
+		if (acquired && os.buffer.length < size + HEADROOM) {
+			release();
+		}
+		if (!acquired) {
+			os.buffer = BufferPool.acquire(size + HEADROOM);
+			acquired = true;
+		}
+		os.reset();
+		return os;
+	}
+
+	/**
+	 * @return the array holding the encoded bytes. May change when the buffer grows.
+	 */
+	public byte[] array() {
+		return os.buffer;
+	}
+
+	/**
+	 * @return the index of the first encoded byte in {@link #array()}
+	 */
+	public int offset() {
+		return os.index + 1;
+	}
+
+	/**
+	 * @return the number of encoded bytes
+	 */
+	public int length() {
+		return os.buffer.length - os.index - 1;
+	}
+
+	/**
+	 * @return a read only view of the encoded bytes. The view is only valid until the buffer is reset or released.
+	 */
+	public ByteBuffer view() {
+		return ByteBuffer.wrap(os.buffer, offset(), length()).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the array to the pool. Called after the encoded PDU has been sent, the next {@link #reset()} takes an
+	 * array from the pool again.
+	 */
+	public void release() {
+		if (acquired) {
+			BufferPool.release(os.buffer);
+			os.buffer = null;
+			acquired = false;
+		}
+	}
+
+}
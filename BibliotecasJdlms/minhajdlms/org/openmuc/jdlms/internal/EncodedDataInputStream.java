@@ -0,0 +1,241 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.BitString;
+import org.openmuc.jdlms.datatypes.CosemDateFormat;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrWriter;
+import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.asn1.cosem.Data.Choices;
+
+/**
+ * Input stream reading the A-XDR encoding of data objects.
+ * <p>
+ * The encoding is produced lazily while the stream is read. Arrays and structures are walked element by element, so
+ * only the encoding of a single primitive element is held in memory at any time. This allows large values to be cut
+ * into the data blocks of a block transfer without encoding the whole value up front.
+ * </p>
+ */
+public class EncodedDataInputStream extends InputStream {
+
+	private final Deque<Iterator<DataObject>> pending = new ArrayDeque<Iterator<DataObject>>();
+
+	private byte[] chunk;
+	private int chunkPos = 0;
+
+	/**
+	 * Creates a stream of the encodings of the given data objects, one after the other.
+	 *
+	 * @param data
+	 *            the data objects to encode
+	 */
+	public EncodedDataInputStream(DataObject... data) {
+		this.chunk = new byte[0];
+		pending.push(Arrays.asList(data).iterator());
+	}
+
+	private EncodedDataInputStream(List<DataObject> data) throws IOException {
+		this.chunk = lengthEncoding(data.size());
+		pending.push(data.iterator());
+	}
+
+	/**
+	 * Creates a stream of the encoding of a SEQUENCE OF Data, as used for the value list of a
+	 * Set-Request-With-List-And-First-Datablock.
+	 *
+	 * @param data
+	 *            the elements of the sequence
+	 * @return the stream
+	 * @throws IOException
+	 *             if the length of the sequence could not be encoded
+	 */
+	public static EncodedDataInputStream sequenceOf(List<DataObject> data) throws IOException {
+		return new EncodedDataInputStream(data);
+	}
+
+	/**
+	 * Computes the size of the A-XDR encoding of a data object without encoding it. Only compact arrays, whose
+	 * encoding depends on the type description of their contents, are encoded to determine their size.
+	 *
+	 * @param data
+	 *            the data object
+	 * @return the number of bytes of the encoding of data
+	 * @throws IOException
+	 *             if a compact array could not be encoded
+	 */
+	public static int encodedLength(DataObject data) throws IOException {
+		switch (data.choiceIndex()) {
+		case ARRAY:
+		case STRUCTURE:
+			List<DataObject> elements = data.value();
+			int length = 1 + lengthSizeOf(elements.size());
+			for (DataObject element : elements) {
+				length += encodedLength(element);
+			}
+			return length;
+
+		case NULL_DATA:
+		case DONT_CARE:
+			return 1;
+
+		case BOOL:
+		case BCD:
+		case INTEGER:
+		case UNSIGNED:
+		case ENUMERATE:
+			return 2;
+
+		case LONG_INTEGER:
+		case LONG_UNSIGNED:
+			return 3;
+
+		case DOUBLE_LONG:
+		case DOUBLE_LONG_UNSIGNED:
+		case FLOAT32:
+			return 5;
+
+		case LONG64:
+		case LONG64_UNSIGNED:
+		case FLOAT64:
+			return 9;
+
+		case OCTET_STRING:
+		case VISIBLE_STRING:
+			byte[] bytes = data.value();
+			return 1 + lengthSizeOf(bytes.length) + bytes.length;
+
+		case DATE_TIME:
+		case DATE:
+		case TIME:
+			// encoded as octet string
+			CosemDateFormat dateFormat = data.value();
+			return 1 + lengthSizeOf(dateFormat.length()) + dateFormat.length();
+
+		case BIT_STRING:
+			BitString bitString = data.value();
+			return 1 + lengthSizeOf(bitString.numBits()) + bitString.bitString().length;
+
+		default:
+			return DataConverter.toPdu(data).encode(new NullOutputStream());
+		}
+	}
+
+	private static int lengthSizeOf(int length) {
+		if (length < 128) {
+			return 1;
+		}
+		return 1 + AxdrWriter.byteLengthOf(length);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!hasRemaining()) {
+			return -1;
+		}
+		return chunk[chunkPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		int numRead = 0;
+		while (numRead < len && hasRemaining()) {
+			int n = Math.min(len - numRead, chunk.length - chunkPos);
+			System.arraycopy(chunk, chunkPos, b, off + numRead, n);
+			chunkPos += n;
+			numRead += n;
+		}
+
+		return numRead == 0 ? -1 : numRead;
+	}
+
+	@Override
+	public int available() {
+		return chunk.length - chunkPos;
+	}
+
+	/**
+	 * Checks if there are bytes left to read.
+	 *
+	 * @return true if at least one more byte can be read
+	 * @throws IOException
+	 *             if the next element could not be encoded
+	 */
+	public boolean hasRemaining() throws IOException {
+		while (chunkPos == chunk.length) {
+			if (!nextChunk()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean nextChunk() throws IOException {
+		while (!pending.isEmpty() && !pending.peek().hasNext()) {
+			pending.pop();
+		}
+		if (pending.isEmpty()) {
+			return false;
+		}
+
+		DataObject data = pending.peek().next();
+		chunkPos = 0;
+
+		Choices choice = data.choiceIndex();
+		if (choice == Choices.ARRAY || choice == Choices.STRUCTURE) {
+			List<DataObject> elements = data.value();
+			byte[] length = lengthEncoding(elements.size());
+
+			chunk = new byte[length.length + 1];
+			chunk[0] = (byte) choice.getValue();
+			System.arraycopy(length, 0, chunk, 1, length.length);
+
+			pending.push(elements.iterator());
+		}
+		else {
+			BerByteArrayOutputStream os = new BerByteArrayOutputStream(32, true);
+			DataConverter.toPdu(data).encode(os);
+			chunk = os.getArray();
+		}
+		return true;
+	}
+
+	private static byte[] lengthEncoding(int length) throws IOException {
+		BerByteArrayOutputStream os = new BerByteArrayOutputStream(5);
+		new AxdrLength(length).encode(os);
+		return os.getArray();
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.openmuc.jdlms.datatypes.DataObject;
+
+/**
+ * Elements of an array or structure which are decoded from their A-XDR encoding on first access.
+ * <p>
+ * The list keeps the encoded response, so it is meant for large responses of which only a few elements are read. The
+ * structure of the encoding has been checked by {@link DataDecoder#decodeLazily(ByteBuffer)}, invalid values, e.g. of
+ * a date, are only detected when the element is accessed.
+ * </p>
+ */
+public final class LazyDataList extends AbstractList<DataObject> implements RandomAccess {
+
+	private final ByteBuffer data;
+	private final int[] offsets;
+	private final DataObject[] elements;
+
+	/**
+	 * @param data
+	 *            the encoded elements, the buffer is not modified
+	 * @param offsets
+	 *            the positions of the tags of the elements within data
+	 */
+	LazyDataList(ByteBuffer data, int[] offsets) {
+		this.data = data;
+		this.offsets = offsets;
+		this.elements = new DataObject[offsets.length];
+	}
+
+	/**
+	 * Returns the element at the given index, decoding it if it has not been accessed before. Concurrent first
+	 * accesses may decode an element twice, which is harmless as data objects are immutable.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the element is not a valid data element
+	 */
+	@Override
+	public DataObject get(int index) {
+		DataObject element = elements[index];
+		if (element == null) {
+			ByteBuffer buffer = data.duplicate();
+			buffer.position(offsets[index]);
+			try {
+				element = DataDecoder.decodeLazily(buffer);
+			} catch (IOException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+			elements[index] = element;
+		}
+		return element;
+	}
+
+	@Override
+	public int size() {
+		return offsets.length;
+	}
+
+}
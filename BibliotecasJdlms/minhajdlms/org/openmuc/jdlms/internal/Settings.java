@@ -20,6 +20,8 @@
  */
 package org.openmuc.jdlms.internal;
 
+import java.util.concurrent.ThreadFactory;
+
 import org.openmuc.jdlms.internal.security.DataTransmissionLevel;
 
 public interface Settings {
@@ -40,6 +42,12 @@ public interface Settings {
 
 	int messageFragmentTimeout();
 
+	int coalescingWindow();
+
+	int maxListSize();
+
+	ThreadFactory threadFactory();
+
 	String manufactureId();
 
 	ConfirmedMode confirmedMode();
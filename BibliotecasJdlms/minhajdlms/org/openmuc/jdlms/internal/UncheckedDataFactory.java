@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openmuc.jdlms.datatypes.DataObject;
+
+/**
+ * Creates data objects of decoded data without the checks of the public factories of {@link DataObject}.
+ * <p>
+ * The decoder checks the element types of an array while walking its encoding, so elements which are decoded on
+ * first access need not be decoded to check them again. DataObject installs the implementation when its class is
+ * initialized. The factory methods are only accessible within this package.
+ * </p>
+ */
+public abstract class UncheckedDataFactory {
+
+	private static final AtomicReference<UncheckedDataFactory> factory = new AtomicReference<UncheckedDataFactory>();
+
+	/**
+	 * Installs the implementation of DataObject. Called once by DataObject.
+	 * 
+	 * @param implementation
+	 *            the implementation
+	 * @throws IllegalStateException
+	 *             if an implementation has already been installed
+	 */
+	public static void install(UncheckedDataFactory implementation) {
+		if (!factory.compareAndSet(null, implementation)) {
+			throw new IllegalStateException("Unchecked data factory has already been installed.");
+		}
+	}
+
+	/**
+	 * Constructs an array data without accessing the elements.
+	 * 
+	 * @param array
+	 *            the elements, all of the same data type
+	 * @return the data
+	 */
+	static DataObject newArrayData(List<DataObject> array) {
+		UncheckedDataFactory implementation = factory.get();
+		if (implementation == null) {
+			// initializes DataObject, which installs its implementation
+			DataObject.newNullData();
+			implementation = factory.get();
+		}
+		return implementation.arrayData(array);
+	}
+
+	protected abstract DataObject arrayData(List<DataObject> array);
+
+}
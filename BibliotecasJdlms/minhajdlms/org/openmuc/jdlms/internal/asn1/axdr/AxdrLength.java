@@ -17,73 +17,26 @@ public class AxdrLength {
 	}
 
 	public static int encodeLength(BerByteArrayOutputStream axdrOStream, int length) throws IOException {
-		int codeLength = 0;
-
-		if (length == 0) {
-			axdrOStream.write(0);
-			codeLength++;
-		}
-		else {
-			int lengthOfLength = 0;
-			for (int i = 0; (length >> 8 * (i)) != 0; i++) {
-				axdrOStream.write((length >> 8 * (i)) & 0xff);
-				lengthOfLength++;
-				codeLength++;
-			}
-
-			if (length >= 128) {
-				axdrOStream.write((byte) ((lengthOfLength & 0xff) | 0x80));
-				codeLength++;
-			}
-		}
-
-		return codeLength;
+		return AxdrWriter.writeLength(axdrOStream, length);
 	}
 
 	public int encode(BerByteArrayOutputStream axdrOStream) throws IOException {
-		int codeLength = 0;
-
-		if (length == 0) {
-			axdrOStream.write(0);
-			codeLength++;
-		}
-		else {
-			int lengthOfLength = 0;
-			for (int i = 0; (length >> 8 * (i)) != 0; i++) {
-				axdrOStream.write((length >> 8 * (i)) & 0xff);
-				lengthOfLength++;
-				codeLength++;
-			}
-
-			if (length >= 128) {
-				axdrOStream.write((byte) ((lengthOfLength & 0xff) | 0x80));
-				codeLength++;
-			}
-		}
-
-		return codeLength;
+		return AxdrWriter.writeLength(axdrOStream, length);
 	}
 
 	public int decode(InputStream iStream) throws IOException {
-		int codeLength = 0;
-
-		length = iStream.read();
-		codeLength++;
+		length = AxdrReader.readByte(iStream);
 
 		if ((length & 0x80) == 0x80) {
 			int encodedLength = length ^ 0x80;
-			codeLength += encodedLength;
-			length = 0;
-			byte[] byteCode = new byte[encodedLength];
-			if (iStream.read(byteCode, 0, encodedLength) < encodedLength) {
+			if (encodedLength > 4) {
 				throw new IOException("Error Decoding AxdrLength");
 			}
-			for (int i = 0; i < encodedLength; i++) {
-				length |= (byteCode[i] & 0xff) << (8 * (encodedLength - i - 1));
-			}
+			length = (int) AxdrReader.readInteger(iStream, encodedLength, false);
+			return encodedLength + 1;
 		}
 
-		return codeLength;
+		return 1;
 	}
 
 	public int getValue() {
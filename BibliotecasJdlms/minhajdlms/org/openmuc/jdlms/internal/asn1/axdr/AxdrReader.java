@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.asn1.axdr;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream over a byte array, used to decode A-XDR types without the synchronization of
+ * {@link java.io.ByteArrayInputStream}.
+ * <p>
+ * The static methods read A-XDR primitives from any input stream. If the stream is an AxdrReader they read directly
+ * from the array at the current offset instead of calling {@link #read()} per byte.
+ * </p>
+ */
+public final class AxdrReader extends InputStream {
+
+	private final byte[] buffer;
+	private int position;
+	private final int limit;
+
+	public AxdrReader(byte[] buffer) {
+		this(buffer, 0, buffer.length);
+	}
+
+	public AxdrReader(byte[] buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	/**
+	 * Creates a reader over the remaining bytes of a buffer backed by an array. The position of the buffer is not
+	 * changed.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 */
+	public AxdrReader(ByteBuffer buffer) {
+		this(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+	}
+
+	@Override
+	public int read() {
+		if (position == limit) {
+			return -1;
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		if (position == limit) {
+			return -1;
+		}
+		int numBytes = Math.min(len, limit - position);
+		System.arraycopy(buffer, position, b, off, numBytes);
+		position += numBytes;
+		return numBytes;
+	}
+
+	@Override
+	public long skip(long n) {
+		int numBytes = (int) Math.max(0, Math.min(n, limit - position));
+		position += numBytes;
+		return numBytes;
+	}
+
+	@Override
+	public int available() {
+		return limit - position;
+	}
+
+	/**
+	 * @return the offset of the next byte to read in the array
+	 */
+	public int position() {
+		return position;
+	}
+
+	/**
+	 * Reads a big endian integer.
+	 * 
+	 * @param is
+	 *            the input stream
+	 * @param numBytes
+	 *            the number of bytes of the integer, at most 8
+	 * @param signed
+	 *            whether the most significant bit is a sign bit
+	 * @return the integer
+	 * @throws IOException
+	 *             if the stream ends within the integer
+	 */
+	public static long readInteger(InputStream is, int numBytes, boolean signed) throws IOException {
+		long value;
+		if (is instanceof AxdrReader) {
+			AxdrReader reader = (AxdrReader) is;
+			if (reader.limit - reader.position < numBytes) {
+				throw new EOFException("Unexpected end of input stream.");
+			}
+			value = 0;
+			for (int i = reader.position; i < reader.position + numBytes; i++) {
+				value = (value << 8) | (reader.buffer[i] & 0xff);
+			}
+			reader.position += numBytes;
+		}
+		else {
+			value = 0;
+			for (int i = 0; i < numBytes; i++) {
+				value = (value << 8) | readByte(is);
+			}
+		}
+
+		if (signed && numBytes < 8) {
+			// sign extension
+			int shift = 64 - 8 * numBytes;
+			value = (value << shift) >> shift;
+		}
+		return value;
+	}
+
+	/**
+	 * Reads an A-XDR length.
+	 * 
+	 * @param is
+	 *            the input stream
+	 * @return the length
+	 * @throws IOException
+	 *             if the stream ends within the length or the length exceeds an int
+	 */
+	public static int readLength(InputStream is) throws IOException {
+		int length = readByte(is);
+		if ((length & 0x80) == 0) {
+			return length;
+		}
+
+		int lengthOfLength = length & 0x7f;
+		if (lengthOfLength > 4) {
+			throw new IOException("Length of " + lengthOfLength + " bytes is not supported.");
+		}
+		long value = readInteger(is, lengthOfLength, false);
+		if (value > Integer.MAX_VALUE) {
+			throw new IOException("Length exceeds the maximum array size.");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Reads a single byte.
+	 * 
+	 * @param is
+	 *            the input stream
+	 * @return the unsigned value of the byte
+	 * @throws IOException
+	 *             if the stream has ended
+	 */
+	public static int readByte(InputStream is) throws IOException {
+		int value = is.read();
+		if (value == -1) {
+			throw new EOFException("Unexpected end of input stream.");
+		}
+		return value;
+	}
+
+}
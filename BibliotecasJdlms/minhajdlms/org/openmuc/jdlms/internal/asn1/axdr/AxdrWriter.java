@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.asn1.axdr;
+
+import java.io.IOException;
+
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+
+/**
+ * Writes A-XDR primitives backwards into a {@link BerByteArrayOutputStream}.
+ * <p>
+ * If the buffer of the stream has enough space left, the bytes are put into the array at the current index. Otherwise
+ * they are written one by one, so the stream can grow or a subclass can handle them.
+ * </p>
+ */
+public final class AxdrWriter {
+
+	/**
+	 * Writes a big endian integer.
+	 * 
+	 * @param os
+	 *            the output stream
+	 * @param value
+	 *            the integer
+	 * @param numBytes
+	 *            the number of least significant bytes of the value to write, at most 8
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if the stream can not grow
+	 */
+	public static int writeInteger(BerByteArrayOutputStream os, long value, int numBytes) throws IOException {
+		// subclasses like NullOutputStream may not write into the array
+		if (os.getClass() == BerByteArrayOutputStream.class && os.index + 1 >= numBytes) {
+			byte[] buffer = os.buffer;
+			int index = os.index;
+			for (int i = 0; i < numBytes; i++) {
+				buffer[index--] = (byte) (value >> 8 * i);
+			}
+			os.index = index;
+		}
+		else {
+			for (int i = 0; i < numBytes; i++) {
+				os.write((int) (value >> 8 * i) & 0xff);
+			}
+		}
+		return numBytes;
+	}
+
+	/**
+	 * Writes an A-XDR length.
+	 * 
+	 * @param os
+	 *            the output stream
+	 * @param length
+	 *            the length
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if the stream can not grow
+	 */
+	public static int writeLength(BerByteArrayOutputStream os, int length) throws IOException {
+		if (length < 128) {
+			os.write(length);
+			return 1;
+		}
+
+		int lengthOfLength = byteLengthOf(length);
+		writeInteger(os, length, lengthOfLength);
+		os.write(0x80 | lengthOfLength);
+		return lengthOfLength + 1;
+	}
+
+	/**
+	 * @param value
+	 *            a non negative value
+	 * @return the number of bytes needed to encode the value unsigned, at least 1
+	 */
+	public static int byteLengthOf(long value) {
+		return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 7) / 8);
+	}
+
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private AxdrWriter() {
+	}
+
+}
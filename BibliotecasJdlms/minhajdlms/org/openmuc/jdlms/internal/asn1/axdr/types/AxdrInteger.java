@@ -25,7 +25,9 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrWriter;
 
 public class AxdrInteger implements AxdrType {
 
@@ -39,6 +41,8 @@ public class AxdrInteger implements AxdrType {
 
 	private boolean isFixedLength = false;
 
+	private int fixedLength = 0;
+
 	private boolean isUnsigned = false;
 
 	public AxdrInteger() {
@@ -58,6 +62,7 @@ public class AxdrInteger implements AxdrType {
 		setValue(val);
 		isFixedLength = true;
 		isUnsigned = (min >= 0);
+		fixedLength = Math.max(getByteLength(minVal), getByteLength(maxVal));
 	}
 
 	@Override
@@ -70,11 +75,7 @@ public class AxdrInteger implements AxdrType {
 		}
 		else {
 			if (isFixedLength) {
-				codeLength = Math.max(getByteLength(minVal), getByteLength(maxVal));
-
-				for (int i = 0; i < codeLength; i++) {
-					axdrOStream.write(((int) (val >> 8 * (i))) & 0xff);
-				}
+				codeLength = AxdrWriter.writeInteger(axdrOStream, val, fixedLength);
 			}
 			else {
 				if (val >= 0 && val <= 127) {
@@ -84,9 +85,7 @@ public class AxdrInteger implements AxdrType {
 					codeLength = getByteLength(val);
 				}
 
-				for (int i = 0; i < codeLength; i++) {
-					axdrOStream.write(((int) (val >> 8 * (i))) & 0xff);
-				}
+				AxdrWriter.writeInteger(axdrOStream, val, codeLength);
 
 				axdrOStream.write((byte) ((codeLength & 0xff) | 0x80));
 				codeLength++;
@@ -97,46 +96,23 @@ public class AxdrInteger implements AxdrType {
 
 	@Override
 	public int decode(InputStream iStream) throws IOException {
-		int codeLength = 0;
-		byte[] byteCode;
-		byte length = 0;
-
 		if (isFixedLength) {
-			length = (byte) Math.max(getByteLength(minVal), getByteLength(maxVal));
-			codeLength = length;
+			val = AxdrReader.readInteger(iStream, fixedLength, !isUnsigned);
+			return fixedLength;
 		}
-		else {
-			length = (byte) iStream.read();
 
-			if ((length & 0x80) == 0x80) {
-				length = (byte) (length ^ 0x80);
-				codeLength = length + 1;
-			}
-			else {
-				val = length;
-				return 1;
-			}
+		int length = AxdrReader.readByte(iStream);
+		if ((length & 0x80) == 0) {
+			val = length;
+			return 1;
 		}
 
-		byteCode = new byte[length];
-		Util.readFully(iStream, byteCode);
-
-		if ((byteCode[0] & 0x80) == 0x80 && !isUnsigned) {
-			val = -1;
-			for (int i = 0; i < length; i++) {
-				int numShiftBits = 8 * (length - i - 1);
-				val &= ((byteCode[i]) << numShiftBits) | ~(0xff << numShiftBits);
-			}
-
-		}
-		else {
-			val = 0;
-			for (int i = 0; i < length; i++) {
-				val |= (long) (byteCode[i] & 0xff) << (8 * (length - i - 1));
-			}
+		length ^= 0x80;
+		if (length > 8) {
+			throw new IOException("Integer of " + length + " bytes is not supported.");
 		}
-
-		return codeLength;
+		val = AxdrReader.readInteger(iStream, length, !isUnsigned);
+		return length + 1;
 	}
 
 	public void encodeAndSave(int encodingSizeGuess) throws IOException {
@@ -147,24 +123,11 @@ public class AxdrInteger implements AxdrType {
 
 	private int getByteLength(long val) {
 		if (minVal != null && minVal >= 0) {
-			for (int i = 1; i <= 8; i++) {
-				long upperBound = (long) (Math.pow(2, (i * 8)) - 1);
-				if (upperBound >= val) {
-					return i;
-				}
-			}
-		}
-		else {
-			for (int i = 1; i <= 8; i++) {
-				long lowerBound = (long) (Math.pow(2, (i * 8) - 1) * (-1));
-				long upperBound = (long) (Math.pow(2, (i * 8) - 1) - 1);
-				if (lowerBound <= val && upperBound >= val) {
-					return i;
-				}
-			}
+			return AxdrWriter.byteLengthOf(val);
 		}
-		// Unreachable, a long has at max 8 Byte
-		return 0;
+		// a negative value needs as many bytes as its complement, plus the sign bit
+		long magnitude = val < 0 ? ~val : val;
+		return (64 - Long.numberOfLeadingZeros(magnitude) + 8) / 8;
 	}
 
 	@Override
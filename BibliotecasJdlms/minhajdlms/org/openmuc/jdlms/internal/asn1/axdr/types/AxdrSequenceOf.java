@@ -26,7 +26,6 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
@@ -35,17 +34,22 @@ import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
 
 public abstract class AxdrSequenceOf<E extends AxdrType> implements AxdrType {
 
+	/**
+	 * Number of elements allocated before decoding if the input stream can not tell how many bytes are available
+	 */
+	private static final int MAX_PREALLOCATED_ELEMENTS = 1024;
+
 	public byte[] code = null;
 	private Integer length = null;
 	private List<E> seqOf;
 
 	public AxdrSequenceOf() {
-		seqOf = new LinkedList<E>();
+		seqOf = new ArrayList<E>();
 	}
 
 	public AxdrSequenceOf(byte[] code) {
 		this.code = code;
-		seqOf = new LinkedList<E>();
+		seqOf = new ArrayList<E>();
 	}
 
 	public AxdrSequenceOf(List<E> seqOf) {
@@ -98,7 +102,8 @@ public abstract class AxdrSequenceOf<E extends AxdrType> implements AxdrType {
 			numElements = length.getValue();
 		}
 
-		seqOf = new LinkedList<E>();
+		// every element has at least one byte, so a corrupt length can not make the list larger than the input
+		seqOf = new ArrayList<E>(Math.min(numElements, Math.max(iStream.available(), MAX_PREALLOCATED_ELEMENTS)));
 
 		for (int i = 0; i < numElements; i++) {
 			E subElem = createListElement();
@@ -34,15 +34,21 @@ public class ACTION_Request implements AxdrType {
 			return this.value;
 		}
 
-		public static Choices valueOf(long tagValue) {
-			Choices[] values = Choices.values();
+		private static final Choices[] BY_TAG = new Choices[256];
 
-			for (Choices c : values) {
-				if (c.value == tagValue) {
-					return c;
+		static {
+			for (Choices c : Choices.values()) {
+				if (c.value >= 0 && c.value < BY_TAG.length) {
+					BY_TAG[c.value] = c;
 				}
 			}
-			return _ERR_NONE_SELECTED;
+		}
+
+		public static Choices valueOf(long tagValue) {
+			if (tagValue < 0 || tagValue >= BY_TAG.length || BY_TAG[(int) tagValue] == null) {
+				return _ERR_NONE_SELECTED;
+			}
+			return BY_TAG[(int) tagValue];
 		}
 	}
 
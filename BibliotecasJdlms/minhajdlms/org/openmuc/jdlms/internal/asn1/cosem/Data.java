@@ -58,15 +58,21 @@ public class Data implements AxdrType {
 			return this.value;
 		}
 
-		public static Choices valueOf(long tagValue) {
-			Choices[] values = Choices.values();
+		private static final Choices[] BY_TAG = new Choices[256];
 
-			for (Choices c : values) {
-				if (c.value == tagValue) {
-					return c;
+		static {
+			for (Choices c : Choices.values()) {
+				if (c.value >= 0 && c.value < BY_TAG.length) {
+					BY_TAG[c.value] = c;
 				}
 			}
-			return _ERR_NONE_SELECTED;
+		}
+
+		public static Choices valueOf(long tagValue) {
+			if (tagValue < 0 || tagValue >= BY_TAG.length || BY_TAG[(int) tagValue] == null) {
+				return _ERR_NONE_SELECTED;
+			}
+			return BY_TAG[(int) tagValue];
 		}
 	}
 
@@ -533,31 +539,31 @@ public class Data implements AxdrType {
 		}
 
 		if (choice == Choices.FLOAT32) {
-			float32 = new AxdrOctetString();
+			float32 = new AxdrOctetString(4);
 			codeLength += float32.decode(iStream);
 			return codeLength;
 		}
 
 		if (choice == Choices.FLOAT64) {
-			float64 = new AxdrOctetString();
+			float64 = new AxdrOctetString(8);
 			codeLength += float64.decode(iStream);
 			return codeLength;
 		}
 
 		if (choice == Choices.DATE_TIME) {
-			date_time = new AxdrOctetString();
+			date_time = new AxdrOctetString(12);
 			codeLength += date_time.decode(iStream);
 			return codeLength;
 		}
 
 		if (choice == Choices.DATE) {
-			date = new AxdrOctetString();
+			date = new AxdrOctetString(5);
 			codeLength += date.decode(iStream);
 			return codeLength;
 		}
 
 		if (choice == Choices.TIME) {
-			time = new AxdrOctetString();
+			time = new AxdrOctetString(4);
 			codeLength += time.decode(iStream);
 			return codeLength;
 		}
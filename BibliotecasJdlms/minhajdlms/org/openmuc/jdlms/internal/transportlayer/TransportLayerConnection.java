@@ -27,6 +27,19 @@ public interface TransportLayerConnection extends EventListener {
 
 	void startListening(TransportLayerConnectionListener eventListener) throws IOException;
 
+	/**
+	 * Sends a transport SDU.
+	 * 
+	 * @param tSdu
+	 *            the array holding the SDU
+	 * @param off
+	 *            the index of the first byte of the SDU. The bytes in front of it are free and may be overwritten by
+	 *            the transport layer, e.g. with its header.
+	 * @param len
+	 *            the length of the SDU
+	 * @throws IOException
+	 *             if sending failed
+	 */
 	void send(byte[] tSdu, int off, int len) throws IOException;
 
 	void close() throws IOException;
@@ -33,7 +33,7 @@ public enum FrameType {
 	UNNUMBERED_ACKNOWLEDGE(0x63, 0xEF),
 	DISCONNECT_MODE(0x0F, 0xEF),
 	FRAME_REJECT(0x87, 0xEF),
-	UNNUMBERED_INFORMATION(0xC0, 0xEF),
+	UNNUMBERED_INFORMATION(0x03, 0xEF),
 
 	ERR_INVALID_TYPE(0xFF, 0xFF);
 
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.transportlayer.hdlc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Splits a byte stream into HDLC frames. The stream may be passed in chunks of any size, e.g. as read from a TCP
+ * socket, so the deframer never blocks waiting for the rest of a frame.
+ * <p>
+ * Frames are delimited by flags, two frames may share one flag. Frames with an invalid format, length or check
+ * sequence are dropped and the deframer waits for the next flag.
+ * </p>
+ */
+final class HdlcDeframer {
+
+	interface Listener {
+		/**
+		 * @param frame
+		 *            the frame without flags, starting with the frame format field
+		 * @param header
+		 *            the addresses of the frame
+		 */
+		void frameReceived(byte[] frame, HdlcHeader header);
+	}
+
+	private static final byte FLAG = 0x7E;
+
+	/*
+	 * Frame format, destination and source address, control field and HCS of the shortest frame.
+	 */
+	private static final int MIN_FRAME_LENGTH = 7;
+	private static final int MAX_FRAME_LENGTH = 0x7FF;
+
+	private enum State {
+		HUNT,
+		START,
+		FRAME,
+		END
+	}
+
+	private final byte[] frame = new byte[MAX_FRAME_LENGTH];
+	private final Listener listener;
+
+	private State state = State.HUNT;
+	private int position;
+	private int frameLength;
+
+	HdlcDeframer(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Passes the next bytes of the stream. The listener is called for every frame completed by these bytes.
+	 * 
+	 * @param data
+	 *            the bytes
+	 * @param off
+	 *            the offset of the first byte
+	 * @param len
+	 *            the number of bytes
+	 */
+	void feed(byte[] data, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			byte b = data[i];
+
+			switch (state) {
+			case HUNT:
+				if (b == FLAG) {
+					state = State.START;
+				}
+				break;
+
+			case START:
+				if (b != FLAG) {
+					frame[0] = b;
+					position = 1;
+					state = State.FRAME;
+				}
+				break;
+
+			case FRAME:
+				frame[position++] = b;
+				if (position == 2) {
+					frameLength = ((frame[0] & 0x07) << 8) | (frame[1] & 0xff);
+					if ((frame[0] & 0xF0) != 0xA0 || frameLength < MIN_FRAME_LENGTH) {
+						state = State.HUNT;
+					}
+				}
+				else if (position == frameLength) {
+					state = State.END;
+				}
+				break;
+
+			case END:
+				if (b == FLAG) {
+					frameCompleted();
+					// the closing flag may open the next frame
+					state = State.START;
+				}
+				else {
+					state = State.HUNT;
+				}
+				break;
+
+			default:
+				break;
+			}
+		}
+	}
+
+	private void frameCompleted() {
+		HdlcHeader header;
+		try {
+			header = HdlcHeader.decode(new ByteArrayInputStream(frame, 0, frameLength));
+		} catch (IOException e) {
+			return;
+		} catch (FrameInvalidException e) {
+			return;
+		}
+		listener.frameReceived(header.frame(), header);
+	}
+
+}
@@ -61,6 +61,15 @@ public class HdlcFrame {
 
 	public static HdlcFrame newInformationFrame(HdlcAddressPair addressPair, int sendSequence, int receiveSequence,
 			byte[] data, boolean segmented) {
+		return newInformationFrame(addressPair, sendSequence, receiveSequence, data, segmented, !segmented);
+	}
+
+	/**
+	 * Creates an information frame. The poll bit passes the right to send to the remote station, it is set on the
+	 * last frame of a window.
+	 */
+	public static HdlcFrame newInformationFrame(HdlcAddressPair addressPair, int sendSequence, int receiveSequence,
+			byte[] data, boolean segmented, boolean poll) {
 		HdlcFrame hdlcFrame = new HdlcFrame(addressPair, FrameType.INFORMATION);
 
 		hdlcFrame.sendSequence = sendSequence;
@@ -71,7 +80,7 @@ public class HdlcFrame {
 		hdlcFrame.controlField = (byte) hdlcFrame.frameType.value();
 		hdlcFrame.controlField |= ((sendSequence % 8) << 1);
 		hdlcFrame.controlField |= ((receiveSequence % 8) << 5);
-		if (!segmented) {
+		if (poll) {
 			hdlcFrame.controlField |= 0x10;
 		}
 
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.transportlayer.hdlc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openmuc.jdlms.internal.ConfirmedMode;
+import org.openmuc.jdlms.internal.Settings;
+
+/**
+ * The HDLC link layer according to IEC 62056-46, independent of the physical connection below it. It connects and
+ * disconnects the link, numbers the information frames, sends APDUs longer than the negotiated information length in
+ * segments, one window at a time, and reassembles received segments.
+ * <p>
+ * Frames are written by the {@link FrameWriter} of the connection, the received frames are passed to
+ * {@link #frameReceived(byte[])}. The next window is sent by the receiving thread as soon as the remote station
+ * acknowledged the previous one, so sending never waits for the remote station. Frames which the remote station does
+ * not acknowledge in its receive ready frame are sent again.
+ * </p>
+ */
+final class HdlcLinkLayer {
+
+	interface FrameWriter {
+		/**
+		 * @param frame
+		 *            the encoded frame including the flags
+		 * @throws IOException
+		 *             if the frame could not be written
+		 */
+		void write(byte[] frame) throws IOException;
+	}
+
+	private static final byte[] LLC_REQUEST = new byte[] { (byte) 0xE6, (byte) 0xE6, (byte) 0x00 };
+	private static final int LLC_RESPONSE_LENGTH = 3;
+
+	private static final int UNCONFIRMED_INFORMATION_LENGTH = 1024;
+
+	private final HdlcAddressPair addressPair;
+	private final ConfirmedMode confirmedMode;
+	private final int responseTimeout;
+	private final FrameWriter frameWriter;
+
+	private final Lock lock = new ReentrantLock();
+	private final BlockingQueue<HdlcFrame> unnumberedResponses = new ArrayBlockingQueue<HdlcFrame>(1);
+	private final Queue<Segment> pendingSegments = new ArrayDeque<Segment>();
+	private final Queue<byte[]> unacknowledgedFrames = new ArrayDeque<byte[]>();
+	private final ByteArrayOutputStream segmentBuffer = new ByteArrayOutputStream();
+
+	private int sendInformationLength = UNCONFIRMED_INFORMATION_LENGTH;
+	private int sendWindowSize = 1;
+	private int sendSequence = 0;
+	private int receiveSequence = 0;
+
+	private static class Segment {
+		private final byte[] data;
+		private final boolean segmented;
+
+		Segment(byte[] data, boolean segmented) {
+			this.data = data;
+			this.segmented = segmented;
+		}
+	}
+
+	HdlcLinkLayer(HdlcAddressPair addressPair, Settings settings, FrameWriter frameWriter) {
+		this.addressPair = addressPair;
+		this.confirmedMode = settings.confirmedMode();
+		this.responseTimeout = settings.responseTimeout();
+		this.frameWriter = frameWriter;
+	}
+
+	/**
+	 * Connects the link. In confirmed mode this negotiates the information length and window size with the remote
+	 * station. Received frames must be passed to {@link #frameReceived(byte[])} already.
+	 * 
+	 * @throws IOException
+	 *             if the remote station did not accept the connection
+	 */
+	void connect() throws IOException {
+		lock.lock();
+		try {
+			sendSequence = 0;
+			receiveSequence = 0;
+			pendingSegments.clear();
+			unacknowledgedFrames.clear();
+			segmentBuffer.reset();
+		} finally {
+			lock.unlock();
+		}
+
+		if (confirmedMode != ConfirmedMode.CONFIRMED) {
+			return;
+		}
+
+		HdlcParameterNegotiation proposal = new HdlcParameterNegotiation(
+				HdlcParameterNegotiation.MIN_INFORMATION_LENGTH, HdlcParameterNegotiation.MIN_WINDOW_SIZE);
+		HdlcFrame response = exchangeUnnumbered(
+				HdlcFrame.newSetNormalResponseModeFrame(addressPair, proposal, true));
+
+		if (response.frameType() != FrameType.UNNUMBERED_ACKNOWLEDGE) {
+			throw new IOException("Received a " + response.frameType() + " frame. Connections will be closed.");
+		}
+
+		HdlcParameterNegotiation negotiation = response.negotiation();
+		lock.lock();
+		try {
+			sendInformationLength = HdlcParameterNegotiation.MIN_INFORMATION_LENGTH;
+			sendWindowSize = HdlcParameterNegotiation.MIN_WINDOW_SIZE;
+			if (negotiation != null) {
+				sendInformationLength = Math.max(negotiation.receiveInformationLength(), sendInformationLength);
+				sendWindowSize = Math.max(negotiation.receiveWindowSize(), sendWindowSize);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Disconnects the link. Nothing is sent in unconfirmed mode.
+	 * 
+	 * @throws IOException
+	 *             if the remote station did not answer
+	 */
+	void disconnect() throws IOException {
+		if (confirmedMode == ConfirmedMode.CONFIRMED) {
+			exchangeUnnumbered(HdlcFrame.newDisconnectFrame(addressPair, true));
+		}
+	}
+
+	/**
+	 * Sends an APDU. In confirmed mode the APDU is sent in segments, the segments exceeding the window of the remote
+	 * station are sent once it acknowledged the previous window.
+	 * 
+	 * @throws IOException
+	 *             if the frames could not be written or the APDU does not fit a frame in unconfirmed mode
+	 */
+	void send(byte[] tSdu, int off, int len) throws IOException {
+		byte[] data = new byte[LLC_REQUEST.length + len];
+		System.arraycopy(LLC_REQUEST, 0, data, 0, LLC_REQUEST.length);
+		System.arraycopy(tSdu, off, data, LLC_REQUEST.length, len);
+
+		lock.lock();
+		try {
+			if (confirmedMode != ConfirmedMode.CONFIRMED) {
+				if (data.length > sendInformationLength) {
+					throw new IOException("Message too large. " + sendInformationLength
+							+ " bytes allowed in unconfirmed mode. Tried to send " + data.length);
+				}
+				write(HdlcFrame.newUnnumberedInformationFrame(addressPair, data, false));
+				return;
+			}
+
+			// the LLC header is only part of the first segment
+			for (int i = 0; i < data.length; i += sendInformationLength) {
+				int end = Math.min(i + sendInformationLength, data.length);
+				pendingSegments.add(new Segment(Arrays.copyOfRange(data, i, end), end < data.length));
+			}
+			sendWindow();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Processes a frame of this link received from the remote station. Invalid frames are ignored.
+	 * 
+	 * @param frameBytes
+	 *            the frame without flags, starting with the frame format field
+	 * @return the received APDU if the frame completes one, otherwise null
+	 * @throws IOException
+	 *             if the acknowledgement or the next frames could not be written
+	 */
+	byte[] frameReceived(byte[] frameBytes) throws IOException {
+		HdlcFrame frame;
+		try {
+			frame = HdlcFrame.decode(new ByteArrayInputStream(frameBytes));
+		} catch (IOException e) {
+			return null;
+		} catch (FrameInvalidException e) {
+			return null;
+		}
+
+		switch (frame.frameType()) {
+		case INFORMATION:
+			return informationReceived(frame);
+		case RECEIVE_READY:
+		case RECEIVE_NOT_READY:
+			lock.lock();
+			try {
+				acknowledge(frame.receiveSequence());
+				if (frame.frameType() == FrameType.RECEIVE_READY) {
+					// the remote station is waiting for the frames it did not receive
+					for (byte[] unacknowledgedFrame : unacknowledgedFrames) {
+						frameWriter.write(unacknowledgedFrame);
+					}
+					sendWindow();
+				}
+			} finally {
+				lock.unlock();
+			}
+			return null;
+		case UNNUMBERED_INFORMATION:
+			// unconfirmed mode, UI frames are neither numbered nor acknowledged
+			byte[] information = frame.informationField();
+			if (information == null || information.length <= LLC_RESPONSE_LENGTH) {
+				return null;
+			}
+			return Arrays.copyOfRange(information, LLC_RESPONSE_LENGTH, information.length);
+		case UNNUMBERED_ACKNOWLEDGE:
+		case DISCONNECT_MODE:
+		case FRAME_REJECT:
+			unnumberedResponses.offer(frame);
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	/*
+	 * Sends a frame of the connection establishment or release and waits for the answer of the remote station.
+	 */
+	private HdlcFrame exchangeUnnumbered(HdlcFrame frame) throws IOException {
+		unnumberedResponses.clear();
+
+		lock.lock();
+		try {
+			write(frame);
+		} finally {
+			lock.unlock();
+		}
+
+		HdlcFrame response;
+		try {
+			response = unnumberedResponses.poll(responseTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			throw new IOException("Got interrupted, while waiting for the response.", e);
+		}
+		if (response == null) {
+			throw new IOException("Timed out while waiting for the response to a " + frame.frameType() + " frame.");
+		}
+		return response;
+	}
+
+	/*
+	 * Returns the APDU if the frame completes one.
+	 */
+	private byte[] informationReceived(HdlcFrame frame) throws IOException {
+		lock.lock();
+		try {
+			if (frame.sendSequence() != receiveSequence) {
+				return null;
+			}
+			receiveSequence = (receiveSequence + 1) % 8;
+			acknowledge(frame.receiveSequence());
+
+			byte[] information = frame.informationField();
+			if (information != null) {
+				segmentBuffer.write(information, 0, information.length);
+			}
+
+			if (frame.segmented()) {
+				write(HdlcFrame.newReceiveReadyFrame(addressPair, receiveSequence, true));
+				return null;
+			}
+
+			byte[] wholeFrame = segmentBuffer.toByteArray();
+			segmentBuffer.reset();
+
+			sendWindow();
+
+			if (wholeFrame.length < LLC_RESPONSE_LENGTH) {
+				return null;
+			}
+			return Arrays.copyOfRange(wholeFrame, LLC_RESPONSE_LENGTH, wholeFrame.length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Removes the frames acknowledged by the receive sequence number of the remote station.
+	 */
+	private void acknowledge(int receivedReceiveSequence) {
+		int unacknowledged = (sendSequence - receivedReceiveSequence + 8) % 8;
+		while (unacknowledgedFrames.size() > unacknowledged) {
+			unacknowledgedFrames.poll();
+		}
+	}
+
+	/*
+	 * Sends pending segments as long as the window of the remote station allows. The last frame of a window passes
+	 * the right to send to the remote station.
+	 */
+	private void sendWindow() throws IOException {
+		while (!pendingSegments.isEmpty() && unacknowledgedFrames.size() < sendWindowSize) {
+			Segment segment = pendingSegments.poll();
+			boolean poll = pendingSegments.isEmpty() || unacknowledgedFrames.size() + 1 == sendWindowSize;
+
+			byte[] frame = encode(HdlcFrame.newInformationFrame(addressPair, sendSequence, receiveSequence,
+					segment.data, segment.segmented, poll));
+			unacknowledgedFrames.add(frame);
+			sendSequence = (sendSequence + 1) % 8;
+
+			frameWriter.write(frame);
+		}
+	}
+
+	private void write(HdlcFrame frame) throws IOException {
+		frameWriter.write(encode(frame));
+	}
+
+	private static byte[] encode(HdlcFrame frame) throws IOException {
+		try {
+			return frame.encodeWithFlags();
+		} catch (FrameInvalidException e) {
+			throw new IOException("Could not encode " + frame.frameType() + " frame.", e);
+		}
+	}
+
+}
@@ -1,34 +1,170 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
 package org.openmuc.jdlms.internal.transportlayer.hdlc;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 
-import org.openmuc.jdlms.internal.TcpSettings;
+import org.openmuc.jdlms.internal.HdlcTcpSettings;
 import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
 import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnectionListener;
 
+/**
+ * HDLC according to IEC 62056-46 tunneled over a TCP connection, e.g. to a serial meter behind a terminal server or
+ * data concentrator. The received byte stream is split into frames by a {@link HdlcDeframer}, which feeds them to the
+ * {@link HdlcLinkLayer} shared with HDLC over a serial line.
+ */
 public class HdlcTcpTransportLayerConnection implements TransportLayerConnection {
 
-	public HdlcTcpTransportLayerConnection(Socket socket, TcpSettings settings) {
-		// TODO Auto-generated constructor stub
+	private static final int READ_BUFFER_SIZE = 2048;
+
+	private final Socket socket;
+	private final OutputStream os;
+	private final InputStream is;
+	private final HdlcTcpSettings settings;
+	private final HdlcAddressPair addressPair;
+	private final HdlcLinkLayer linkLayer;
+
+	private volatile boolean closed = false;
+	private TransportLayerConnectionListener connectionListener;
+
+	private class ConnectionReader implements Runnable, HdlcDeframer.Listener {
+
+		@Override
+		public void run() {
+			IOException closedIOException = null;
+			try {
+				HdlcDeframer deframer = new HdlcDeframer(this);
+				byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+				int length;
+				while ((length = is.read(buffer)) != -1) {
+					deframer.feed(buffer, 0, length);
+				}
+				closedIOException = new EOFException("Socket was closed by remote host.");
+			} catch (IOException e) {
+				closedIOException = e;
+			} catch (Exception e) {
+				closedIOException = new IOException("Unexpected Exception", e);
+			} finally {
+				if (!closed) {
+					closed = true;
+					closeSocket();
+					connectionListener.connectionInterrupted(closedIOException);
+				}
+			}
+		}
+
+		@Override
+		public void frameReceived(byte[] frameBytes, HdlcHeader header) {
+			if (!addressPair.equals(new HdlcAddressPair(header.destinationAddress(), header.sourceAddress()))) {
+				return;
+			}
+
+			byte[] apdu;
+			try {
+				apdu = linkLayer.frameReceived(frameBytes);
+			} catch (IOException e) {
+				// the reader notices the broken socket
+				return;
+			}
+			if (apdu != null) {
+				connectionListener.dataReceived(apdu);
+			}
+		}
 	}
 
+	public HdlcTcpTransportLayerConnection(Socket socket, HdlcTcpSettings settings) throws IOException {
+		this.socket = socket;
+		this.settings = settings;
+		this.addressPair = settings.addresspair();
+		try {
+			os = socket.getOutputStream();
+			is = socket.getInputStream();
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+		this.linkLayer = new HdlcLinkLayer(addressPair, settings, new HdlcLinkLayer.FrameWriter() {
+			@Override
+			public void write(byte[] frame) throws IOException {
+				os.write(frame);
+			}
+		});
+	}
+
+	/**
+	 * Starts the reader thread and connects the HDLC link layer. In confirmed mode this negotiates the information
+	 * length and window size with the remote station.
+	 */
 	@Override
 	public void startListening(TransportLayerConnectionListener eventListener) throws IOException {
-		// TODO Auto-generated method stub
+		this.connectionListener = eventListener;
+
+		settings.threadFactory().newThread(new ConnectionReader()).start();
 
+		try {
+			linkLayer.connect();
+		} catch (IOException e) {
+			closed = true;
+			closeSocket();
+			throw e;
+		}
 	}
 
 	@Override
 	public void send(byte[] tSdu, int off, int len) throws IOException {
-		// TODO Auto-generated method stub
-
+		if (closed) {
+			throw new IOException("Connection is closed");
+		}
+		linkLayer.send(tSdu, off, len);
 	}
 
+	/**
+	 * Disconnects the HDLC link layer and closes the TCP connection.
+	 */
 	@Override
 	public void close() throws IOException {
-		// TODO Auto-generated method stub
+		if (closed) {
+			return;
+		}
+
+		try {
+			linkLayer.disconnect();
+		} catch (IOException e) {
+			// the connection is closed anyway
+		} finally {
+			closed = true;
+			closeSocket();
+		}
+	}
 
+	private void closeSocket() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+		}
 	}
 
 }
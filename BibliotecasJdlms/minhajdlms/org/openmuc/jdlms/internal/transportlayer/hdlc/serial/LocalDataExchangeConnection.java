@@ -28,6 +28,8 @@ import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TooManyListenersException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.openmuc.jdlms.HexConverter;
 import org.openmuc.jdlms.internal.HdlcSettings;
@@ -70,6 +72,7 @@ public class LocalDataExchangeConnection {
 	private final Map<HdlcAddressPair, LocalDataExchangeConnectionListener> listeners;
 
 	private final HdlcSettings settings;
+	private final Lock lock = new ReentrantLock();
 
 	private final ByteBuffer receivingDataBuffer;
 
@@ -164,11 +167,16 @@ public class LocalDataExchangeConnection {
 		connection.startListening();
 	}
 
-	public synchronized void send(byte[] data) throws IOException {
-		if (state == CLOSED) {
-			throw new IOException("Cannot send data. DLMS Client not connected.");
+	public void send(byte[] data) throws IOException {
+		lock.lock();
+		try {
+			if (state == CLOSED) {
+				throw new IOException("Cannot send data. DLMS Client not connected.");
+			}
+			connection.send(data);
+		} finally {
+			lock.unlock();
 		}
-		connection.send(data);
 	}
 
 	public void close() throws IOException {
@@ -27,6 +27,8 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.TooManyListenersException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import gnu.io.SerialPort;
 import gnu.io.SerialPortEvent;
@@ -38,6 +40,7 @@ public class PhysicalConnection {
 	private static final int INPUT_BUFFER_LENGTH = 1024;
 
 	private final SerialPort serialPort;
+	private final Lock lock = new ReentrantLock();
 
 	private PhysicalConnectionListener physicalConnectionListener;
 	private final SerialPortEventListener serialListener;
@@ -64,18 +67,28 @@ public class PhysicalConnection {
 		this.state = CLOSED;
 	}
 
-	public synchronized void send(byte[] data) throws IOException {
-		outputStream.write(data);
-		outputStream.flush();
+	public void send(byte[] data) throws IOException {
+		lock.lock();
+		try {
+			outputStream.write(data);
+			outputStream.flush();
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public synchronized void close() {
-		if (state == OPEN) {
-			serialPort.removeEventListener();
-			serialPort.close();
-			state = CLOSED;
-		}
+	public void close() {
+		lock.lock();
+		try {
+			if (state == OPEN) {
+				serialPort.removeEventListener();
+				serialPort.close();
+				state = CLOSED;
+			}
 
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
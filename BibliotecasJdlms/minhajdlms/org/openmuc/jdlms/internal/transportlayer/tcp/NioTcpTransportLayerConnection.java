@@ -0,0 +1,293 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.transportlayer.tcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openmuc.jdlms.internal.TcpSettings;
+import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
+import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnectionListener;
+
+/**
+ * Non-blocking variant of {@link TcpTransportLayerConnection}. Instead of a reader thread per connection, the wrapper
+ * PDUs of all connections are read by a few shared selector threads, created by the thread factory of the settings.
+ * <p>
+ * The listener is called by a selector thread that also serves other connections. It must hand long running work to
+ * another thread instead of blocking.
+ * </p>
+ */
+public class NioTcpTransportLayerConnection implements TransportLayerConnection {
+
+	private static final int HEADER_SIZE = 8;
+
+	private final SocketChannel channel;
+	private final SelectorLoop loop;
+	private volatile boolean closed = false;
+
+	private final byte[] wPduHeaderBuffer = new byte[HEADER_SIZE];
+	private final ByteBuffer[] wPdu = new ByteBuffer[] { ByteBuffer.wrap(wPduHeaderBuffer), null };
+	private final Queue<ByteBuffer> pendingWrites = new ArrayDeque<ByteBuffer>();
+	/*
+	 * Guards the header buffer and the pending writes.
+	 */
+	private final Lock writeLock = new ReentrantLock();
+
+	private final ByteBuffer receivedHeader = ByteBuffer.allocate(HEADER_SIZE);
+	private byte[] tSdu;
+	private int tSduPosition;
+
+	private SelectionKey key;
+	private TransportLayerConnectionListener tConnectionEventListener;
+
+	private final int logicalDeviceAddress;
+
+	public NioTcpTransportLayerConnection(SocketChannel channel, TcpSettings settings) throws IOException {
+		this.channel = channel;
+		try {
+			channel.configureBlocking(false);
+			loop = SelectorLoop.acquire(settings.threadFactory());
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		int clientAccessPoint = settings.clientAccessPoint();
+		logicalDeviceAddress = settings.logicalDeviceAddress();
+
+		wPduHeaderBuffer[0] = 0;
+		wPduHeaderBuffer[1] = 1;
+		wPduHeaderBuffer[2] = (byte) (clientAccessPoint >> 8);
+		wPduHeaderBuffer[3] = (byte) clientAccessPoint;
+		wPduHeaderBuffer[4] = (byte) (logicalDeviceAddress >> 8);
+		wPduHeaderBuffer[5] = (byte) logicalDeviceAddress;
+	}
+
+	@Override
+	public void startListening(TransportLayerConnectionListener tConnectionEventListener) {
+
+		this.tConnectionEventListener = tConnectionEventListener;
+
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					key = channel.register(loop.selector(), interestOps(), NioTcpTransportLayerConnection.this);
+				} catch (IOException e) {
+					fail(e);
+				} catch (RuntimeException e) {
+					fail(new IOException("Unexpected Exception", e));
+				}
+			}
+		});
+	}
+
+	@Override
+	public void send(byte[] tSdu, int off, int len) throws IOException {
+		writeLock.lock();
+		try {
+			if (closed) {
+				throw new IOException("Connection is closed");
+			}
+
+			wPduHeaderBuffer[6] = (byte) (len >> 8);
+			wPduHeaderBuffer[7] = (byte) len;
+
+			wPdu[0].clear();
+			wPdu[1] = ByteBuffer.wrap(tSdu, off, len);
+
+			if (pendingWrites.isEmpty()) {
+				channel.write(wPdu);
+				if (!wPdu[0].hasRemaining() && !wPdu[1].hasRemaining()) {
+					return;
+				}
+			}
+
+			// the caller may reuse its buffer, so the rest is copied before the selector thread sends it
+			ByteBuffer remainder = ByteBuffer.allocate(wPdu[0].remaining() + wPdu[1].remaining());
+			remainder.put(wPdu[0]).put(wPdu[1]).flip();
+
+			if (pendingWrites.isEmpty()) {
+				loop.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if (key != null && key.isValid()) {
+								key.interestOps(interestOps());
+							}
+						} catch (RuntimeException e) {
+							// e.g. the key has been cancelled by a concurrent close
+							fail(new IOException("Unexpected Exception", e));
+						}
+					}
+				});
+			}
+			pendingWrites.add(remainder);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Will close the TCP connection to the server if its still open and free any resources of this connection.
+	 */
+	@Override
+	public void close() {
+		writeLock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		} finally {
+			writeLock.unlock();
+		}
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+		// lets the selector release the key of the channel
+		loop.selector().wakeup();
+		loop.release();
+	}
+
+	/*
+	 * Called by the selector thread if the channel is ready for reading or writing.
+	 */
+	void process(SelectionKey key, ByteBuffer readBuffer) {
+		try {
+			if (key.isWritable()) {
+				writePending();
+			}
+			if (key.isReadable()) {
+				read(readBuffer);
+			}
+		} catch (IOException e) {
+			fail(e);
+		} catch (Exception e) {
+			fail(new IOException("Unexpected Exception", e));
+		}
+	}
+
+	private int interestOps() {
+		writeLock.lock();
+		try {
+			return pendingWrites.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void writePending() throws IOException {
+		writeLock.lock();
+		try {
+			ByteBuffer buffer;
+			while ((buffer = pendingWrites.peek()) != null) {
+				channel.write(buffer);
+				if (buffer.hasRemaining()) {
+					return;
+				}
+				pendingWrites.poll();
+			}
+			key.interestOps(SelectionKey.OP_READ);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void read(ByteBuffer readBuffer) throws IOException {
+		readBuffer.clear();
+		if (channel.read(readBuffer) == -1) {
+			throw new EOFException("Socket was closed by remote host.");
+		}
+		readBuffer.flip();
+
+		while (readBuffer.hasRemaining() && !closed) {
+			if (tSdu == null) {
+				readHeader(readBuffer);
+			}
+			else {
+				int length = Math.min(readBuffer.remaining(), tSdu.length - tSduPosition);
+				readBuffer.get(tSdu, tSduPosition, length);
+				tSduPosition += length;
+			}
+
+			if (tSdu != null && tSduPosition == tSdu.length) {
+				byte[] received = tSdu;
+				tSdu = null;
+				tConnectionEventListener.dataReceived(received);
+			}
+		}
+	}
+
+	private void readHeader(ByteBuffer readBuffer) throws IOException {
+		while (readBuffer.hasRemaining() && receivedHeader.hasRemaining()) {
+			receivedHeader.put(readBuffer.get());
+		}
+		if (receivedHeader.hasRemaining()) {
+			return;
+		}
+		receivedHeader.flip();
+
+		if (receivedHeader.get() != 0x00) {
+			throw new IOException("Message does not start with 0x00 as expected in by the wrapper header.");
+		}
+
+		byte version = receivedHeader.get();
+
+		if (version != 1) {
+			throw new IOException("Version in wrapper header is not 1 but: " + version);
+		}
+
+		int sourceWPort = receivedHeader.getShort() & 0xffff;
+		if (sourceWPort != logicalDeviceAddress) {
+			throw new IOException("Received unexpected source WPort in wrapper header. Expected: "
+					+ logicalDeviceAddress + ", received: " + sourceWPort);
+		}
+
+		// skip destination WPort
+		receivedHeader.getShort();
+
+		int length = receivedHeader.getShort() & 0xffff;
+		receivedHeader.clear();
+
+		tSdu = new byte[length];
+		tSduPosition = 0;
+	}
+
+	private void fail(IOException e) {
+		if (!closed) {
+			close();
+			if (tConnectionEventListener != null) {
+				tConnectionEventListener.connectionInterrupted(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.transportlayer.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Selector thread serving the non-blocking TCP connections registered with it. The connections with the same thread
+ * factory are spread over up to one daemon thread per processor, which are created by that factory on first use. A
+ * selector thread ends and closes its selector when its last connection has been closed.
+ */
+final class SelectorLoop implements Runnable {
+
+	/**
+	 * Size of the buffer all connections of a selector thread read into
+	 */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private static final int LOOPS_PER_FACTORY = Runtime.getRuntime().availableProcessors();
+
+	private static final Map<ThreadFactory, Group> groups = new HashMap<ThreadFactory, Group>();
+	private static final Lock groupsLock = new ReentrantLock();
+
+	/*
+	 * The selector threads of one thread factory.
+	 */
+	private static class Group {
+		private final SelectorLoop[] loops = new SelectorLoop[LOOPS_PER_FACTORY];
+		private int nextLoop = 0;
+	}
+
+	private final Selector selector;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+	private final ThreadFactory threadFactory;
+	private final int index;
+	// guarded by the groups lock
+	private int users = 0;
+	private volatile boolean closed = false;
+
+	private SelectorLoop(Selector selector, ThreadFactory threadFactory, int index) {
+		this.selector = selector;
+		this.threadFactory = threadFactory;
+		this.index = index;
+	}
+
+	/**
+	 * Returns the selector thread for the next connection, starting it if necessary. Every call has to be followed by
+	 * one call of {@link #release()}.
+	 * 
+	 * @param threadFactory
+	 *            the factory of the selector threads
+	 * @return the selector thread
+	 * @throws IOException
+	 *             if the selector could not be opened
+	 */
+	static SelectorLoop acquire(ThreadFactory threadFactory) throws IOException {
+		groupsLock.lock();
+		try {
+			Group group = groups.get(threadFactory);
+			if (group == null) {
+				group = new Group();
+			}
+
+			int index = group.nextLoop;
+			group.nextLoop = (group.nextLoop + 1) % group.loops.length;
+
+			if (group.loops[index] == null) {
+				SelectorLoop loop = new SelectorLoop(Selector.open(), threadFactory, index);
+				Thread thread = threadFactory.newThread(loop);
+				thread.setDaemon(true);
+				thread.start();
+				group.loops[index] = loop;
+			}
+			groups.put(threadFactory, group);
+
+			SelectorLoop loop = group.loops[index];
+			loop.users++;
+			return loop;
+		} finally {
+			groupsLock.unlock();
+		}
+	}
+
+	/**
+	 * Called by a connection after it has been closed. The last connection ends the selector thread.
+	 */
+	void release() {
+		groupsLock.lock();
+		try {
+			if (--users > 0) {
+				return;
+			}
+
+			Group group = groups.get(threadFactory);
+			group.loops[index] = null;
+			boolean unused = true;
+			for (SelectorLoop loop : group.loops) {
+				unused &= loop == null;
+			}
+			if (unused) {
+				groups.remove(threadFactory);
+			}
+			closed = true;
+		} finally {
+			groupsLock.unlock();
+		}
+		selector.wakeup();
+	}
+
+	/**
+	 * Runs a task on the selector thread, e.g. to change the interest set of a key.
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	Selector selector() {
+		return selector;
+	}
+
+	@Override
+	public void run() {
+		while (!closed) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				// the selector stays usable, the registered channels report their own errors
+			}
+
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					// the tasks fail their own connection, the other connections of this thread are served on
+				}
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+
+				NioTcpTransportLayerConnection connection = (NioTcpTransportLayerConnection) key.attachment();
+				try {
+					connection.process(key, readBuffer);
+				} catch (RuntimeException e) {
+					// e.g. thrown by the listener of the connection, only this connection is given up
+					key.cancel();
+					connection.close();
+				}
+			}
+		}
+
+		try {
+			// all connections are closed, so only cancelled keys are left
+			selector.close();
+		} catch (IOException e) {
+		}
+	}
+
+}
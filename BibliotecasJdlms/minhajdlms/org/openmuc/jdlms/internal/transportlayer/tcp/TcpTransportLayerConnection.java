@@ -21,14 +21,16 @@
 package org.openmuc.jdlms.internal.transportlayer.tcp;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.openmuc.jdlms.TcpServerSap;
+import org.openmuc.jdlms.internal.BufferPool;
 import org.openmuc.jdlms.internal.TcpSettings;
 import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
 import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnectionListener;
@@ -38,13 +40,15 @@ import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnectionListene
  */
 public class TcpTransportLayerConnection implements TransportLayerConnection {
 
+	private static final int HEADER_SIZE = 8;
+
 	private final Socket socket;
-	private DataOutputStream os;
+	private OutputStream os;
 	private DataInputStream is;
 	private boolean closed = false;
 	private IOException closedIOException = null;
 
-	private final byte[] wPduHeaderBuffer = new byte[8];
+	private final byte[] wPduHeaderBuffer = new byte[HEADER_SIZE];
 
 	private TransportLayerConnectionListener tConnectionEventListener;
 
@@ -52,39 +56,48 @@ public class TcpTransportLayerConnection implements TransportLayerConnection {
 	private int clientAccessPoint;
 	private int messageFragmentTimeout;
 
-	private class ConnectionReader extends Thread {
+	private final ThreadFactory threadFactory;
+
+	private class ConnectionReader implements Runnable {
 
 		@Override
 		public void run() {
 
 			try {
+				byte[] wPduHeader = new byte[HEADER_SIZE];
 				while (true) {
 
-					socket.setSoTimeout(0);
+					// without fragment timeout the socket option never changes, so the system calls are saved
+					if (messageFragmentTimeout != 0) {
+						socket.setSoTimeout(0);
+					}
 
 					if (is.readByte() != 0x00) {
 						throw new IOException("Message does not start with 0x00 as expected in by the wrapper header.");
 					}
 
-					socket.setSoTimeout(messageFragmentTimeout);
+					if (messageFragmentTimeout != 0) {
+						socket.setSoTimeout(messageFragmentTimeout);
+					}
+
+					is.readFully(wPduHeader, 1, HEADER_SIZE - 1);
 
-					byte version = is.readByte();
+					byte version = wPduHeader[1];
 
 					if (version != 1) {
 						throw new IOException("Version in wrapper header is not 1 but: " + version);
 					}
 
-					int sourceWPort = is.readUnsignedShort();
+					int sourceWPort = ((wPduHeader[2] & 0xff) << 8) | (wPduHeader[3] & 0xff);
 					if (sourceWPort != logicalDeviceAddress) {
 						throw new IOException("Received unexpected source WPort in wrapper header. Expected: "
 								+ logicalDeviceAddress + ", received: " + sourceWPort);
 					}
 
-					// read destination WPort
-					is.readUnsignedShort();
-
-					int length = is.readUnsignedShort();
+					// the destination WPort in bytes 4 and 5 is not checked
+					int length = ((wPduHeader[6] & 0xff) << 8) | (wPduHeader[7] & 0xff);
 
+					// not pooled, the listener owns the array and may keep it, e.g. for lazily decoded data
 					byte[] tSdu = new byte[length];
 
 					is.readFully(tSdu);
@@ -117,8 +130,9 @@ public class TcpTransportLayerConnection implements TransportLayerConnection {
 
 	public TcpTransportLayerConnection(Socket socket, TcpSettings settings) throws IOException {
 		this.socket = socket;
+		this.threadFactory = settings.threadFactory();
 		try {
-			os = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			os = socket.getOutputStream();
 		} catch (IOException e) {
 			socket.close();
 			throw e;
@@ -158,8 +172,9 @@ public class TcpTransportLayerConnection implements TransportLayerConnection {
 			throws IOException {
 		this.socket = socket;
 		this.messageFragmentTimeout = settings.messageFragmentTimeout();
+		this.threadFactory = Executors.defaultThreadFactory();
 		try {
-			os = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			os = socket.getOutputStream();
 		} catch (IOException e) {
 			socket.close();
 			throw e;
@@ -209,8 +224,7 @@ public class TcpTransportLayerConnection implements TransportLayerConnection {
 
 		this.tConnectionEventListener = tConnectionEventListener;
 
-		ConnectionReader connectionReader = new ConnectionReader();
-		connectionReader.start();
+		threadFactory.newThread(new ConnectionReader()).start();
 
 	}
 
@@ -220,9 +234,23 @@ public class TcpTransportLayerConnection implements TransportLayerConnection {
 		wPduHeaderBuffer[6] = (byte) (len >> 8);
 		wPduHeaderBuffer[7] = (byte) len;
 
-		os.write(wPduHeaderBuffer);
-		os.write(tSdu, off, len);
-		os.flush();
+		// header and APDU are written at once, so each wrapper PDU costs a single system call
+		if (off >= HEADER_SIZE) {
+			// the header goes into the free bytes in front of the APDU, see TransportLayerConnection.send
+			System.arraycopy(wPduHeaderBuffer, 0, tSdu, off - HEADER_SIZE, HEADER_SIZE);
+			os.write(tSdu, off - HEADER_SIZE, HEADER_SIZE + len);
+			return;
+		}
+
+		byte[] wPdu = BufferPool.acquire(HEADER_SIZE + len);
+		try {
+			System.arraycopy(wPduHeaderBuffer, 0, wPdu, 0, HEADER_SIZE);
+			System.arraycopy(tSdu, off, wPdu, HEADER_SIZE, len);
+
+			os.write(wPdu, 0, HEADER_SIZE + len);
+		} finally {
+			BufferPool.release(wPdu);
+		}
 
 	}
 
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.transportlayer.udp;
+
+import static org.openmuc.jdlms.internal.transportlayer.udp.UdpWrapperSocket.HEADER_SIZE;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openmuc.jdlms.internal.UdpSettings;
+import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnection;
+import org.openmuc.jdlms.internal.transportlayer.TransportLayerConnectionListener;
+
+/**
+ * Wrapper connection according to IEC 62056-47 over UDP. All connections share one UDP socket, the PDUs are assigned
+ * to the connections by the address of the remote meter and the wPorts.
+ * <p>
+ * As UDP may lose datagrams, a request is sent again if no response arrived within the retransmission timeout. Get,
+ * set and action responses are assigned to their request by the invoke id, any other response confirms the oldest
+ * request without invoke id, e.g. the AARQ. A request which has been sent the maximum number of times is still
+ * matched until it is answered. While retransmission is enabled, responses matching no outstanding request are
+ * dropped, so the second answer to a request that has been sent twice does not reach the client.
+ * </p>
+ * <p>
+ * The listener is called by the receiver thread of the shared socket and must not block.
+ * </p>
+ */
+public class UdpTransportLayerConnection implements TransportLayerConnection {
+
+	private static final int NO_INVOKE_ID = -1;
+
+	/*
+	 * COSEM PDU tags of the confirmed requests and responses carrying an invoke id in the byte after the type.
+	 */
+	private static final int GET_REQUEST = 0xC0;
+	private static final int SET_REQUEST = 0xC1;
+	private static final int ACTION_REQUEST = 0xC3;
+	private static final int GET_RESPONSE = 0xC4;
+	private static final int SET_RESPONSE = 0xC5;
+	private static final int ACTION_RESPONSE = 0xC7;
+
+	/*
+	 * Tags of PDUs sent by the meter on its own, which never answer a request.
+	 */
+	private static final int EVENT_NOTIFICATION_REQUEST = 0xC2;
+	private static final int DATA_NOTIFICATION = 0x0F;
+
+	/*
+	 * Tags of error responses, which cannot be assigned to a request as they carry no invoke id.
+	 */
+	private static final int EXCEPTION_RESPONSE = 0xD8;
+	private static final int CONFIRMED_SERVICE_ERROR = 0x0E;
+
+	private final UdpWrapperSocket socket;
+	private final InetSocketAddress remoteAddress;
+	private final int clientAccessPoint;
+	private final int logicalDeviceAddress;
+	private final int retransmissionTimeout;
+	private final int maxRetransmissions;
+
+	private final List<Retransmission> retransmissions = new ArrayList<Retransmission>();
+	private final Lock retransmissionsLock = new ReentrantLock();
+
+	private volatile boolean closed = false;
+	private TransportLayerConnectionListener tConnectionEventListener;
+
+	private class Retransmission implements Runnable {
+		private final DatagramPacket wPdu;
+		private final int invokeId;
+		private int count = 0;
+		private ScheduledFuture<?> task;
+
+		Retransmission(DatagramPacket wPdu, int invokeId) {
+			this.wPdu = wPdu;
+			this.invokeId = invokeId;
+		}
+
+		@Override
+		public void run() {
+			retransmissionsLock.lock();
+			try {
+				if (!retransmissions.contains(this)) {
+					return;
+				}
+				if (count == maxRetransmissions) {
+					// kept to match a late answer, the response timeout of the request reports the failure
+					task = null;
+					return;
+				}
+				count++;
+				task = socket.schedule(this, retransmissionTimeout);
+			} finally {
+				retransmissionsLock.unlock();
+			}
+
+			try {
+				socket.send(wPdu);
+			} catch (IOException e) {
+				// sent again on the next timeout
+			}
+		}
+
+		/*
+		 * Called with the lock held.
+		 */
+		void cancel() {
+			if (task != null) {
+				task.cancel(false);
+				task = null;
+			}
+		}
+	}
+
+	public UdpTransportLayerConnection(UdpSettings settings) throws IOException {
+		this.remoteAddress = new InetSocketAddress(settings.inetAddress(), settings.udpPort());
+		this.clientAccessPoint = settings.clientAccessPoint();
+		this.logicalDeviceAddress = settings.logicalDeviceAddress();
+		this.retransmissionTimeout = settings.retransmissionTimeout();
+		this.maxRetransmissions = settings.maxRetransmissions();
+
+		this.socket = UdpWrapperSocket.acquire(settings.threadFactory());
+		try {
+			this.socket.register(remoteAddress, logicalDeviceAddress, clientAccessPoint, this);
+		} catch (IOException e) {
+			socket.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void startListening(TransportLayerConnectionListener tConnectionEventListener) {
+		this.tConnectionEventListener = tConnectionEventListener;
+	}
+
+	@Override
+	public void send(byte[] tSdu, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Connection is closed");
+		}
+
+		byte[] wPdu = new byte[HEADER_SIZE + len];
+		wPdu[0] = 0;
+		wPdu[1] = 1;
+		wPdu[2] = (byte) (clientAccessPoint >> 8);
+		wPdu[3] = (byte) clientAccessPoint;
+		wPdu[4] = (byte) (logicalDeviceAddress >> 8);
+		wPdu[5] = (byte) logicalDeviceAddress;
+		wPdu[6] = (byte) (len >> 8);
+		wPdu[7] = (byte) len;
+		System.arraycopy(tSdu, off, wPdu, HEADER_SIZE, len);
+
+		DatagramPacket packet = new DatagramPacket(wPdu, wPdu.length, remoteAddress);
+
+		if (retransmissionEnabled()) {
+			Retransmission retransmission = new Retransmission(packet, invokeIdOf(wPdu, HEADER_SIZE, GET_REQUEST,
+					SET_REQUEST, ACTION_REQUEST));
+			retransmissionsLock.lock();
+			try {
+				if (closed) {
+					throw new IOException("Connection is closed");
+				}
+				removeGivenUp(retransmission.invokeId);
+				retransmissions.add(retransmission);
+				retransmission.task = socket.schedule(retransmission, retransmissionTimeout);
+			} finally {
+				retransmissionsLock.unlock();
+			}
+		}
+
+		socket.send(packet);
+	}
+
+	/**
+	 * Closes the connection. The shared socket stays open for the other connections.
+	 */
+	@Override
+	public void close() {
+		if (markClosed()) {
+			socket.unregister(remoteAddress, logicalDeviceAddress, clientAccessPoint);
+			socket.release();
+		}
+	}
+
+	void dataReceived(byte[] tSdu) {
+		int tag = tSdu.length == 0 ? NO_INVOKE_ID : tSdu[0] & 0xff;
+		if (tag != EVENT_NOTIFICATION_REQUEST && tag != DATA_NOTIFICATION && tag != EXCEPTION_RESPONSE
+				&& tag != CONFIRMED_SERVICE_ERROR) {
+			boolean confirmed = confirm(invokeIdOf(tSdu, 0, GET_RESPONSE, SET_RESPONSE, ACTION_RESPONSE));
+			if (!confirmed && retransmissionEnabled()) {
+				// duplicate answer to a retransmitted request, or the answer to a request reused by a new one
+				return;
+			}
+		}
+
+		if (tConnectionEventListener != null) {
+			tConnectionEventListener.dataReceived(tSdu);
+		}
+	}
+
+	void connectionInterrupted(IOException e) {
+		if (markClosed()) {
+			socket.release();
+			if (tConnectionEventListener != null) {
+				tConnectionEventListener.connectionInterrupted(e);
+			}
+		}
+	}
+
+	/*
+	 * Stops the retransmission of the oldest request answered by a response with the given invoke id. Returns false if
+	 * no such request is outstanding.
+	 */
+	private boolean confirm(int invokeId) {
+		retransmissionsLock.lock();
+		try {
+			Iterator<Retransmission> iterator = retransmissions.iterator();
+			while (iterator.hasNext()) {
+				Retransmission retransmission = iterator.next();
+				if (retransmission.invokeId == invokeId) {
+					retransmission.cancel();
+					iterator.remove();
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			retransmissionsLock.unlock();
+		}
+	}
+
+	/*
+	 * Requests which are not sent again any more are kept until they are answered. Once their invoke id is used by a
+	 * new request, the client has given them up, so they are removed. Called with the lock held.
+	 */
+	private void removeGivenUp(int invokeId) {
+		Iterator<Retransmission> iterator = retransmissions.iterator();
+		while (iterator.hasNext()) {
+			Retransmission retransmission = iterator.next();
+			if (retransmission.invokeId == invokeId && retransmission.task == null) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/*
+	 * Closes the connection and stops the retransmissions. Returns false if it was closed already.
+	 */
+	private boolean markClosed() {
+		retransmissionsLock.lock();
+		try {
+			if (closed) {
+				return false;
+			}
+			closed = true;
+			for (Retransmission retransmission : retransmissions) {
+				retransmission.cancel();
+			}
+			retransmissions.clear();
+			return true;
+		} finally {
+			retransmissionsLock.unlock();
+		}
+	}
+
+	private boolean retransmissionEnabled() {
+		return retransmissionTimeout > 0 && maxRetransmissions > 0;
+	}
+
+	private static int invokeIdOf(byte[] pdu, int offset, int... tags) {
+		if (pdu.length < offset + 3) {
+			return NO_INVOKE_ID;
+		}
+		int tag = pdu[offset] & 0xff;
+		for (int candidate : tags) {
+			if (tag == candidate) {
+				return pdu[offset + 2] & 0x0f;
+			}
+		}
+		return NO_INVOKE_ID;
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012-15 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.transportlayer.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The UDP socket shared by all UDP connections with the same thread factory. Received wrapper PDUs are passed to the
+ * connection registered for the remote address and the wPorts of the PDU. PDUs nobody is registered for are dropped.
+ * <p>
+ * The receiver thread and the retransmission timer thread are created by the thread factory. The socket is closed
+ * when its last connection has been closed.
+ * </p>
+ */
+final class UdpWrapperSocket implements Runnable {
+
+	static final int HEADER_SIZE = 8;
+
+	/**
+	 * Largest payload of an IPv4 UDP datagram
+	 */
+	private static final int MAX_DATAGRAM_SIZE = 65507;
+
+	/*
+	 * Time after which the idle timer thread ends.
+	 */
+	private static final long TIMER_KEEP_ALIVE_MILLIS = 1000;
+
+	private static final Map<ThreadFactory, UdpWrapperSocket> sockets = new HashMap<ThreadFactory, //
+			UdpWrapperSocket>();
+	private static final Lock socketsLock = new ReentrantLock();
+
+	private final DatagramSocket socket;
+	private final ThreadFactory threadFactory;
+	private final ScheduledThreadPoolExecutor timer;
+	private final Map<Key, UdpTransportLayerConnection> connections = new ConcurrentHashMap<Key, //
+			UdpTransportLayerConnection>();
+	// guarded by the sockets lock
+	private int users = 0;
+
+	private UdpWrapperSocket(DatagramSocket socket, final ThreadFactory threadFactory) {
+		this.socket = socket;
+		this.threadFactory = threadFactory;
+		this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = threadFactory.newThread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+		this.timer.setKeepAliveTime(TIMER_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+		this.timer.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Returns the socket of the given thread factory, opening it on first use or after it failed. Every call has to be
+	 * followed by one call of {@link #release()}.
+	 * 
+	 * @param threadFactory
+	 *            the factory of the receiver and the timer thread
+	 * @return the shared socket
+	 * @throws IOException
+	 *             if the socket could not be opened
+	 */
+	static UdpWrapperSocket acquire(ThreadFactory threadFactory) throws IOException {
+		socketsLock.lock();
+		try {
+			UdpWrapperSocket wrapperSocket = sockets.get(threadFactory);
+			if (wrapperSocket == null || wrapperSocket.socket.isClosed()) {
+				wrapperSocket = new UdpWrapperSocket(new DatagramSocket(), threadFactory);
+				Thread thread = threadFactory.newThread(wrapperSocket);
+				thread.setDaemon(true);
+				thread.start();
+				sockets.put(threadFactory, wrapperSocket);
+			}
+			wrapperSocket.users++;
+			return wrapperSocket;
+		} finally {
+			socketsLock.unlock();
+		}
+	}
+
+	/**
+	 * Called by a connection after it has been closed. The last connection closes the socket, which ends the receiver
+	 * thread.
+	 */
+	void release() {
+		socketsLock.lock();
+		try {
+			if (--users > 0) {
+				return;
+			}
+			if (sockets.get(threadFactory) == this) {
+				sockets.remove(threadFactory);
+			}
+		} finally {
+			socketsLock.unlock();
+		}
+		socket.close();
+	}
+
+	ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+		return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	void register(SocketAddress remoteAddress, int remoteWPort, int localWPort, UdpTransportLayerConnection connection)
+			throws IOException {
+		Key key = new Key(remoteAddress, remoteWPort, localWPort);
+		if (connections.putIfAbsent(key, connection) != null) {
+			throw new IOException("A connection to " + remoteAddress + " with source wPort " + localWPort
+					+ " and destination wPort " + remoteWPort + " is already open");
+		}
+	}
+
+	void unregister(SocketAddress remoteAddress, int remoteWPort, int localWPort) {
+		connections.remove(new Key(remoteAddress, remoteWPort, localWPort));
+	}
+
+	void send(DatagramPacket packet) throws IOException {
+		socket.send(packet);
+	}
+
+	@Override
+	public void run() {
+		byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+		try {
+			while (true) {
+				packet.setLength(buffer.length);
+				socket.receive(packet);
+
+				int length = packet.getLength();
+				if (length < HEADER_SIZE || buffer[0] != 0x00 || buffer[1] != 1) {
+					continue;
+				}
+
+				int sourceWPort = ((buffer[2] & 0xff) << 8) | (buffer[3] & 0xff);
+				int destinationWPort = ((buffer[4] & 0xff) << 8) | (buffer[5] & 0xff);
+				int tSduLength = ((buffer[6] & 0xff) << 8) | (buffer[7] & 0xff);
+				if (tSduLength != length - HEADER_SIZE) {
+					continue;
+				}
+
+				UdpTransportLayerConnection connection = connections
+						.get(new Key(packet.getSocketAddress(), sourceWPort, destinationWPort));
+				if (connection == null) {
+					continue;
+				}
+
+				byte[] tSdu = new byte[tSduLength];
+				System.arraycopy(buffer, HEADER_SIZE, tSdu, 0, tSduLength);
+				connection.dataReceived(tSdu);
+			}
+		} catch (IOException e) {
+			fail(e);
+		} catch (Exception e) {
+			fail(new IOException("Unexpected Exception", e));
+		}
+	}
+
+	private void fail(IOException e) {
+		socket.close();
+
+		List<UdpTransportLayerConnection> interrupted = new ArrayList<UdpTransportLayerConnection>(
+				connections.values());
+		connections.clear();
+		for (UdpTransportLayerConnection connection : interrupted) {
+			connection.connectionInterrupted(e);
+		}
+	}
+
+	private static class Key {
+		private final SocketAddress remoteAddress;
+		private final int remoteWPort;
+		private final int localWPort;
+
+		Key(SocketAddress remoteAddress, int remoteWPort, int localWPort) {
+			this.remoteAddress = remoteAddress;
+			this.remoteWPort = remoteWPort;
+			this.localWPort = localWPort;
+		}
+
+		@Override
+		public int hashCode() {
+			return (remoteAddress.hashCode() * 31 + remoteWPort) * 31 + localWPort;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return remoteWPort == other.remoteWPort && localWPort == other.localWPort
+					&& remoteAddress.equals(other.remoteAddress);
+		}
+	}
+
+}